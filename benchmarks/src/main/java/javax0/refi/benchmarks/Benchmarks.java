@@ -0,0 +1,44 @@
+package javax0.refi.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks of the library.
+ * <p>
+ * The command line options are the options of JMH, like {@code -t 8} to run the benchmarks on eight threads or a
+ * regular expression to select the benchmarks. The difference is that the results are written in JSON format to
+ * {@code jmh-result.json} unless the options {@code -rf} and {@code -rff} say otherwise.
+ *
+ * <pre>{@code
+ * java -jar benchmarks/target/benchmarks.jar Compile -rff compile.json
+ * }</pre>
+ */
+public final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final var options = new CommandLineOptions(args);
+        if (options.shouldHelp()) {
+            options.showHelp();
+            return;
+        }
+        final var builder = new OptionsBuilder().parent(options);
+        if (!options.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!options.getResult().hasValue()) {
+            builder.result("jmh-result.json");
+        }
+        final var runner = new Runner(builder.build());
+        if (options.shouldList()) {
+            runner.list();
+        } else {
+            runner.run();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package javax0.refi.benchmarks;
+
+import javax0.refi.selector.Caches;
+import javax0.refi.selector.Selector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiling selector expressions, when the compiled selector is already in the cache and when it is not.
+ * <p>
+ * The cache misses compile a new expression every time, which is the original expression extended with a unique
+ * name condition. The cache of the compiled selectors is dropped regularly to keep the memory use limited.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class CompileBenchmark {
+
+    static final String LONG = "(public | protected) & !static & !synthetic & annotation ~ /Deprecated/ "
+        + "& name ~ /^get[A-Z]/ & returns ~ /String/ & parameterTypes -> count(true) < 3 "
+        + "& declaringClass -> (abstract | annotation ~ /Entity$/ | anySuper -> simpleName ~ /^Base$/)";
+
+    @Param({"public", LONG})
+    public String expression;
+
+    @State(Scope.Thread)
+    public static class Misses {
+        private static final AtomicInteger threads = new AtomicInteger();
+        final String prefix = " | name ~ /^t" + threads.incrementAndGet() + "m";
+        int counter;
+
+        String next(String expression) {
+            if ((++counter & 0xFFF) == 0) {
+                Caches.release(null);
+            }
+            return expression + prefix + counter + "$/";
+        }
+    }
+
+    @Benchmark
+    public Selector<?> hit() {
+        return Selector.compile(expression);
+    }
+
+    @Benchmark
+    public Selector<?> miss(Misses misses) {
+        return Selector.compile(misses.next(expression));
+    }
+
+    @Threads(1)
+    public static class Single extends CompileBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class Contended extends CompileBenchmark {
+    }
+}
@@ -0,0 +1,529 @@
+package javax0.refi.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * A synthetic set of classes to measure how the library scales with deep hierarchies, wide classes and many classes.
+ * <p>
+ * The classes are generated as class files, without compiling any source code. The classes form chains of
+ * superclasses of the given {@link Builder#depth(int) depth}, each class declares the given number of fields and
+ * methods, and a method of a class overrides the method of the same name and parameters in its superclass. The
+ * methods of the same name are overloaded with {@code 0, 1, ...} {@code int} parameters. A random part of the fields
+ * and methods, given by the {@link Builder#annotationDensity(double) annotation density}, is annotated with
+ * annotations that are also generated. The modifiers of the members are random. The generation is deterministic for
+ * a given {@link Builder#seed(long) seed}.
+ *
+ * <pre>{@code
+ * final var corpus = Corpus.builder().classes(10_000).depth(10).methods(50).overloads(5).fields(10).build();
+ * final var classes = corpus.load();
+ * }</pre>
+ */
+public final class Corpus {
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+    private static final int ACC_VOLATILE = 0x0040;
+    private static final int ACC_TRANSIENT = 0x0080;
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_ABSTRACT = 0x0400;
+    private static final int ACC_ANNOTATION = 0x2000;
+
+    private static final int[] FIELD_MODIFIERS = {ACC_PUBLIC, ACC_PRIVATE, ACC_PROTECTED, 0,
+        ACC_PRIVATE | ACC_FINAL, ACC_PUBLIC | ACC_STATIC, ACC_PRIVATE | ACC_VOLATILE, ACC_PROTECTED | ACC_TRANSIENT};
+    private static final int[] METHOD_MODIFIERS = {ACC_PUBLIC, ACC_PUBLIC, ACC_PROTECTED, 0, ACC_PUBLIC | ACC_STATIC,
+        ACC_PRIVATE};
+
+    private final Map<String, byte[]> classFiles;
+    private final List<String> classNames;
+    private final int members;
+
+    private Corpus(Map<String, byte[]> classFiles, List<String> classNames, int members) {
+        this.classFiles = Collections.unmodifiableMap(classFiles);
+        this.classNames = Collections.unmodifiableList(classNames);
+        this.members = members;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Configure the generated classes. The defaults generate a hundred classes in chains of five with ten methods and
+     * five fields each.
+     */
+    public static final class Builder {
+        private String packageName = "corpus";
+        private int classes = 100;
+        private int depth = 5;
+        private int methods = 10;
+        private int overloads = 1;
+        private int fields = 5;
+        private int annotations = 5;
+        private double annotationDensity = 0.2;
+        private long seed = 0;
+
+        private Builder() {
+        }
+
+        /**
+         * @param packageName the package of the generated classes, like {@code corpus.big}
+         * @return this
+         */
+        public Builder packageName(String packageName) {
+            this.packageName = packageName;
+            return this;
+        }
+
+        /**
+         * @param classes the number of the generated classes, not counting the annotations
+         * @return this
+         */
+        public Builder classes(int classes) {
+            this.classes = positive("classes", classes);
+            return this;
+        }
+
+        /**
+         * @param depth the length of the superclass chains, {@code 1} generates classes that extend {@code Object}
+         * @return this
+         */
+        public Builder depth(int depth) {
+            this.depth = positive("depth", depth);
+            return this;
+        }
+
+        /**
+         * @param methods the number of methods declared in each class, including the overloaded versions
+         * @return this
+         */
+        public Builder methods(int methods) {
+            this.methods = notNegative("methods", methods);
+            return this;
+        }
+
+        /**
+         * @param overloads the number of methods that have the same name
+         * @return this
+         */
+        public Builder overloads(int overloads) {
+            this.overloads = positive("overloads", overloads);
+            return this;
+        }
+
+        /**
+         * @param fields the number of fields declared in each class
+         * @return this
+         */
+        public Builder fields(int fields) {
+            this.fields = notNegative("fields", fields);
+            return this;
+        }
+
+        /**
+         * @param annotations the number of the generated annotation interfaces
+         * @return this
+         */
+        public Builder annotations(int annotations) {
+            this.annotations = positive("annotations", annotations);
+            return this;
+        }
+
+        /**
+         * @param annotationDensity the probability of a class, field or method to be annotated
+         * @return this
+         */
+        public Builder annotationDensity(double annotationDensity) {
+            if (annotationDensity < 0 || annotationDensity > 1) {
+                throw new IllegalArgumentException("The annotation density " + annotationDensity
+                    + " is not between 0 and 1");
+            }
+            this.annotationDensity = annotationDensity;
+            return this;
+        }
+
+        /**
+         * @param seed the seed of the random modifiers and annotations
+         * @return this
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Set the number of classes to have approximately the given number of members. Call it after setting the
+         * number of fields and methods of a class, which are not changed.
+         *
+         * @param members the total number of classes, fields, methods and constructors
+         * @return this
+         */
+        public Builder members(int members) {
+            return classes(Math.max(1, members / (1 + fields + methods + 1)));
+        }
+
+        public Corpus build() {
+            final var random = new SplittableRandom(seed);
+            final var prefix = packageName.isEmpty() ? "" : packageName.replace('.', '/') + "/";
+            final var files = new LinkedHashMap<String, byte[]>();
+            final var names = new ArrayList<String>();
+            final var annotationNames = new String[annotations];
+            for (int i = 0; i < annotations; i++) {
+                annotationNames[i] = prefix + "A" + i;
+                files.put(annotationNames[i].replace('/', '.'), annotation(annotationNames[i]));
+            }
+            for (int i = 0; i < classes; i++) {
+                final var name = prefix + "C" + i;
+                final var superName = i % depth == 0 ? "java/lang/Object" : prefix + "C" + (i - 1);
+                files.put(name.replace('/', '.'), klass(name, superName, annotationNames, random));
+                names.add(name.replace('/', '.'));
+            }
+            return new Corpus(files, names, classes * (1 + fields + methods + 1));
+        }
+
+        private byte[] annotation(String name) {
+            final var file = new ClassFile(name, "java/lang/Object",
+                ACC_PUBLIC | ACC_INTERFACE | ACC_ABSTRACT | ACC_ANNOTATION);
+            file.interfaces.add(file.pool.klass("java/lang/annotation/Annotation"));
+            file.annotations.add(file.retentionRuntime());
+            return file.bytes();
+        }
+
+        private byte[] klass(String name, String superName, String[] annotationNames, SplittableRandom random) {
+            final var file = new ClassFile(name, superName, ACC_PUBLIC | ACC_SUPER);
+            annotate(file, file.annotations, annotationNames, random);
+            for (int i = 0; i < fields; i++) {
+                final var field = file.member(FIELD_MODIFIERS[random.nextInt(FIELD_MODIFIERS.length)],
+                    "f" + i, i % 2 == 0 ? "I" : "Ljava/lang/String;");
+                annotate(file, field.annotations, annotationNames, random);
+                file.fields.add(field);
+            }
+            file.methods.add(file.constructor(superName));
+            for (int i = 0; i < methods; i++) {
+                final var parameters = i % overloads;
+                final var method = file.member(METHOD_MODIFIERS[random.nextInt(METHOD_MODIFIERS.length)],
+                    "m" + i / overloads, "(" + "I".repeat(parameters) + ")V");
+                method.code = file.code(new byte[]{(byte) 0xB1}, 0, 1 + parameters);
+                annotate(file, method.annotations, annotationNames, random);
+                file.methods.add(method);
+            }
+            return file.bytes();
+        }
+
+        private void annotate(ClassFile file, List<byte[]> annotations, String[] annotationNames,
+                              SplittableRandom random) {
+            if (random.nextDouble() < annotationDensity) {
+                annotations.add(file.marker(annotationNames[random.nextInt(annotationNames.length)]));
+            }
+        }
+
+        private static int positive(String name, int value) {
+            if (value < 1) {
+                throw new IllegalArgumentException("The number of " + name + " must be positive, it is " + value);
+            }
+            return value;
+        }
+
+        private static int notNegative(String name, int value) {
+            if (value < 0) {
+                throw new IllegalArgumentException("The number of " + name + " must not be negative, it is " + value);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * @return the class files keyed by the binary name of the classes, the annotations first and then the classes,
+     * each superclass before its subclasses
+     */
+    public Map<String, byte[]> classFiles() {
+        return classFiles;
+    }
+
+    /**
+     * @return the binary names of the generated classes, without the annotations
+     */
+    public List<String> classNames() {
+        return classNames;
+    }
+
+    /**
+     * @return the number of classes, fields, methods and constructors generated, without the annotations
+     */
+    public int members() {
+        return members;
+    }
+
+    /**
+     * Load the classes in a new class loader.
+     *
+     * @return the generated classes, without the annotations
+     */
+    public List<Class<?>> load() {
+        final var loader = new Loader(classFiles);
+        final var classes = new ArrayList<Class<?>>(classNames.size());
+        for (final var name : classNames) {
+            try {
+                classes.add(loader.loadClass(name));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Generated class " + name + " cannot be loaded", e);
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Write the class files into the directory, in subdirectories following the package name.
+     *
+     * @param directory the root directory of the class files
+     * @throws IOException if the files cannot be written
+     */
+    public void write(Path directory) throws IOException {
+        for (final var entry : classFiles.entrySet()) {
+            final var file = directory.resolve(entry.getKey().replace('.', '/') + ".class");
+            Files.createDirectories(file.getParent());
+            Files.write(file, entry.getValue());
+        }
+    }
+
+    private static final class Loader extends ClassLoader {
+        private final Map<String, byte[]> classFiles;
+
+        private Loader(Map<String, byte[]> classFiles) {
+            super(Corpus.class.getClassLoader());
+            this.classFiles = classFiles;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            final var bytes = classFiles.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * The constant pool of a class file.
+     */
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+
+        private int utf8(String value) {
+            return entry("U" + value, () -> {
+                out.writeByte(1);
+                out.writeUTF(value);
+            });
+        }
+
+        private int klass(String name) {
+            final var nameIndex = utf8(name);
+            return entry("C" + name, () -> {
+                out.writeByte(7);
+                out.writeShort(nameIndex);
+            });
+        }
+
+        private int methodRef(String owner, String name, String descriptor) {
+            final var ownerIndex = klass(owner);
+            final var nameIndex = utf8(name);
+            final var descriptorIndex = utf8(descriptor);
+            final var nameAndType = entry("N" + name + ":" + descriptor, () -> {
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return entry("M" + owner + "." + name + ":" + descriptor, () -> {
+                out.writeByte(10);
+                out.writeShort(ownerIndex);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        private interface Writer {
+            void write() throws IOException;
+        }
+
+        private int entry(String key, Writer writer) {
+            final var index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            entries.put(key, count);
+            return count++;
+        }
+    }
+
+    /**
+     * A field or a method of a class file.
+     */
+    private static final class Member {
+        private final int access;
+        private final int name;
+        private final int descriptor;
+        private final List<byte[]> annotations = new ArrayList<>();
+        private byte[] code;
+
+        private Member(int access, int name, int descriptor) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+    }
+
+    /**
+     * A class file with the structures the corpus needs: no interfaces other than the annotation interface, methods
+     * without branches, and annotations without parameters, except {@code @Retention}.
+     */
+    private static final class ClassFile {
+        private final ConstantPool pool = new ConstantPool();
+        private final int access;
+        private final int thisClass;
+        private final int superClass;
+        private final List<Integer> interfaces = new ArrayList<>();
+        private final List<Member> fields = new ArrayList<>();
+        private final List<Member> methods = new ArrayList<>();
+        private final List<byte[]> annotations = new ArrayList<>();
+
+        private ClassFile(String name, String superName, int access) {
+            this.access = access;
+            this.thisClass = pool.klass(name);
+            this.superClass = pool.klass(superName);
+        }
+
+        private Member member(int access, String name, String descriptor) {
+            return new Member(access, pool.utf8(name), pool.utf8(descriptor));
+        }
+
+        private Member constructor(String superName) {
+            final var constructor = member(ACC_PUBLIC, "<init>", "()V");
+            final var superConstructor = pool.methodRef(superName, "<init>", "()V");
+            constructor.code = code(new byte[]{0x2A, (byte) 0xB7, (byte) (superConstructor >> 8),
+                (byte) superConstructor, (byte) 0xB1}, 1, 1);
+            return constructor;
+        }
+
+        private byte[] code(byte[] instructions, int maxStack, int maxLocals) {
+            return bytes(out -> {
+                out.writeShort(pool.utf8("Code"));
+                out.writeInt(2 + 2 + 4 + instructions.length + 2 + 2);
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(instructions.length);
+                out.write(instructions);
+                out.writeShort(0);
+                out.writeShort(0);
+            });
+        }
+
+        private byte[] marker(String annotation) {
+            final var type = pool.utf8("L" + annotation + ";");
+            return bytes(out -> {
+                out.writeShort(type);
+                out.writeShort(0);
+            });
+        }
+
+        private byte[] retentionRuntime() {
+            final var type = pool.utf8("Ljava/lang/annotation/Retention;");
+            final var value = pool.utf8("value");
+            final var policy = pool.utf8("Ljava/lang/annotation/RetentionPolicy;");
+            final var runtime = pool.utf8("RUNTIME");
+            return bytes(out -> {
+                out.writeShort(type);
+                out.writeShort(1);
+                out.writeShort(value);
+                out.writeByte('e');
+                out.writeShort(policy);
+                out.writeShort(runtime);
+            });
+        }
+
+        private void writeAttributes(DataOutputStream out, byte[] code, List<byte[]> annotations) throws IOException {
+            out.writeShort((code == null ? 0 : 1) + (annotations.isEmpty() ? 0 : 1));
+            if (code != null) {
+                out.write(code);
+            }
+            if (!annotations.isEmpty()) {
+                out.writeShort(pool.utf8("RuntimeVisibleAnnotations"));
+                out.writeInt(2 + annotations.stream().mapToInt(a -> a.length).sum());
+                out.writeShort(annotations.size());
+                for (final var annotation : annotations) {
+                    out.write(annotation);
+                }
+            }
+        }
+
+        private void writeMembers(DataOutputStream out, List<Member> members) throws IOException {
+            out.writeShort(members.size());
+            for (final var member : members) {
+                out.writeShort(member.access);
+                out.writeShort(member.name);
+                out.writeShort(member.descriptor);
+                writeAttributes(out, member.code, member.annotations);
+            }
+        }
+
+        private byte[] bytes() {
+            // the body is written first, it may add entries to the constant pool
+            final var body = bytes(out -> {
+                out.writeShort(access);
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(interfaces.size());
+                for (final var anInterface : interfaces) {
+                    out.writeShort(anInterface);
+                }
+                writeMembers(out, fields);
+                writeMembers(out, methods);
+                writeAttributes(out, null, annotations);
+            });
+            return bytes(out -> {
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(55);
+                out.writeShort(pool.count);
+                out.write(pool.bytes.toByteArray());
+                out.write(body);
+            });
+        }
+
+        private interface Content {
+            void write(DataOutputStream out) throws IOException;
+        }
+
+        private static byte[] bytes(Content content) {
+            final var bytes = new ByteArrayOutputStream();
+            try (final var out = new DataOutputStream(bytes)) {
+                content.write(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package javax0.refi.benchmarks;
+
+import javax0.refi.Invoker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calling methods using {@link Invoker}, compared to calling the same method using {@link Method#invoke(Object,
+ * Object...)} on a method object looked up in advance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class InvokeBenchmark {
+
+    private final List<String> target = new ArrayList<>(List.of("a", "b", "c"));
+    private Method get;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        get = ArrayList.class.getMethod("get", int.class);
+    }
+
+    @Benchmark
+    public Object invokerNoArgs() {
+        return Invoker.call("size").on(target).args();
+    }
+
+    @Benchmark
+    public Object invokerTypes() {
+        return Invoker.call("get").on(target).types(int.class).args(1);
+    }
+
+    @Benchmark
+    public Object reflection() throws ReflectiveOperationException {
+        return get.invoke(target, 1);
+    }
+
+    @Threads(1)
+    public static class Single extends InvokeBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class Contended extends InvokeBenchmark {
+    }
+}
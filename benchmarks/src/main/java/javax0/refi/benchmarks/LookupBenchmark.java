@@ -0,0 +1,72 @@
+package javax0.refi.benchmarks;
+
+import javax0.refi.Utilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up methods, fields and classes using {@link Utilities}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class LookupBenchmark {
+
+    @Param({"java.util.ArrayList", "java.util.concurrent.ConcurrentHashMap", "java.lang.Thread"})
+    public String className;
+
+    @Param({"String", "java.util.ArrayList", "int[][]", "java.util.Map$Entry[]", "no.such.Klass"})
+    public String name;
+
+    private Class<?> klass;
+
+    @Setup
+    public void setup() throws ClassNotFoundException {
+        klass = Class.forName(className);
+    }
+
+    @Benchmark
+    public long methodsGetAll() {
+        return Utilities.Methods.getAll(klass).count();
+    }
+
+    @Benchmark
+    public Optional<Method> methodsGet() {
+        return Utilities.Methods.get(klass, "toString");
+    }
+
+    @Benchmark
+    public long fieldsGetAll() {
+        return Utilities.Fields.getAll(klass).count();
+    }
+
+    @Benchmark
+    public Optional<Class<?>> classesForName() {
+        return Utilities.Classes.forName(name);
+    }
+
+    @Threads(1)
+    public static class Single extends LookupBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class Contended extends LookupBenchmark {
+    }
+}
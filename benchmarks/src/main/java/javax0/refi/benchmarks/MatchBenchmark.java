@@ -0,0 +1,70 @@
+package javax0.refi.benchmarks;
+
+import javax0.refi.selector.Selector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching the members of a few JDK classes against the built-in terms and against composite expressions. The result
+ * is the time of matching one member.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class MatchBenchmark {
+
+    @Param({"public", "private", "static", "final", "abstract", "synthetic", "transient", "volatile", "default",
+        "bridge", "vararg", "void", "overrides", "interface", "enum", "annotated", "name ~ /^get/",
+        "simpleName ~ /List$/", "annotation ~ /Deprecated/", "metaAnnotation ~ /Documented/",
+        "inheritedAnnotation ~ /Deprecated/", "returns ~ /String/", "throws ~ /Exception/", "signature ~ /int/",
+        "declaringClass -> public",
+        "public & !static & name ~ /^get/",
+        "(public | protected) & !(static | final) & declaringClass -> !interface & returns ~ /^java\\.lang\\./",
+        CompileBenchmark.LONG})
+    public String expression;
+
+    private Selector<?> selector;
+    private Object[] members;
+
+    @Setup
+    public void setup() {
+        selector = Selector.compileLenient(expression);
+        members = Targets.members();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Targets.SIZE)
+    public int match() {
+        int matching = 0;
+        for (final var member : members) {
+            if (selector.match(member)) {
+                matching++;
+            }
+        }
+        return matching;
+    }
+
+    @Threads(1)
+    public static class Single extends MatchBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class Contended extends MatchBenchmark {
+    }
+}
@@ -0,0 +1,115 @@
+package javax0.refi.benchmarks;
+
+import javax0.refi.Utilities;
+import javax0.refi.selector.Caches;
+import javax0.refi.selector.Selector;
+import javax0.refi.selector.SelectorIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measure how the time grows with the number of members, with the depth of the class hierarchy and with the length
+ * of the expressions, using a synthetic {@link Corpus}.
+ * <p>
+ * The corpus contains classes in superclass chains of the given depth, each class with twenty fields and forty
+ * methods, overloaded in groups of four. The expression of the given number of terms is {@code name ~ /^m0$/ | name ~
+ * /^m1$/ | ...}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class ScalingBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int members;
+
+    @Param({"1", "10"})
+    public int depth;
+
+    @Param({"1", "100"})
+    public int terms;
+
+    private List<Class<?>> classes;
+    private Class<?> leaf;
+    private String expression;
+    private Selector<?> selector;
+    private SelectorIndex index;
+    private int counter;
+
+    @Setup
+    public void setup() {
+        final var corpus = Corpus.builder().fields(20).methods(40).overloads(4).depth(depth).members(members)
+            .annotationDensity(0.1).build();
+        classes = corpus.load();
+        leaf = classes.get(Math.min(depth, classes.size()) - 1);
+        expression = IntStream.range(0, terms).mapToObj(i -> "name ~ /^m" + i + "$/")
+            .collect(Collectors.joining(" | "));
+        selector = Selector.compileLenient("public & !static & (" + expression + ")");
+        index = SelectorIndex.of(classes);
+    }
+
+    /**
+     * Collecting the methods of the class at the bottom of the deepest hierarchy, which filters out the overridden
+     * methods of the superclasses.
+     */
+    @Benchmark
+    public long methodsGetAll() {
+        return Utilities.Methods.getAll(leaf).count();
+    }
+
+    @Benchmark
+    public Selector<?> compile() {
+        if ((++counter & 0xFF) == 0) {
+            Caches.release(null);
+        }
+        return Selector.compileLenient(expression + " | name ~ /^x" + counter + "$/");
+    }
+
+    /**
+     * Matching all the classes and their declared members.
+     */
+    @Benchmark
+    public long scan() {
+        long matching = 0;
+        for (final var klass : classes) {
+            for (final var method : klass.getDeclaredMethods()) {
+                if (selector.match(method)) {
+                    matching++;
+                }
+            }
+            for (final var field : klass.getDeclaredFields()) {
+                if (selector.match(field)) {
+                    matching++;
+                }
+            }
+        }
+        return matching;
+    }
+
+    @Benchmark
+    public SelectorIndex buildIndex() {
+        return SelectorIndex.of(classes);
+    }
+
+    @Benchmark
+    public long selectFromIndex() {
+        return index.select("public & !static & (" + expression + ")").count();
+    }
+}
@@ -0,0 +1,55 @@
+package javax0.refi.benchmarks;
+
+import javax0.refi.selector.MethodSignatureFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating the signature string of methods. The result is the time of creating one signature.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class SignatureBenchmark {
+
+    private final MethodSignatureFactory factory = new MethodSignatureFactory();
+    private Method[] methods;
+
+    @Setup
+    public void setup() {
+        methods = Targets.methods();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Targets.SIZE)
+    public void signature(Blackhole blackhole) {
+        for (final var method : methods) {
+            blackhole.consume(factory.signature(method));
+        }
+    }
+
+    @Threads(1)
+    public static class Single extends SignatureBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class Contended extends SignatureBenchmark {
+    }
+}
@@ -0,0 +1,55 @@
+package javax0.refi.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * The classes and members the benchmarks work on.
+ */
+final class Targets {
+
+    private Targets() {
+    }
+
+    static final Class<?>[] CLASSES = {String.class, ArrayList.class, HashMap.class, ConcurrentHashMap.class,
+        Thread.class, List.class, Thread.State.class};
+
+    /**
+     * The number of objects returned by {@link #members()}, which is a constant for {@code OperationsPerInvocation}.
+     */
+    static final int SIZE = 1024;
+
+    /**
+     * @return {@link #SIZE} objects, the classes, their declared methods, fields and constructors repeated as needed
+     */
+    static Object[] members() {
+        final var all = Arrays.stream(CLASSES)
+            .flatMap(klass -> Stream.of(Stream.of(klass), Arrays.stream(klass.getDeclaredMethods()),
+                Arrays.stream(klass.getDeclaredFields()), Arrays.stream(klass.getDeclaredConstructors())))
+            .flatMap(s -> s)
+            .toArray();
+        final var members = new Object[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            members[i] = all[i % all.length];
+        }
+        return members;
+    }
+
+    /**
+     * @return {@link #SIZE} declared methods of the classes repeated as needed
+     */
+    static Method[] methods() {
+        final var all = Arrays.stream(CLASSES).flatMap(klass -> Arrays.stream(klass.getDeclaredMethods()))
+            .toArray(Method[]::new);
+        final var methods = new Method[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            methods[i] = all[i % all.length];
+        }
+        return methods;
+    }
+}
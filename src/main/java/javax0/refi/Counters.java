@@ -0,0 +1,143 @@
+package javax0.refi;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters and the timers of the library. They are collected only when the system property {@code refi.metrics}
+ * is {@code true} when the library is loaded. Otherwise, the checks of the constant {@link #ENABLED} are removed by the
+ * JIT compiler together with the code they guard.
+ * <p>
+ * This class is internal to the library. The collected values can be read using {@link
+ * javax0.refi.selector.Metrics}.
+ */
+public final class Counters {
+
+    private Counters() {
+    }
+
+    public static final boolean ENABLED = Boolean.getBoolean("refi.metrics");
+
+    public enum Counter {
+        /**
+         * A compiled selector was found in the cache.
+         */
+        COMPILE_HITS,
+        /**
+         * An expression was compiled because it was not in the cache.
+         */
+        COMPILE_MISSES,
+        /**
+         * A class name was resolved from the cache of {@link Utilities.Classes}, including the names cached as missing.
+         */
+        CLASS_CACHE_HITS,
+        /**
+         * A class name was looked up by the class loader.
+         */
+        CLASS_CACHE_MISSES,
+        /**
+         * A method was called using {@link Invoker}.
+         */
+        INVOCATIONS;
+
+        private final LongAdder adder = new LongAdder();
+
+        public void increment() {
+            if (ENABLED) {
+                adder.increment();
+            }
+        }
+
+        public long sum() {
+            return adder.sum();
+        }
+    }
+
+    public enum Timer {
+        /**
+         * Parsing and optimizing an expression and building its evaluator, only for the cache misses.
+         */
+        COMPILE,
+        METHODS_GET,
+        METHODS_GET_ALL,
+        FIELDS_GET,
+        FIELDS_GET_ALL,
+        CLASSES_FOR_NAME,
+        /**
+         * Looking up the method to call in {@link Invoker}. The invoker does not cache the methods, each call looks up
+         * the method.
+         */
+        INVOKE_LOOKUP,
+        /**
+         * Calling the method in {@link Invoker}, not counting the lookup.
+         */
+        INVOKE;
+
+        private final Histogram histogram = new Histogram();
+
+        /**
+         * @return the start time to pass to {@link #stop(long)}, or zero if the metrics are not collected
+         */
+        public static long start() {
+            return ENABLED ? System.nanoTime() : 0;
+        }
+
+        /**
+         * Record the time elapsed since the start.
+         *
+         * @param start the value returned by {@link #start()}
+         */
+        public void stop(long start) {
+            if (ENABLED) {
+                histogram.record(System.nanoTime() - start);
+            }
+        }
+
+        public Histogram histogram() {
+            return histogram;
+        }
+    }
+
+    /**
+     * A histogram of durations in nanoseconds. The bucket {@code i} counts the durations that are at least {@code
+     * 2^(i-1)} and less than {@code 2^i}, the bucket zero counts the zero durations.
+     */
+    public static final class Histogram {
+        public static final int BUCKETS = 64;
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+        public Histogram() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void record(long nanos) {
+            final var duration = Math.max(0, nanos);
+            buckets[BUCKETS - Long.numberOfLeadingZeros(duration)].increment();
+            total.add(duration);
+            max.accumulate(duration);
+        }
+
+        /**
+         * @return the number of durations in each bucket
+         */
+        public long[] buckets() {
+            final var counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return counts;
+        }
+
+        public long total() {
+            return total.sum();
+        }
+
+        public long max() {
+            return max.get();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package javax0.refi;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The JDK Flight Recorder events of the library: {@code javax0.refi.Compile}, {@code javax0.refi.Match}, {@code
+ * javax0.refi.Catalog} and {@code javax0.refi.InvocationLookup}. They are recorded when a recording is running, for
+ * example, when the JVM is started with {@code -XX:StartFlightRecording}, and they can be disabled or given a
+ * threshold in the recording settings. When no recording is running, creating and reporting an event costs only a
+ * check of a flag.
+ * <p>
+ * The library does not require the {@code jdk.jfr} module. When it is not in the runtime, for example in an image
+ * created by {@code jlink} without it, the factory methods return {@code null} and the event classes are not loaded.
+ * An application running on the module path has to resolve the module, for example with {@code --add-modules jdk.jfr},
+ * to record the events.
+ * <p>
+ * This class is internal to the library.
+ */
+public final class Events {
+
+    private Events() {
+    }
+
+    private static final String CATEGORY = "Refi";
+
+    private static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+    /**
+     * @return the started event or {@code null} if the events are not available
+     */
+    public static Compile compile() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        final var event = new Compile();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @return the started event or {@code null} if the events are not available
+     */
+    public static Match match() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        final var event = new Match();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @return the started event or {@code null} if the events are not available
+     */
+    public static Catalog catalog() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        final var event = new Catalog();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @return the started event or {@code null} if the events are not available
+     */
+    public static InvocationLookup invocationLookup() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        final var event = new InvocationLookup();
+        event.begin();
+        return event;
+    }
+
+    @Name("javax0.refi.Compile")
+    @Label("Selector Compilation")
+    @Description("Parsing, optimizing and building the evaluator of a selector expression that was not in the cache")
+    @Category(CATEGORY)
+    public static final class Compile extends Event {
+        @Label("Expression")
+        String expression;
+        @Label("Kind")
+        Class<?> kind;
+        @Label("Lenient")
+        boolean lenient;
+
+        public void report(String expression, Class<?> kind, boolean lenient) {
+            if (shouldCommit()) {
+                this.expression = expression;
+                this.kind = kind;
+                this.lenient = lenient;
+                commit();
+            }
+        }
+    }
+
+    @Name("javax0.refi.Match")
+    @Label("Selector Match Batch")
+    @Description("Matching the members of a segment of a selector index against an expression")
+    @Category(CATEGORY)
+    public static final class Match extends Event {
+        @Label("Expression")
+        String expression;
+        @Label("Kind")
+        Class<?> kind;
+        @Label("Members")
+        @Description("The number of classes and members in the segment")
+        int members;
+        @Label("Selected")
+        @Description("The number of classes or members that matched")
+        int selected;
+
+        public void report(String expression, Class<?> kind, int members, int selected) {
+            if (shouldCommit()) {
+                this.expression = expression;
+                this.kind = kind;
+                this.members = members;
+                this.selected = selected;
+                commit();
+            }
+        }
+    }
+
+    @Name("javax0.refi.Catalog")
+    @Label("Member Catalog Build")
+    @Description("Collecting the members of a class, or indexing the members of classes")
+    @Category(CATEGORY)
+    public static final class Catalog extends Event {
+        @Label("Catalog")
+        @Description("What was collected, like methods, declaredFields or index")
+        String catalog;
+        @Label("Class")
+        @Description("The class the members were collected of, not set for an index")
+        Class<?> type;
+        @Label("Classes")
+        int classes;
+        @Label("Members")
+        int members;
+
+        public void report(String catalog, Class<?> type, int classes, int members) {
+            if (shouldCommit()) {
+                this.catalog = catalog;
+                this.type = type;
+                this.classes = classes;
+                this.members = members;
+                commit();
+            }
+        }
+    }
+
+    @Name("javax0.refi.InvocationLookup")
+    @Label("Invocation Lookup")
+    @Description("Looking up the method to call by Invoker, which is done for each call because the methods are not cached")
+    @Category(CATEGORY)
+    public static final class InvocationLookup extends Event {
+        @Label("Class")
+        Class<?> type;
+        @Label("Method")
+        String method;
+        @Label("Found")
+        boolean found;
+
+        public void report(Class<?> type, String method, boolean found) {
+            if (shouldCommit()) {
+                this.type = type;
+                this.method = method;
+                this.found = found;
+                commit();
+            }
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package javax0.refi;
 
+import javax0.refi.Counters.Counter;
+import javax0.refi.Counters.Timer;
+
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Optional;
@@ -24,34 +27,47 @@ public class Invoker {
 
     public class FromClass {
         public WithArgument types(Class<?>... types) {
-            method = Utilities.Methods.get(target.getClass(), methodName, types)
-                .orElseThrow(() -> new IllegalArgumentException("No method " + methodName + " with types " + types + " found on " + target.getClass()));
+            final var start = Timer.start();
+            final var event = Events.invocationLookup();
+            final var found = Utilities.Methods.get(target.getClass(), methodName, types);
+            if (event != null) {
+                event.report(target.getClass(), methodName, found.isPresent());
+            }
+            method = found.orElseThrow(() -> new IllegalArgumentException("No method " + methodName + " with types " + types + " found on " + target.getClass()));
+            Timer.INVOKE_LOOKUP.stop(start);
             return new WithArgument();
         }
         public Object args(Object... args) {
-            method = Utilities.Methods.get(target.getClass(), methodName)
-                .orElseThrow(() -> new IllegalArgumentException("No method " + methodName + " without arguments found on " + target.getClass()));
-            try {
-                method.setAccessible(true);
-                return method.invoke(target, args);
-            } catch (IllegalAccessException iae) {
-                throw new RuntimeException(iae);
-            } catch (InvocationTargetException ite) {
-                throw sneakyThrow(ite.getCause());
+            final var start = Timer.start();
+            final var event = Events.invocationLookup();
+            final var found = Utilities.Methods.get(target.getClass(), methodName);
+            if (event != null) {
+                event.report(target.getClass(), methodName, found.isPresent());
             }
+            method = found.orElseThrow(() -> new IllegalArgumentException("No method " + methodName + " without arguments found on " + target.getClass()));
+            Timer.INVOKE_LOOKUP.stop(start);
+            return invoke(args);
         }
     }
 
     public class WithArgument {
         public Object args(Object... args) {
-            try {
-                method.setAccessible(true);
-                return method.invoke(target, args);
-            } catch (IllegalAccessException iae) {
-                throw new RuntimeException(iae);
-            } catch (InvocationTargetException ite) {
-                throw sneakyThrow(ite.getCause());
-            }
+            return invoke(args);
+        }
+    }
+
+    private Object invoke(Object... args) {
+        Counter.INVOCATIONS.increment();
+        final var start = Timer.start();
+        try {
+            method.setAccessible(true);
+            return method.invoke(target, args);
+        } catch (IllegalAccessException iae) {
+            throw new RuntimeException(iae);
+        } catch (InvocationTargetException ite) {
+            throw sneakyThrow(ite.getCause());
+        } finally {
+            Timer.INVOKE.stop(start);
         }
     }
 
@@ -1,18 +1,26 @@
 package javax0.refi;
 
+import javax0.refi.Counters.Counter;
+import javax0.refi.Counters.Timer;
 import javax0.refi.selector.MethodSignatureFactory;
 import javax0.refi.selector.Selector;
 
-import java.lang.reflect.Array;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -78,14 +86,18 @@ public class Utilities {
          * @return an optional method
          */
         public static Optional<Method> get(Class<?> klass, String methodName, Class<?>... classes) {
+            final var start = Timer.start();
+            final Optional<Method> method;
             if (classes.length == 0) {
-                return getAll(klass).filter(method -> method.getName().equals(methodName) && method.getParameterTypes().length == 0 ).findFirst()
-                    .or( () -> getAll(klass).filter(method -> method.getName().equals(methodName)).collect(toSingleton()));
+                method = getAll(klass).filter(m -> m.getName().equals(methodName) && m.getParameterTypes().length == 0 ).findFirst()
+                    .or( () -> getAll(klass).filter(m -> m.getName().equals(methodName)).collect(toSingleton()));
             } else {
-                return getAll(klass)
-                    .filter(method -> method.getName().equals(methodName) && Arrays.deepEquals(method.getParameterTypes(), classes))
+                method = getAll(klass)
+                    .filter(m -> m.getName().equals(methodName) && Arrays.deepEquals(m.getParameterTypes(), classes))
                     .findFirst();
             }
+            Timer.METHODS_GET.stop(start);
+            return method;
         }
 
         private static Collector<Method, ?, Optional<Method>> toSingleton() {
@@ -110,14 +122,22 @@ public class Utilities {
          * @return the array of the methods of the class
          */
         public static Stream<Method> getAll(final Class<?> klass) {
+            final var start = Timer.start();
+            final var event = Events.catalog();
             final var allMethods = new ArrayList<>(Arrays.asList(klass.getDeclaredMethods()));
             var samePackage = true;
+            var classes = 1;
             for (var currentClass = klass.getSuperclass(); currentClass != null; currentClass = currentClass.getSuperclass()) {
                 samePackage = samePackage && klass.getPackage() == currentClass.getPackage();
                 collectMethods(samePackage, currentClass, allMethods);
+                classes++;
             }
             final Method[] methodArray = allMethods.toArray(new Method[0]);
             Arrays.sort(methodArray, Comparator.comparing(m -> new MethodSignatureFactory().signature(m)));
+            Timer.METHODS_GET_ALL.stop(start);
+            if (event != null) {
+                event.report("Methods.getAll", klass, classes, methodArray.length);
+            }
             return Arrays.stream(methodArray);
         }
 
@@ -162,20 +182,31 @@ public class Utilities {
          * @return the sorted array of fields
          */
         public static Stream<Field> getAll(Class<?> klass) {
+            final var start = Timer.start();
+            final var event = Events.catalog();
             Set<Field> allFields = new HashSet<>(Arrays.asList(klass.getDeclaredFields()));
             var samePackage = true;
+            var classes = 1;
             for (var currentClass = klass.getSuperclass(); currentClass != null; currentClass = currentClass.getSuperclass()) {
                 samePackage = samePackage && klass.getPackage() == currentClass.getPackage();
                 collect(samePackage, currentClass, allFields);
+                classes++;
             }
             final var fieldsArray = allFields.toArray(new Field[0]);
             Arrays.sort(fieldsArray, Comparator.comparing(Field::getName));
+            Timer.FIELDS_GET_ALL.stop(start);
+            if (event != null) {
+                event.report("Fields.getAll", klass, classes, fieldsArray.length);
+            }
             return Arrays.stream(fieldsArray);
         }
 
         public static Optional<Field> get(Class<?> klass, String fieldName) {
-            return getAll(klass)
-                .filter(field -> field.getName().equals(fieldName)).findAny();
+            final var start = Timer.start();
+            final var field = getAll(klass)
+                .filter(f -> f.getName().equals(fieldName)).findAny();
+            Timer.FIELDS_GET.stop(start);
+            return field;
         }
 
         /**
@@ -196,6 +227,24 @@ public class Utilities {
     }
 
     public static class Classes {
+        /**
+         * The results of the class name resolutions for each class loader. The classes are referenced weakly, and the
+         * names that cannot be resolved are stored as {@link #MISSING}, so that a missing class is searched only once.
+         * The map does not prevent the class loaders from being garbage collected.
+         */
+        private static final Map<ClassLoader, Map<String, Reference<Class<?>>>> resolved =
+            Collections.synchronizedMap(new WeakHashMap<>());
+        private static final Reference<Class<?>> MISSING = new WeakReference<>(null);
+        private static final Map<Class<?>, Character> DESCRIPTORS = Map.of(
+            byte.class, 'B',
+            char.class, 'C',
+            short.class, 'S',
+            int.class, 'I',
+            long.class, 'J',
+            float.class, 'F',
+            double.class, 'D',
+            boolean.class, 'Z');
+
         /**
          * Get the class that is represented by the name {@code className}. This functionality extends the basic
          * functionality provided by the static method {@link Class#forName(String)} so that it also works for input
@@ -208,22 +257,125 @@ public class Utilities {
          * <p>
          * Note that there are many everyday used types, like {@code Map}, which are NOT in the {@code java.lang} package.
          * They have to be specified with the fully qualified name.
+         * <p>
+         * The results, including the names that cannot be resolved, are cached for the class loader of this class. Call
+         * {@link #release(ClassLoader)} to forget them.
          *
          * @param className the name of the class or a primitive type optionally one or more {@code []} pairs at the end.
          *                  The JVM limitation is that there can be at most 255 {@code []} pairs.
          * @return the optional class
          */
         public static Optional<Class<?>> forName(String className) {
-            var arrayCounter = 0;
-            while (className.endsWith("[]")) {
-                className = className.substring(0, className.length() - 2);
-                arrayCounter++;
+            return forName(className, Classes.class.getClassLoader());
+        }
+
+        /**
+         * The same as {@link #forName(String)} but the classes are loaded by the given class loader, and the results are
+         * cached for the class loader.
+         *
+         * @param className the name of the class or a primitive type optionally one or more {@code []} pairs at the end
+         * @param loader    the class loader to load the class, {@code null} for the bootstrap class loader
+         * @return the optional class
+         */
+        public static Optional<Class<?>> forName(String className, ClassLoader loader) {
+            final var start = Timer.start();
+            final var klass = Optional.<Class<?>>ofNullable(resolve(className, cache(loader), loader));
+            Timer.CLASSES_FOR_NAME.stop(start);
+            return klass;
+        }
+
+        /**
+         * Resolve many class names at once, see {@link #forName(String)}.
+         *
+         * @param classNames the names of the classes
+         * @return the map from the names to the optional classes in the order of the names
+         */
+        public static Map<String, Optional<Class<?>>> forNames(Collection<String> classNames) {
+            return forNames(classNames, Classes.class.getClassLoader());
+        }
+
+        /**
+         * Resolve many class names at once using the given class loader, see {@link #forName(String, ClassLoader)}.
+         *
+         * @param classNames the names of the classes
+         * @param loader     the class loader to load the classes, {@code null} for the bootstrap class loader
+         * @return the map from the names to the optional classes in the order of the names
+         */
+        public static Map<String, Optional<Class<?>>> forNames(Collection<String> classNames, ClassLoader loader) {
+            final var cache = cache(loader);
+            final var classes = new LinkedHashMap<String, Optional<Class<?>>>();
+            for (final var className : classNames) {
+                classes.computeIfAbsent(className, name -> Optional.ofNullable(resolve(name, cache, loader)));
+            }
+            return classes;
+        }
+
+        /**
+         * Forget the class names resolved by the class loader.
+         *
+         * @param loader the class loader
+         */
+        public static void release(ClassLoader loader) {
+            resolved.remove(loader);
+        }
+
+        private static Map<String, Reference<Class<?>>> cache(ClassLoader loader) {
+            return resolved.computeIfAbsent(loader, k -> new ConcurrentHashMap<>());
+        }
+
+        private static Class<?> resolve(String className, Map<String, Reference<Class<?>>> cache, ClassLoader loader) {
+            final var cached = cache.get(className);
+            if (cached == MISSING) {
+                Counter.CLASS_CACHE_HITS.increment();
+                return null;
             }
-            var klass = classForNoArray(className);
-            while (arrayCounter-- > 0) {
-                klass = Array.newInstance(klass, 0).getClass();
+            if (cached != null) {
+                final var klass = cached.get();
+                if (klass != null) {
+                    Counter.CLASS_CACHE_HITS.increment();
+                    return klass;
+                }
+            }
+            Counter.CLASS_CACHE_MISSES.increment();
+            final var klass = load(className, cache, loader);
+            cache.put(className, klass == null ? MISSING : new WeakReference<>(klass));
+            return klass;
+        }
+
+        private static Class<?> load(String className, Map<String, Reference<Class<?>>> cache, ClassLoader loader) {
+            var end = className.length();
+            var dimensions = 0;
+            while (end >= 2 && className.startsWith("[]", end - 2)) {
+                end -= 2;
+                dimensions++;
+            }
+            if (dimensions == 0) {
+                return classForNoArray(className, loader);
+            }
+            final var component = resolve(className.substring(0, end), cache, loader);
+            return component == null ? null : arrayOf(component, dimensions);
+        }
+
+        /**
+         * Get the array class using its descriptor, like {@code [[Ljava.lang.String;}, without creating array instances.
+         */
+        private static Class<?> arrayOf(Class<?> component, int dimensions) {
+            final var descriptor = new StringBuilder(dimensions + component.getName().length() + 2);
+            for (int i = 0; i < dimensions; i++) {
+                descriptor.append('[');
+            }
+            if (component.isArray()) {
+                descriptor.append(component.getName());
+            } else if (component.isPrimitive()) {
+                descriptor.append(DESCRIPTORS.get(component));
+            } else {
+                descriptor.append('L').append(component.getName()).append(';');
+            }
+            try {
+                return Class.forName(descriptor.toString(), false, component.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                return null;
             }
-            return Optional.ofNullable(klass);
         }
 
         /**
@@ -273,15 +425,15 @@ public class Utilities {
             return Arrays.stream(classes);
         }
 
-        private static Class<?> classForNoArray(String name) {
+        private static Class<?> classForNoArray(String name, ClassLoader loader) {
             if (PRIMITIVES.containsKey(name)) {
                 return PRIMITIVES.get(name);
             }
             try {
-                return Class.forName(name);
+                return Class.forName(name, true, loader);
             } catch (ClassNotFoundException ignored) {
                 try {
-                    return Class.forName("java.lang." + name);
+                    return Class.forName("java.lang." + name, true, loader);
                 } catch (ClassNotFoundException e) {
                     return null;
                 }
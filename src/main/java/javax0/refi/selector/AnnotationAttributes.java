@@ -0,0 +1,228 @@
+package javax0.refi.selector;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Support of the {@code annotation(Name).attribute ~ /regex/} and {@code annotation(Name).attribute = constant}
+ * conditions.
+ * <p>
+ * The attributes are read through {@link MethodHandle}s, which are created once for each annotation type and attribute
+ * name, and are cached in a {@link ClassValue}. The constant of a comparison is converted once for each type of the
+ * attribute values, so that the comparison itself does not need any conversion or allocation.
+ */
+final class AnnotationAttributes {
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Annotation.class);
+
+    private AnnotationAttributes() {
+    }
+
+    /**
+     * The accessors of the attributes of the annotation types by the name of the attributes. The value is empty if the
+     * annotation type has no attribute of the name.
+     */
+    private static final ClassValue<Map<String, Optional<MethodHandle>>> ACCESSORS = new ClassValue<>() {
+        @Override
+        protected Map<String, Optional<MethodHandle>> computeValue(Class<?> annotationType) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    /**
+     * Create a test that checks that an element has an annotation with the given name and the attribute of the
+     * annotation satisfies the value test.
+     *
+     * @param annotation the simple, canonical, or any dot separated postfix of the canonical name of the annotation
+     * @param attribute  the name of the attribute
+     * @param valueTest  the test of the value of the attribute
+     * @return the test
+     */
+    static Predicate<AnnotatedElement> matching(String annotation, String attribute, Predicate<Object> valueTest) {
+        final var name = Pattern.compile("(^|\\.)" + Pattern.quote(annotation) + "$");
+        final var annotated = Annotations.matching(name);
+        final var named = new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(Class<?> annotationType) {
+                return name.matcher(Annotations.name(annotationType)).find();
+            }
+        };
+        return element -> {
+            if (!annotated.test(element)) {
+                return false;
+            }
+            for (final var a : element.getAnnotations()) {
+                final var annotationType = a.annotationType();
+                if (named.get(annotationType)) {
+                    final var accessor = accessor(annotationType, attribute);
+                    if (accessor.isPresent() && valueTest.test(read(accessor.get(), a))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        };
+    }
+
+    private static Optional<MethodHandle> accessor(Class<?> annotationType, String attribute) {
+        final var accessors = ACCESSORS.get(annotationType);
+        final var accessor = accessors.get(attribute);
+        if (accessor != null) {
+            return accessor;
+        }
+        final var created = createAccessor(annotationType, attribute);
+        accessors.put(attribute, created);
+        return created;
+    }
+
+    private static Optional<MethodHandle> createAccessor(Class<?> annotationType, String attribute) {
+        final Method method;
+        try {
+            method = annotationType.getDeclaredMethod(attribute);
+        } catch (NoSuchMethodException e) {
+            return Optional.empty();
+        }
+        AnnotationAttributes.class.getModule().addReads(annotationType.getModule());
+        try {
+            return Optional.of(MethodHandles.lookup().unreflect(method).asType(ACCESSOR_TYPE));
+        } catch (IllegalAccessException ignored) {
+        }
+        if (!method.trySetAccessible()) {
+            throw new IllegalArgumentException("The attribute '" + attribute + "' of the annotation '"
+                + annotationType.getName() + "' is not accessible");
+        }
+        try {
+            return Optional.of(MethodHandles.lookup().unreflect(method).asType(ACCESSOR_TYPE));
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("The attribute '" + attribute + "' of the annotation '"
+                + annotationType.getName() + "' is not accessible", e);
+        }
+    }
+
+    private static Object read(MethodHandle accessor, Annotation annotation) {
+        try {
+            return (Object) accessor.invokeExact(annotation);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalArgumentException("The attribute of the annotation '"
+                + annotation.annotationType().getName() + "' cannot be read", t);
+        }
+    }
+
+    /**
+     * Create a test that checks that the value, or any element of the value if it is an array, matches the regular
+     * expression. Classes are represented by their names, enum constants by their names, and other values by their
+     * string representation.
+     *
+     * @param regex the regular expression
+     * @return the test
+     */
+    static Predicate<Object> matchingValue(Pattern regex) {
+        return anyElement(value -> regex.matcher(string(value)).find());
+    }
+
+    private static String string(Object value) {
+        if (value instanceof Class) {
+            return ((Class<?>) value).getName();
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * Create a test that checks that the value, or any element of the value if it is an array, is equal to the
+     * constant. The constant is converted to the type of the attribute value when a value of the type is first tested.
+     *
+     * @param constant the constant as it was written in the expression
+     * @return the test
+     */
+    static Predicate<Object> equalValue(String constant) {
+        final var tests = new ClassValue<Predicate<Object>>() {
+            @Override
+            protected Predicate<Object> computeValue(Class<?> type) {
+                if (type == String.class) {
+                    return constant::equals;
+                }
+                if (type == Integer.class) {
+                    return parsed(Integer::valueOf);
+                }
+                if (type == Long.class) {
+                    return parsed(Long::valueOf);
+                }
+                if (type == Short.class) {
+                    return parsed(Short::valueOf);
+                }
+                if (type == Byte.class) {
+                    return parsed(Byte::valueOf);
+                }
+                if (type == Double.class) {
+                    return parsed(Double::valueOf);
+                }
+                if (type == Float.class) {
+                    return parsed(Float::valueOf);
+                }
+                if (type == Boolean.class) {
+                    return parsed(s -> {
+                        if (!s.equals("true") && !s.equals("false")) {
+                            throw new IllegalArgumentException();
+                        }
+                        return Boolean.valueOf(s);
+                    });
+                }
+                if (type == Character.class) {
+                    return constant.length() == 1 ? Character.valueOf(constant.charAt(0))::equals : value -> false;
+                }
+                if (type == Class.class) {
+                    return value -> constant.equals(((Class<?>) value).getName())
+                        || constant.equals(((Class<?>) value).getCanonicalName());
+                }
+                if (Enum.class.isAssignableFrom(type)) {
+                    return value -> constant.equals(((Enum<?>) value).name());
+                }
+                return value -> constant.equals(String.valueOf(value));
+            }
+
+            private Predicate<Object> parsed(Function<String, Object> parser) {
+                final Object parsed;
+                try {
+                    parsed = parser.apply(constant);
+                } catch (IllegalArgumentException e) {
+                    return value -> false;
+                }
+                return parsed::equals;
+            }
+        };
+        return anyElement(value -> tests.get(value.getClass()).test(value));
+    }
+
+    private static Predicate<Object> anyElement(Predicate<Object> test) {
+        return new Predicate<>() {
+            @Override
+            public boolean test(Object value) {
+                if (value.getClass().isArray()) {
+                    final var length = Array.getLength(value);
+                    for (int i = 0; i < length; i++) {
+                        if (test(Array.get(value, i))) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+                return test.test(value);
+            }
+        };
+    }
+}
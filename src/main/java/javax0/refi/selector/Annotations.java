@@ -0,0 +1,292 @@
+package javax0.refi.selector;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Cache of the annotations of the annotated elements supporting the {@code annotation ~ /regex/}, {@code
+ * metaAnnotation ~ /regex/}, {@code inheritedAnnotation ~ /regex/} and {@code annotated} selectors.
+ * <p>
+ * Each annotation type name gets a small integer id from a global dictionary when it is first seen. The annotation
+ * types of the same name loaded by different class loaders, for example when a class is reloaded, share the id, so
+ * the dictionary does not grow with each class loader. The annotations of an element are represented by a {@link
+ * BitSet} of the ids of the annotation types. The bit sets of the classes are cached in a {@link ClassValue}, and the
+ * bit sets of the members are cached in a map that belongs to the declaring class, also in a {@link ClassValue}. The
+ * cache does not prevent the unloading of the classes, and the dictionary only contains the names of the annotation
+ * types, not the types. The annotation types reachable from an annotation type through the annotations of the
+ * annotation types (meta annotations) are also calculated only once for each annotation type.
+ * <p>
+ * A regular expression is matched against the names in the dictionary and not against the annotations of the
+ * elements. The result is a bit set, which is extended when new annotation types get into the dictionary. Matching an
+ * element is an intersection of two bit sets.
+ * <p>
+ * The bit sets returned by the methods of this class are shared, they must not be modified.
+ */
+final class Annotations {
+    private static final BitSet NONE = new BitSet();
+
+    /**
+     * The names of the annotation types indexed by their ids.
+     */
+    private static final List<String> names = new CopyOnWriteArrayList<>();
+    /**
+     * The ids of the names of the annotation types. Guarded by {@link #names}.
+     */
+    private static final Map<String, Integer> ids = new HashMap<>();
+
+    private Annotations() {
+    }
+
+    private static final ClassValue<Integer> IDS = new ClassValue<>() {
+        @Override
+        protected Integer computeValue(Class<?> annotationType) {
+            final var name = name(annotationType);
+            synchronized (names) {
+                return ids.computeIfAbsent(name, k -> {
+                    names.add(k);
+                    return names.size() - 1;
+                });
+            }
+        }
+    };
+
+    /**
+     * @param annotationType the annotation type
+     * @return the name of the annotation type the regular expressions are matched against
+     */
+    static String name(Class<?> annotationType) {
+        final var name = annotationType.getCanonicalName();
+        return name == null ? annotationType.getName() : name;
+    }
+
+    /**
+     * The ids of the annotation type and all the annotation types that annotate it directly or through other
+     * annotation types.
+     */
+    private static final ClassValue<BitSet> META_CLOSURE = new ClassValue<>() {
+        @Override
+        protected BitSet computeValue(Class<?> annotationType) {
+            final var bits = new BitSet();
+            final Set<Class<?>> visited = new HashSet<>();
+            final var queue = new ArrayDeque<Class<?>>();
+            queue.add(annotationType);
+            while (!queue.isEmpty()) {
+                final var type = queue.remove();
+                if (visited.add(type)) {
+                    bits.set(IDS.get(type));
+                    for (final var annotation : type.getAnnotations()) {
+                        queue.add(annotation.annotationType());
+                    }
+                }
+            }
+            return bits;
+        }
+    };
+
+    private static final Cache DIRECT = new Cache(Annotations::direct);
+    private static final Cache META = new Cache(Annotations::meta);
+    private static final Cache INHERITED = new Cache(Annotations::inherited);
+
+    /**
+     * @param element the annotated element
+     * @return the set of the ids of the annotation types the element is annotated with
+     */
+    static BitSet of(AnnotatedElement element) {
+        return DIRECT.get(element);
+    }
+
+    private static BitSet direct(AnnotatedElement element) {
+        final var annotations = element.getAnnotations();
+        if (annotations.length == 0) {
+            return NONE;
+        }
+        final var bits = new BitSet();
+        for (final var annotation : annotations) {
+            bits.set(IDS.get(annotation.annotationType()));
+        }
+        return bits;
+    }
+
+    private static BitSet meta(AnnotatedElement element) {
+        final var annotations = element.getAnnotations();
+        if (annotations.length == 0) {
+            return NONE;
+        }
+        final var bits = new BitSet();
+        for (final var annotation : annotations) {
+            bits.or(META_CLOSURE.get(annotation.annotationType()));
+        }
+        return bits;
+    }
+
+    /**
+     * Collect the annotations of the element and the annotations of the superclasses and interfaces for a class, or
+     * the annotations of the overridden methods for a method.
+     */
+    private static BitSet inherited(AnnotatedElement element) {
+        if (element instanceof Class) {
+            final var klass = (Class<?>) element;
+            final var bits = (BitSet) of(klass).clone();
+            for (final var superClass : Hierarchy.supers(klass)) {
+                bits.or(of(superClass));
+            }
+            for (final var interfAce : Hierarchy.interfaces(klass)) {
+                bits.or(of(interfAce));
+            }
+            return bits;
+        }
+        if (element instanceof Method) {
+            final var method = (Method) element;
+            final var bits = (BitSet) of(method).clone();
+            if (Modifier.isPrivate(method.getModifiers()) || Modifier.isStatic(method.getModifiers())) {
+                return bits;
+            }
+            final var klass = method.getDeclaringClass();
+            for (final var superClass : Hierarchy.supers(klass)) {
+                overridden(superClass, method).ifPresent(m -> bits.or(of(m)));
+            }
+            for (final var interfAce : Hierarchy.interfaces(klass)) {
+                overridden(interfAce, method).ifPresent(m -> bits.or(of(m)));
+            }
+            return bits;
+        }
+        return of(element);
+    }
+
+    private static Optional<Method> overridden(Class<?> klass, Method method) {
+        try {
+            final var overridden = klass.getDeclaredMethod(method.getName(), method.getParameterTypes());
+            return Modifier.isPrivate(overridden.getModifiers()) ? Optional.empty() : Optional.of(overridden);
+        } catch (NoSuchMethodException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Create a test that checks that an element has an annotation with a name that matches the regular expression.
+     *
+     * @param regex the regular expression
+     * @return the test
+     */
+    static Predicate<AnnotatedElement> matching(Pattern regex) {
+        return matching(regex, DIRECT);
+    }
+
+    /**
+     * Create a test that checks that an element has an annotation that matches the regular expression or is
+     * annotated, directly or through other annotations, with an annotation that matches the regular expression.
+     *
+     * @param regex the regular expression
+     * @return the test
+     */
+    static Predicate<AnnotatedElement> matchingMeta(Pattern regex) {
+        return matching(regex, META);
+    }
+
+    /**
+     * Create a test that checks that an element, or for a class any of the superclasses and interfaces, for a method
+     * any of the overridden methods has an annotation that matches the regular expression.
+     *
+     * @param regex the regular expression
+     * @return the test
+     */
+    static Predicate<AnnotatedElement> matchingInherited(Pattern regex) {
+        return matching(regex, INHERITED);
+    }
+
+    private static Predicate<AnnotatedElement> matching(Pattern regex, Cache cache) {
+        final var matching = new Matching(regex);
+        return element -> matching.intersects(cache.get(element));
+    }
+
+    /**
+     * Cache of the annotation id sets of the classes and the members calculated by some function.
+     */
+    private static final class Cache {
+        private final Function<AnnotatedElement, BitSet> calculation;
+        private final ClassValue<BitSet> classes = new ClassValue<>() {
+            @Override
+            protected BitSet computeValue(Class<?> klass) {
+                return calculation.apply(klass);
+            }
+        };
+        private final ClassValue<Map<Member, BitSet>> members = new ClassValue<>() {
+            @Override
+            protected Map<Member, BitSet> computeValue(Class<?> klass) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
+        private Cache(Function<AnnotatedElement, BitSet> calculation) {
+            this.calculation = calculation;
+        }
+
+        BitSet get(AnnotatedElement element) {
+            if (element instanceof Class) {
+                return classes.get((Class<?>) element);
+            }
+            if (element instanceof Member) {
+                final var map = members.get(((Member) element).getDeclaringClass());
+                final var bits = map.get(element);
+                if (bits != null) {
+                    return bits;
+                }
+                final var calculated = calculation.apply(element);
+                map.put((Member) element, calculated);
+                return calculated;
+            }
+            return calculation.apply(element);
+        }
+    }
+
+    /**
+     * The set of the ids of the annotation types whose name matches a regular expression. The set is extended when
+     * the dictionary contains new annotation types.
+     */
+    private static final class Matching {
+        private final Pattern regex;
+        private volatile BitSet matching = new BitSet();
+        /**
+         * The number of the names from the dictionary that were already matched against the regular expression.
+         */
+        private volatile int resolved = 0;
+
+        private Matching(Pattern regex) {
+            this.regex = regex;
+        }
+
+        boolean intersects(BitSet annotations) {
+            if (annotations.length() > resolved) {
+                resolve();
+            }
+            return matching.intersects(annotations);
+        }
+
+        private synchronized void resolve() {
+            final var size = names.size();
+            final var extended = (BitSet) matching.clone();
+            for (int id = resolved; id < size; id++) {
+                if (regex.matcher(names.get(id)).find()) {
+                    extended.set(id);
+                }
+            }
+            matching = extended;
+            resolved = size;
+        }
+    }
+}
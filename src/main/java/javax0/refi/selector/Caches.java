@@ -0,0 +1,243 @@
+package javax0.refi.selector;
+
+import javax0.refi.Utilities;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * The caches of the library and their control.
+ * <p>
+ * The metadata cached for the classes, like the member tables, the superclasses and interfaces, the annotations and
+ * the method handles reading the annotation attributes are stored in {@link ClassValue}s. These caches belong to the
+ * classes they describe, and they are released together with the classes when the class loader is garbage collected.
+ * <p>
+ * The compiled selectors are cached for each kind they were compiled for, also in a {@link ClassValue}. The selectors
+ * compiled for the JDK classes, like {@link java.lang.reflect.Method Method} or {@link Object}, are kept as long as
+ * the application runs and the memory is not needed for something else. Such a selector may reference the classes of an application class loader through the
+ * functions defined calling {@link Selector#selector(String, java.util.function.Function) selector()}, {@link
+ * Selector#regexSelector(String, java.util.function.BiFunction) regexSelector()} or {@link
+ * Selector#converter(String, java.util.function.Function) converter()}. Call {@link #release(ClassLoader)} when an
+ * application is undeployed to drop these selectors.
+ * <p>
+ * The classes resolved by {@link Utilities.Classes#forName(String, ClassLoader)} are cached for each class loader. This
+ * cache references the classes and the class loaders weakly, {@link #release(ClassLoader)} also drops the names
+ * resolved by the class loader.
+ */
+public final class Caches {
+
+    private Caches() {
+    }
+
+    /**
+     * The registry of the selector caches to support {@link #release(ClassLoader)} and {@link #retainedEntries()}.
+     * The registry does not prevent the caches, and the kinds they belong to, from being garbage collected.
+     */
+    private static final Set<SelectorCache> caches = Collections.synchronizedSet(
+        Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private static final ClassValue<SelectorCache> SELECTORS = new ClassValue<>() {
+        @Override
+        protected SelectorCache computeValue(Class<?> kind) {
+            final var it = new SelectorCache(kind);
+            caches.add(it);
+            return it;
+        }
+    };
+
+    /**
+     * The compiled selectors of a kind by the expression string, and the evaluators by the compiled structure. The
+     * selectors of equivalent expressions, like {@code !static & public} and {@code !static&public}, are different
+     * objects, but they share the same evaluator until a function of the selector is redefined.
+     * <p>
+     * The selectors are referenced softly, the garbage collector drops them when the memory is needed, and the entries
+     * of the dropped selectors are removed the next time the cache is used. The evaluators are referenced through the
+     * interned structure of the expression, which is referenced weakly, and only the selectors keep it alive. When all
+     * the selectors of an expression are dropped, then its evaluator and its interned nodes are dropped as well.
+     */
+    private static final class SelectorCache {
+        private final Class<?> kind;
+        private final Map<String, SoftSelector> selectors = new ConcurrentHashMap<>();
+        private final ReferenceQueue<Selector<?>> dropped = new ReferenceQueue<>();
+        /**
+         * The evaluators by the top node and then by the inapplicable value of the selector, {@code null} for strict.
+         */
+        private final Map<SelectorNode, Map<Boolean, SharedEvaluator>> evaluators = new WeakHashMap<>();
+
+        private SelectorCache(Class<?> kind) {
+            this.kind = kind;
+        }
+
+        private void expunge() {
+            for (Reference<? extends Selector<?>> reference; (reference = dropped.poll()) != null; ) {
+                selectors.remove(((SoftSelector) reference).key, reference);
+            }
+        }
+
+        private List<Selector<?>> selectors() {
+            final var list = new ArrayList<Selector<?>>();
+            for (final var reference : selectors.values()) {
+                final var selector = reference.get();
+                if (selector != null) {
+                    list.add(selector);
+                }
+            }
+            return list;
+        }
+    }
+
+    private static final class SoftSelector extends SoftReference<Selector<?>> {
+        private final String key;
+
+        private SoftSelector(String key, Selector<?> selector, ReferenceQueue<Selector<?>> queue) {
+            super(selector, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * An evaluator shared by the selectors of equivalent expressions. The evaluator is built only from the built-in
+     * functions, which do not reference the selector, and it reports the errors without the expression, so it does not
+     * reference the selector that built it. The selector is referenced weakly to release the entry together with the
+     * selector's class loaders.
+     */
+    private static final class SharedEvaluator {
+        private final Evaluator evaluator;
+        private final WeakReference<Selector<?>> owner;
+
+        private SharedEvaluator(Evaluator evaluator, Selector<?> owner) {
+            this.evaluator = evaluator.reporting(IllegalArgumentException::new);
+            this.owner = new WeakReference<>(owner);
+        }
+
+        private boolean retains(ClassLoader loader) {
+            final var selector = owner.get();
+            return selector != null && selector.retains(loader);
+        }
+    }
+
+    /**
+     * Get a compiled selector from the cache or compile it.
+     *
+     * @param kind     the kind the selector is compiled for
+     * @param key      the key of the selector among the selectors of the kind
+     * @param compiler compiles the selector when it is not in the cache
+     * @param <K>      the kind
+     * @return the cached or the new selector
+     */
+    static <K> Selector<K> selector(Class<K> kind, String key, Supplier<Selector<K>> compiler) {
+        final var cache = SELECTORS.get(kind);
+        cache.expunge();
+        final var selector = new Selector<?>[1];
+        cache.selectors.compute(key, (k, reference) -> {
+            selector[0] = reference == null ? null : reference.get();
+            if (selector[0] == null) {
+                selector[0] = compiler.get();
+                return new SoftSelector(k, selector[0], cache.dropped);
+            }
+            return reference;
+        });
+        // the selectors in the cache of a kind are all compiled for the kind
+        @SuppressWarnings("unchecked") final Selector<K> it = (Selector<K>) selector[0];
+        return it;
+    }
+
+    /**
+     * Get the evaluator of an equivalent expression from the cache or build it. It is called by the {@code compiler} of
+     * {@link #selector(Class, String, Supplier)} after the expression was compiled. The evaluator uses only the
+     * built-in functions of the selectors.
+     *
+     * @param owner   the selector being compiled
+     * @param top     the interned structure of the compiled expression
+     * @param builder builds the evaluator when there is no evaluator of an equivalent expression in the cache
+     * @return the cached or the new evaluator. The caller wraps it calling {@link
+     * Evaluator#reporting(java.util.function.Function)}.
+     */
+    static Evaluator evaluator(Selector<?> owner, SelectorNode top, Supplier<Evaluator> builder) {
+        final var evaluators = SELECTORS.get(owner.kind()).evaluators;
+        synchronized (evaluators) {
+            return evaluators.computeIfAbsent(top, k -> new HashMap<>())
+                .computeIfAbsent(owner.inapplicable(), k -> new SharedEvaluator(builder.get(), owner)).evaluator;
+        }
+    }
+
+    /**
+     * Drop the cached entries that reference the class loader, so that the cache does not prevent the class loader
+     * and its classes from being garbage collected.
+     * <p>
+     * The selectors obtained from the cache before the call remain usable.
+     *
+     * @param loader the class loader, typically of an undeployed application
+     */
+    public static void release(ClassLoader loader) {
+        Utilities.Classes.release(loader);
+        for (final var cache : snapshot()) {
+            if (cache.kind.getClassLoader() == loader) {
+                cache.selectors.clear();
+                synchronized (cache.evaluators) {
+                    cache.evaluators.clear();
+                }
+                SELECTORS.remove(cache.kind);
+                caches.remove(cache);
+            } else {
+                cache.selectors.values().removeIf(reference -> {
+                    final var selector = reference.get();
+                    return selector == null || selector.retains(loader);
+                });
+                synchronized (cache.evaluators) {
+                    for (final var evaluators : cache.evaluators.values()) {
+                        evaluators.values().removeIf(shared -> shared.retains(loader));
+                    }
+                    cache.evaluators.values().removeIf(Map::isEmpty);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of cached entries that reference the classes of each class loader. An entry that references
+     * classes of several class loaders is counted for each of them. The classes of the JDK are loaded by the bootstrap
+     * class loader, which is represented by the {@code null} key.
+     *
+     * @return the number of entries for each class loader
+     */
+    public static Map<ClassLoader, Integer> retainedEntries() {
+        final var entries = new HashMap<ClassLoader, Integer>();
+        for (final var cache : snapshot()) {
+            for (final var selector : cache.selectors()) {
+                for (final var loader : selector.loaders()) {
+                    entries.merge(loader, 1, Integer::sum);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return the cached selectors of all the kinds
+     */
+    static List<Selector<?>> selectors() {
+        final var selectors = new ArrayList<Selector<?>>();
+        for (final var cache : snapshot()) {
+            selectors.addAll(cache.selectors());
+        }
+        return selectors;
+    }
+
+    private static ArrayList<SelectorCache> snapshot() {
+        synchronized (caches) {
+            return new ArrayList<>(caches);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package javax0.refi.selector;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark a {@code static final String} constant holding a selector expression to be compiled during the compilation of
+ * the Java code. For example,
+ *
+ * <pre>{@code
+ * class Rules {
+ *     @CompiledSelector(kind = Field.class)
+ *     static final String INHERITED_FIELD = "!static & !private";
+ * }
+ * }</pre>
+ * <p>
+ * {@link CompiledSelectorProcessor} checks the expression and reports the syntax errors and the conditions that cannot
+ * be applied to the kind as compilation errors. It also generates the class {@code Rules_CompiledSelectors} in the
+ * same package with a {@code public static final Predicate<Field> INHERITED_FIELD} field. The predicate is Java code
+ * evaluating the optimized expression, the modifier conditions test the modifiers directly, and the other conditions
+ * use the selectors compiled from the conditions alone.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface CompiledSelector {
+    /**
+     * @return the kind of the objects the selector is used to match, see {@link Selector#compile(String, Class)}. It
+     * can be a class of the application, the expression is checked for its nearest superclass or interface that is a
+     * JDK class, like {@link java.lang.reflect.Method Method}, {@link java.lang.reflect.Member Member} or {@link
+     * Class}.
+     */
+    Class<?> kind() default Object.class;
+}
@@ -0,0 +1,350 @@
+package javax0.refi.selector;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.lang.reflect.Member;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The annotation processor of {@link CompiledSelector}. It is registered as a service in {@code META-INF/services},
+ * {@code javac} finds it when the library is on the class path or on the processor path. The module descriptor does not
+ * provide it, because the library does not require the {@code java.compiler} module at run time.
+ * <p>
+ * For each class that has {@link CompiledSelector} annotated constants the processor generates a class named after the
+ * class with the {@code _CompiledSelectors} postfix, in the same package. The generated class has a {@code public
+ * static final Predicate} field for each annotated constant with the same name.
+ * <p>
+ * The expressions are compiled by {@link Selector#compile(String, Class)} during the processing. The compilation
+ * errors are reported on the annotated constant. The kind given in the annotation is a type of the compiled sources,
+ * it is not loaded. The expression is compiled for the nearest superclass or interface of the kind that is a JDK class,
+ * for example for {@link java.lang.reflect.Member Member} if the kind implements it, or for {@link Object}.
+ * <p>
+ * The predicate is generated as Java code evaluating the optimized expression: the {@code &}, {@code |}, {@code !} and
+ * the constants become the Java boolean operators and constants, and the built-in modifier conditions, like {@code
+ * static} or {@code private}, test the modifiers directly when the kind has modifiers. The other conditions, like
+ * {@code name ~ /regex/} or {@code declaringClass -> ...}, call the {@link Selector#match(Object)} method of the
+ * selector compiled from the condition alone when the generated class is initialized, which is the built-in
+ * implementation of the condition.
+ */
+@SupportedAnnotationTypes("javax0.refi.selector.CompiledSelector")
+public class CompiledSelectorProcessor extends AbstractProcessor {
+
+    private static final String POSTFIX = "_CompiledSelectors";
+    private static final String MODIFIER = "java.lang.reflect.Modifier.";
+
+    /**
+     * The Java code of the built-in modifier conditions testing the {@code int modifiers} variable.
+     */
+    private static final Map<String, String> MODIFIER_TESTS = Map.ofEntries(
+        Map.entry("abstract", MODIFIER + "isAbstract(modifiers)"),
+        Map.entry("synthetic", "(modifiers & 0x1000) != 0"),
+        Map.entry("synchronized", MODIFIER + "isSynchronized(modifiers)"),
+        Map.entry("native", MODIFIER + "isNative(modifiers)"),
+        Map.entry("strict", MODIFIER + "isStrict(modifiers)"),
+        Map.entry("transient", MODIFIER + "isTransient(modifiers)"),
+        Map.entry("volatile", MODIFIER + "isVolatile(modifiers)"),
+        Map.entry("private", MODIFIER + "isPrivate(modifiers)"),
+        Map.entry("protected", MODIFIER + "isProtected(modifiers)"),
+        Map.entry("package", "(modifiers & (" + MODIFIER + "PUBLIC | " + MODIFIER + "PROTECTED | " + MODIFIER
+            + "PRIVATE)) == 0"),
+        Map.entry("public", MODIFIER + "isPublic(modifiers)"),
+        Map.entry("static", MODIFIER + "isStatic(modifiers)"),
+        Map.entry("final", MODIFIER + "isFinal(modifiers)")
+    );
+
+    /**
+     * Create the processor. It is created by {@code javac} through the {@link java.util.ServiceLoader ServiceLoader},
+     * the processing environment is set by {@link #init(javax.annotation.processing.ProcessingEnvironment) init()}.
+     */
+    public CompiledSelectorProcessor() {
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        final var owners = new LinkedHashMap<TypeElement, List<String>>();
+        for (final var annotation : annotations) {
+            for (final var element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                final var field = field(element);
+                if (field != null) {
+                    owners.computeIfAbsent((TypeElement) field.getEnclosingElement(), k -> new ArrayList<>())
+                        .add(predicate(field));
+                }
+            }
+        }
+        owners.forEach(this::generate);
+        return true;
+    }
+
+    /**
+     * @param element the annotated element
+     * @return the element as a field, or {@code null} if it is not a {@code static final String} constant, which is
+     * reported as an error
+     */
+    private VariableElement field(Element element) {
+        if (element.getKind() == ElementKind.FIELD && element.getModifiers().contains(Modifier.STATIC)
+            && ((VariableElement) element).getConstantValue() instanceof String) {
+            return (VariableElement) element;
+        }
+        error("@CompiledSelector has to annotate a static final String constant", element);
+        return null;
+    }
+
+    /**
+     * @param field the annotated constant
+     * @return the Java code of the predicate field generated for the constant, or {@code null} if the expression cannot
+     * be compiled
+     */
+    private String predicate(VariableElement field) {
+        final var expression = (String) field.getConstantValue();
+        final var kindType = kind(field);
+        final var kindElement = (TypeElement) processingEnv.getTypeUtils().asElement(kindType);
+        final var kindName = kindElement.getQualifiedName().toString();
+        final var kind = jdkKind(kindType);
+        final Selector<?> selector;
+        try {
+            selector = Selector.compile(expression, kind);
+        } catch (IllegalArgumentException e) {
+            error(e.getMessage(), field);
+            return null;
+        }
+        final var typeArguments = kindElement.getTypeParameters().isEmpty() ? "" : kindElement.getTypeParameters()
+            .stream().map(p -> "?").collect(Collectors.joining(", ", "<", ">"));
+        final var type = "java.util.function.Predicate<" + kindName + typeArguments + ">";
+        final var name = field.getSimpleName();
+        final var code = new Code(selector, kind, name.toString());
+        final var predicate = code.of(selector.topNode());
+        final var sb = new StringBuilder();
+        for (int i = 0; i < code.terms.size(); i++) {
+            sb.append("    private static final ").append(type).append(' ').append(code.term(i)).append(" =\n")
+                .append("        javax0.refi.selector.Selector.compile(").append(literal(code.terms.get(i)))
+                .append(", ").append(kindName).append(".class)::match;\n");
+        }
+        sb.append("    /**\n     * <code>").append(javadoc(expression)).append("</code>\n     */\n");
+        if (code.modifiers) {
+            sb.append("    public static final ").append(type).append(' ').append(name).append(" = m -> {\n")
+                .append("        final int modifiers = m.getModifiers();\n")
+                .append("        return ").append(predicate).append(";\n")
+                .append("    };\n");
+        } else {
+            sb.append("    public static final ").append(type).append(' ').append(name).append(" = m -> ")
+                .append(predicate).append(";\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param type the kind given in the annotation
+     * @return the class of the kind, or of its nearest superclass or interface that is a JDK class
+     */
+    private Class<?> jdkKind(TypeMirror type) {
+        final var types = processingEnv.getTypeUtils();
+        final var queue = new ArrayDeque<TypeMirror>();
+        queue.add(type);
+        while (!queue.isEmpty()) {
+            final var next = queue.remove();
+            final var element = (TypeElement) types.asElement(next);
+            if (element == null || element.getQualifiedName().contentEquals(Object.class.getName())) {
+                continue;
+            }
+            try {
+                return Class.forName(processingEnv.getElementUtils().getBinaryName(element).toString(), false,
+                    ClassLoader.getPlatformClassLoader());
+            } catch (ClassNotFoundException e) {
+                queue.addAll(types.directSupertypes(next));
+            }
+        }
+        return Object.class;
+    }
+
+    private TypeMirror kind(VariableElement field) {
+        for (final AnnotationMirror mirror : field.getAnnotationMirrors()) {
+            final var annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(CompiledSelector.class.getName())) {
+                for (final var entry : mirror.getElementValues().entrySet()) {
+                    if (entry.getKey().getSimpleName().contentEquals("kind")) {
+                        return (DeclaredType) entry.getValue().getValue();
+                    }
+                }
+            }
+        }
+        return processingEnv.getElementUtils().getTypeElement(Object.class.getName()).asType();
+    }
+
+    private static boolean hasModifiers(Class<?> kind) {
+        return kind == Class.class || Member.class.isAssignableFrom(kind);
+    }
+
+    /**
+     * The Java code of the optimized node of a selector. The conditions that are not generated as Java code are
+     * collected as terms, they are evaluated by the selectors compiled from them.
+     */
+    private static final class Code {
+        private final Selector<?> selector;
+        private final Class<?> kind;
+        private final String name;
+        /**
+         * The expressions of the conditions evaluated by compiled selectors.
+         */
+        private final List<String> terms = new ArrayList<>();
+        /**
+         * {@code true} if the code uses the {@code int modifiers} variable.
+         */
+        private boolean modifiers = false;
+
+        private Code(Selector<?> selector, Class<?> kind, String name) {
+            this.selector = selector;
+            this.kind = kind;
+            this.name = name;
+        }
+
+        /**
+         * @param i the index of the term
+         * @return the name of the generated field of the term
+         */
+        String term(int i) {
+            return name + "$" + i;
+        }
+
+        /**
+         * @param node the optimized node
+         * @return the Java expression evaluating the node on the object {@code m}
+         */
+        String of(SelectorNode node) {
+            if (node instanceof SelectorNode.Constant) {
+                return node.toString();
+            }
+            if (node instanceof SelectorNode.Not) {
+                return "!" + of(((SelectorNode.Not) node).subNode);
+            }
+            if (node instanceof SelectorNode.And || node instanceof SelectorNode.Or) {
+                final var subNodes = node instanceof SelectorNode.And
+                    ? ((SelectorNode.And) node).subNodes : ((SelectorNode.Or) node).subNodes;
+                return subNodes.stream().map(this::of)
+                    .collect(Collectors.joining(node instanceof SelectorNode.And ? " && " : " || ", "(", ")"));
+            }
+            if (node instanceof SelectorNode.Terminal) {
+                final var modifierTest = modifierTest(((SelectorNode.Terminal) node).terminal);
+                if (modifierTest != null) {
+                    modifiers = true;
+                    return modifierTest;
+                }
+            }
+            final var term = node.toString();
+            if (!terms.contains(term)) {
+                terms.add(term);
+            }
+            return term(terms.indexOf(term)) + ".test(m)";
+        }
+
+        /**
+         * @param terminal the name of the terminal
+         * @return the Java expression testing the {@code int modifiers} variable, or {@code null} if the terminal is
+         * not a built-in modifier condition applicable to the kind
+         */
+        private String modifierTest(String terminal) {
+            if (!hasModifiers(kind)) {
+                return null;
+            }
+            final var test = selector.modifierTest(terminal);
+            if (test == null || test.forKind(kind) == null) {
+                return null;
+            }
+            final var code = MODIFIER_TESTS.get(terminal);
+            return code == null || code.startsWith(MODIFIER) ? code : "(" + code + ")";
+        }
+    }
+
+    private void generate(TypeElement owner, List<String> predicates) {
+        if (predicates.contains(null)) {
+            return;
+        }
+        final var packageName = processingEnv.getElementUtils().getPackageOf(owner).getQualifiedName().toString();
+        final var simpleName = (packageName.isEmpty() ? owner.getQualifiedName().toString()
+            : owner.getQualifiedName().toString().substring(packageName.length() + 1)).replace('.', '_') + POSTFIX;
+        final var className = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        final var sb = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("/**\n * The compiled selectors of {@link ").append(owner.getQualifiedName())
+            .append("}, generated by {@code ").append(getClass().getName()).append("}.\n */\n")
+            .append("public final class ").append(simpleName).append(" {\n\n")
+            .append("    private ").append(simpleName).append("() {\n    }\n");
+        for (final var predicate : predicates) {
+            sb.append('\n').append(predicate);
+        }
+        sb.append("}\n");
+        try (final var writer = processingEnv.getFiler().createSourceFile(className, owner).openWriter()) {
+            writer.write(sb.toString());
+        } catch (IOException e) {
+            error("Cannot write the compiled selectors " + className + ": " + e.getMessage(), owner);
+        }
+    }
+
+    private void error(String message, Element element) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * @param expression the selector expression
+     * @return the expression that can be placed into a comment, without HTML, javadoc tags, unicode escapes and the
+     * end of the comment
+     */
+    private static String javadoc(String expression) {
+        return expression.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\\", "&#92;")
+            .replace("/", "&#47;").replace("@", "&#64;").replace("{", "&#123;").replace("}", "&#125;");
+    }
+
+    private static String literal(String string) {
+        final var sb = new StringBuilder("\"");
+        for (final var c : string.toCharArray()) {
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < ' ') {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
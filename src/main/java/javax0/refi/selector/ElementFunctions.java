@@ -0,0 +1,371 @@
+package javax0.refi.selector;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * The built-in selectors, converters and aggregates of the {@link ElementSelector} working on the {@code
+ * javax.lang.model} elements. They implement the same conditions as the reflective ones in {@link Selector} using only
+ * the elements and the type mirrors, without the {@code Elements} and {@code Types} utilities of the processing
+ * environment.
+ * <p>
+ * The differences from the reflective implementations are:
+ *
+ * <ul>
+ * <li>The conversions to a type, like {@code returnType} or {@code type}, result {@code null} when the type is a
+ * primitive, an array or a type variable, because these types have no {@link TypeElement}.</li>
+ * <li>{@code methods} and {@code fields} list the declared members and the not private members of the superclasses
+ * and interfaces. A method overridden in the class is listed once.</li>
+ * <li>The conditions that need the compiled classes or the processing environment, like {@code overrides}, {@code
+ * signature}, {@code bridge}, {@code synthetic}, {@code implements} on a method, and the conversions {@code
+ * componentType}, {@code nestHost} and {@code parameterTypes} are not defined.</li>
+ * </ul>
+ */
+final class ElementFunctions {
+
+    private ElementFunctions() {
+    }
+
+    private static final Element[] NONE = new Element[0];
+
+    /**
+     * The kinds of the elements that are members of a type. They are registered separately from {@link TypeElement}
+     * like {@link java.lang.reflect.Member} and {@link Class} in {@link Selector}, because an implementation registered
+     * for {@link Element} would also be selected for the type elements when the kind is only known as {@link Element}.
+     */
+    private static final List<Class<? extends Element>> MEMBERS = List.of(ExecutableElement.class, VariableElement.class);
+
+    static void register(Selector<?> it) {
+        conversions(it);
+        modifiers(it);
+        types(it);
+        it.selector("true", Object.class, m -> true);
+        it.selector("false", Object.class, m -> false);
+        it.selector("null", Object.class, Objects::isNull);
+        it.selector("vararg", ExecutableElement.class, ExecutableElement::isVarArgs);
+        it.selector("void", ExecutableElement.class, m ->
+            m.getKind() == ElementKind.METHOD && m.getReturnType().getKind() == TypeKind.VOID);
+        it.regexSelector("name", TypeElement.class, (type, regex) -> regex.matcher(binaryName(type)).find());
+        for (final var kind : MEMBERS) {
+            it.regexSelector("name", kind, (e, regex) -> regex.matcher(e.getSimpleName()).find());
+        }
+        it.regexSelector("returns", ExecutableElement.class, (m, regex) ->
+            m.getKind() == ElementKind.METHOD && regex.matcher(canonicalName(m.getReturnType())).find());
+        it.regexSelector("throws", ExecutableElement.class, (m, regex) ->
+            m.getThrownTypes().stream().anyMatch(exception -> regex.matcher(exception.toString()).find()));
+        it.regexSelector("annotation", Element.class, (e, regex) -> matches(e.getAnnotationMirrors(), regex));
+        it.regexSelector("metaAnnotation", Element.class, (e, regex) -> matchesMeta(e, regex, new HashSet<>()));
+        it.regexSelector("inheritedAnnotation", TypeElement.class, (type, regex) -> {
+            if (matches(type.getAnnotationMirrors(), regex)) {
+                return true;
+            }
+            for (final var related : List.of(supers(type), interfaces(type))) {
+                for (final var element : related) {
+                    if (matches(element.getAnnotationMirrors(), regex)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+        it.selector("annotated", Element.class, e -> !e.getAnnotationMirrors().isEmpty());
+    }
+
+    private static void conversions(Selector<?> it) {
+        it.converter("declaringClass", TypeElement.class, type ->
+            type.getNestingKind() == NestingKind.MEMBER ? type.getEnclosingElement() : null, TypeElement.class);
+        for (final var kind : MEMBERS) {
+            it.converter("declaringClass", kind, e ->
+                e.getEnclosingElement() instanceof TypeElement ? e.getEnclosingElement() : null, TypeElement.class);
+        }
+        it.converter("returnType", ExecutableElement.class, m -> typeElement(m.getReturnType()), TypeElement.class);
+        it.converter("type", VariableElement.class, v -> typeElement(v.asType()), TypeElement.class);
+        it.converter("superClass", TypeElement.class, type -> typeElement(type.getSuperclass()), TypeElement.class);
+        it.converter("enclosingClass", TypeElement.class, ElementFunctions::enclosingClass, TypeElement.class);
+        it.converter("enclosingMethod", TypeElement.class, type ->
+            type.getEnclosingElement() instanceof ExecutableElement ? type.getEnclosingElement() : null,
+            ExecutableElement.class);
+        it.elements("supers", TypeElement.class, ElementFunctions::supers, TypeElement.class);
+        it.elements("interfaces", TypeElement.class, ElementFunctions::interfaces, TypeElement.class);
+        it.elements("enclosings", TypeElement.class, type -> {
+            final var enclosings = new ArrayList<Element>();
+            for (var enclosing = enclosingClass(type); enclosing != null; enclosing = enclosingClass(enclosing)) {
+                enclosings.add(enclosing);
+            }
+            return enclosings.toArray(NONE);
+        }, TypeElement.class);
+        it.elements("methods", TypeElement.class, type -> members(type, ElementKind.METHOD), ExecutableElement.class);
+        it.elements("declaredMethods", TypeElement.class, type -> declared(type, ElementKind.METHOD), ExecutableElement.class);
+        it.elements("fields", TypeElement.class, type -> members(type, ElementKind.FIELD), VariableElement.class);
+        it.elements("declaredFields", TypeElement.class, type -> declared(type, ElementKind.FIELD), VariableElement.class);
+        it.elements("constructors", TypeElement.class, type -> declared(type, ElementKind.CONSTRUCTOR), ExecutableElement.class);
+        it.elements("classes", TypeElement.class, type -> type.getEnclosedElements().stream()
+            .filter(e -> e instanceof TypeElement).toArray(Element[]::new), TypeElement.class);
+    }
+
+    private static void modifiers(Selector<?> it) {
+        modifier(it, "abstract", Modifier.ABSTRACT, TypeElement.class, ExecutableElement.class);
+        modifier(it, "synchronized", Modifier.SYNCHRONIZED, ExecutableElement.class);
+        modifier(it, "native", Modifier.NATIVE, ExecutableElement.class);
+        modifier(it, "strict", Modifier.STRICTFP, ExecutableElement.class);
+        modifier(it, "default", Modifier.DEFAULT, ExecutableElement.class);
+        modifier(it, "transient", Modifier.TRANSIENT, VariableElement.class);
+        modifier(it, "volatile", Modifier.VOLATILE, VariableElement.class);
+        modifier(it, "private", Modifier.PRIVATE, Element.class);
+        modifier(it, "protected", Modifier.PROTECTED, Element.class);
+        modifier(it, "public", Modifier.PUBLIC, Element.class);
+        modifier(it, "static", Modifier.STATIC, Element.class);
+        modifier(it, "final", Modifier.FINAL, Element.class);
+        it.selector("package", Element.class, e -> !e.getModifiers().contains(Modifier.PUBLIC)
+            && !e.getModifiers().contains(Modifier.PROTECTED) && !e.getModifiers().contains(Modifier.PRIVATE));
+    }
+
+    @SafeVarargs
+    private static void modifier(Selector<?> it, String name, Modifier modifier, Class<? extends Element>... kinds) {
+        for (final var kind : kinds) {
+            it.selector(name, kind, e -> e.getModifiers().contains(modifier));
+        }
+    }
+
+    /**
+     * The conditions on the type: the type itself, the return type of a method or the type of a field.
+     */
+    private static void types(Selector<?> it) {
+        it.selector("class", TypeElement.class, type -> type.getKind().isClass());
+        for (final var kind : MEMBERS) {
+            it.selector("class", kind, e -> false);
+        }
+        typeSelector(it, "interface", type -> isKind(type, ElementKind.INTERFACE) || isKind(type, ElementKind.ANNOTATION_TYPE));
+        typeSelector(it, "primitive", type -> type.getKind().isPrimitive() || type.getKind() == TypeKind.VOID);
+        typeSelector(it, "annotation", type -> isKind(type, ElementKind.ANNOTATION_TYPE));
+        typeSelector(it, "anonymous", type -> isNesting(type, NestingKind.ANONYMOUS));
+        typeSelector(it, "array", type -> type.getKind() == TypeKind.ARRAY);
+        typeSelector(it, "enum", type -> isKind(type, ElementKind.ENUM));
+        typeSelector(it, "member", type -> isNesting(type, NestingKind.MEMBER));
+        typeSelector(it, "local", type -> isNesting(type, NestingKind.LOCAL));
+        typeSelector(it, "extends", type -> {
+            final var superClass = superClass(type);
+            return superClass != null && !superClass.getQualifiedName().contentEquals("java.lang.Object");
+        });
+        it.selector("implements", TypeElement.class, type -> type.getKind().isClass() && !type.getInterfaces().isEmpty());
+        typeRegexSelector(it, "extends", (type, regex) -> {
+            final var superClass = superClass(type);
+            return superClass != null && regex.matcher(superClass.getQualifiedName()).find();
+        });
+        typeRegexSelector(it, "simpleName", (type, regex) -> regex.matcher(simpleName(type)).find());
+        typeRegexSelector(it, "canonicalName", (type, regex) -> regex.matcher(canonicalName(type)).find());
+        typeRegexSelector(it, "implements", (type, regex) -> {
+            if (type.getKind() == TypeKind.ARRAY) {
+                return ARRAY_INTERFACES.stream().anyMatch(i -> regex.matcher(i).find());
+            }
+            return isClass(type) && typeElement(type).getInterfaces().stream().map(ElementFunctions::typeElement)
+                .filter(Objects::nonNull).anyMatch(i -> regex.matcher(binaryName(i)).find());
+        });
+    }
+
+    /**
+     * The interfaces every array implements, as {@link Class#getInterfaces()} returns them for an array class.
+     */
+    private static final List<String> ARRAY_INTERFACES = List.of("java.lang.Cloneable", "java.io.Serializable");
+
+    private static void typeSelector(Selector<?> it, String name, Predicate<TypeMirror> test) {
+        it.selector(name, TypeElement.class, type -> test.test(type.asType()));
+        it.selector(name, ExecutableElement.class, m -> m.getKind() == ElementKind.METHOD && test.test(m.getReturnType()));
+        it.selector(name, VariableElement.class, v -> test.test(v.asType()));
+    }
+
+    private static void typeRegexSelector(Selector<?> it, String name, BiPredicate<TypeMirror, Pattern> test) {
+        it.regexSelector(name, TypeElement.class, (type, regex) -> test.test(type.asType(), regex));
+        it.regexSelector(name, ExecutableElement.class, (m, regex) ->
+            m.getKind() == ElementKind.METHOD && test.test(m.getReturnType(), regex));
+        it.regexSelector(name, VariableElement.class, (v, regex) -> test.test(v.asType(), regex));
+    }
+
+    private static boolean isKind(TypeMirror type, ElementKind kind) {
+        final var element = typeElement(type);
+        return element != null && element.getKind() == kind;
+    }
+
+    private static boolean isNesting(TypeMirror type, NestingKind nesting) {
+        final var element = typeElement(type);
+        return element != null && element.getNestingKind() == nesting;
+    }
+
+    private static boolean isClass(TypeMirror type) {
+        final var element = typeElement(type);
+        return element != null && element.getKind().isClass();
+    }
+
+    private static TypeElement superClass(TypeMirror type) {
+        final var element = typeElement(type);
+        return element == null ? null : typeElement(element.getSuperclass());
+    }
+
+    /**
+     * @param type the type
+     * @return the element of the type if it is a class or interface type, otherwise {@code null}
+     */
+    static TypeElement typeElement(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) type).asElement() : null;
+    }
+
+    /**
+     * @param type the type element
+     * @return the name of the type as {@link Class#getName()} returns it for a class, like {@code java.util.Map$Entry}
+     */
+    static String binaryName(TypeElement type) {
+        final var enclosing = type.getEnclosingElement();
+        if (type.getNestingKind() == NestingKind.MEMBER && enclosing instanceof TypeElement) {
+            return binaryName((TypeElement) enclosing) + "$" + type.getSimpleName();
+        }
+        return type.getQualifiedName().toString();
+    }
+
+    /**
+     * @param type the type
+     * @return the erased name of the type as {@link Class#getCanonicalName()} returns it for a class, like {@code
+     * java.util.Map.Entry}, {@code int[]} or {@code void}
+     */
+    static String canonicalName(TypeMirror type) {
+        switch (type.getKind()) {
+            case DECLARED:
+                return typeElement(type).getQualifiedName().toString();
+            case ARRAY:
+                return canonicalName(((ArrayType) type).getComponentType()) + "[]";
+            case TYPEVAR:
+                return canonicalName(((TypeVariable) type).getUpperBound());
+            default:
+                return type.toString();
+        }
+    }
+
+    private static String simpleName(TypeMirror type) {
+        switch (type.getKind()) {
+            case DECLARED:
+                return typeElement(type).getSimpleName().toString();
+            case ARRAY:
+                return simpleName(((ArrayType) type).getComponentType()) + "[]";
+            default:
+                return canonicalName(type);
+        }
+    }
+
+    private static TypeElement enclosingClass(TypeElement type) {
+        for (var enclosing = type.getEnclosingElement(); enclosing != null; enclosing = enclosing.getEnclosingElement()) {
+            if (enclosing instanceof TypeElement) {
+                return (TypeElement) enclosing;
+            }
+        }
+        return null;
+    }
+
+    private static Element[] supers(TypeElement type) {
+        final var supers = new ArrayList<Element>();
+        for (var superClass = typeElement(type.getSuperclass()); superClass != null;
+             superClass = typeElement(superClass.getSuperclass())) {
+            supers.add(superClass);
+        }
+        return supers.toArray(NONE);
+    }
+
+    private static Element[] interfaces(TypeElement type) {
+        final var interfaces = new LinkedHashSet<Element>();
+        for (final var mirror : type.getInterfaces()) {
+            final var interfAce = typeElement(mirror);
+            if (interfAce != null) {
+                interfaces.add(interfAce);
+                interfaces.addAll(List.of(interfaces(interfAce)));
+            }
+        }
+        final var superClass = typeElement(type.getSuperclass());
+        if (superClass != null) {
+            interfaces.addAll(List.of(interfaces(superClass)));
+        }
+        return interfaces.toArray(NONE);
+    }
+
+    private static Element[] declared(TypeElement type, ElementKind kind) {
+        return type.getEnclosedElements().stream().filter(e -> e.getKind() == kind).toArray(Element[]::new);
+    }
+
+    /**
+     * @param type the type
+     * @param kind the kind of the members, {@link ElementKind#METHOD} or {@link ElementKind#FIELD}
+     * @return the declared members and the not private members of the superclasses and interfaces. The methods are
+     * identified by the name and the parameter types, the fields by the name, and only the first one is listed.
+     */
+    private static Element[] members(TypeElement type, ElementKind kind) {
+        final var members = new LinkedHashMap<String, Element>();
+        for (final var member : declared(type, kind)) {
+            members.putIfAbsent(key(member), member);
+        }
+        for (final var related : List.of(supers(type), interfaces(type))) {
+            for (final var element : related) {
+                for (final var member : declared((TypeElement) element, kind)) {
+                    if (!member.getModifiers().contains(Modifier.PRIVATE)) {
+                        members.putIfAbsent(key(member), member);
+                    }
+                }
+            }
+        }
+        return members.values().toArray(NONE);
+    }
+
+    private static String key(Element member) {
+        if (member instanceof ExecutableElement) {
+            final var parameters = new StringBuilder(member.getSimpleName()).append('(');
+            for (final var parameter : ((ExecutableElement) member).getParameters()) {
+                parameters.append(canonicalName(parameter.asType())).append(',');
+            }
+            return parameters.append(')').toString();
+        }
+        return member.getSimpleName().toString();
+    }
+
+    private static boolean matches(List<? extends AnnotationMirror> annotations, Pattern regex) {
+        for (final var annotation : annotations) {
+            if (regex.matcher(annotationName(annotation)).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesMeta(Element element, Pattern regex, Set<String> visited) {
+        for (final var annotation : element.getAnnotationMirrors()) {
+            final var name = annotationName(annotation);
+            if (regex.matcher(name).find()) {
+                return true;
+            }
+            if (visited.add(name) && matchesMeta(annotation.getAnnotationType().asElement(), regex, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String annotationName(AnnotationMirror annotation) {
+        return ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+    }
+}
@@ -0,0 +1,124 @@
+package javax0.refi.selector;
+
+import javax.lang.model.element.Element;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * A selector that matches the {@code javax.lang.model} elements, like {@link javax.lang.model.element.TypeElement
+ * TypeElement}, {@link javax.lang.model.element.ExecutableElement ExecutableElement} and {@link
+ * javax.lang.model.element.VariableElement VariableElement}, instead of the reflective objects. Annotation processors
+ * and code generators can use the same expressions as the {@link Selector} to filter the elements without loading the
+ * classes. For example,
+ *
+ * <pre>{@code
+ * final var getters = ElementSelector.compile("public & !static & name ~ /^get/ & !void");
+ * typeElement.getEnclosedElements().stream().filter(getters.predicate())...
+ * }</pre>
+ * <p>
+ * The expressions are compiled the same way as for the {@link Selector}, but the conditions, conversions and aggregates
+ * are implemented on the elements. Some of them are not available, or they work differently, because they would need
+ * the compiled classes or the {@code Elements} and {@code Types} utilities of the processing environment:
+ *
+ * <ul>
+ * <li>The conversions to a type, like {@code returnType -> ...} or {@code type -> ...}, result {@code null} when the
+ * type is a primitive, an array or a type variable, because these types have no type element.</li>
+ * <li>{@code methods} and {@code fields} list the declared members and the not private members of the superclasses
+ * and interfaces. A method overridden in the class is listed once.</li>
+ * <li>{@code overrides}, {@code signature}, {@code bridge}, {@code synthetic}, {@code implements} on a method,
+ * {@code componentType}, {@code nestHost} and {@code parameterTypes} are not defined. Define them calling {@link
+ * #selector(String, Function)} or {@link #converter(String, Function)} if you need them.</li>
+ * </ul>
+ * <p>
+ * The element selectors are not cached. Compile the expression once and keep the element selector.
+ */
+public final class ElementSelector {
+
+    private final Selector<Element> selector;
+
+    private ElementSelector(String expression, Boolean inapplicable) {
+        selector = new Selector<>(expression, Element.class, inapplicable);
+        ElementFunctions.register(selector);
+        selector.compileTop();
+        selector.evaluator();
+    }
+
+    /**
+     * Compile an expression to match elements. The evaluation throws {@link IllegalArgumentException} when a
+     * condition cannot be applied to the element, like {@code volatile} to a method.
+     *
+     * @param expression the selector expression
+     * @return the compiled selector
+     */
+    public static ElementSelector compile(String expression) {
+        return new ElementSelector(expression, null);
+    }
+
+    /**
+     * Compile an expression to match elements. The conditions and conversions that cannot be applied to the element
+     * are {@code false}, see {@link Selector#compileLenient(String)}.
+     *
+     * @param expression the selector expression
+     * @return the compiled selector
+     */
+    public static ElementSelector compileLenient(String expression) {
+        return new ElementSelector(expression, false);
+    }
+
+    /**
+     * Define a selector function, see {@link Selector#selector(String, Function)}.
+     *
+     * @param name     the name of the selector
+     * @param function the function
+     * @return {@code this}
+     */
+    public ElementSelector selector(String name, Function<Element, Boolean> function) {
+        selector.selector(name, function);
+        return this;
+    }
+
+    /**
+     * Define a regex selector function, see {@link Selector#regexSelector(String, BiFunction)}.
+     *
+     * @param name     the name of the regex selector
+     * @param function the function
+     * @return {@code this}
+     */
+    public ElementSelector regexSelector(String name, BiFunction<Element, Pattern, Boolean> function) {
+        selector.regexSelector(name, function);
+        return this;
+    }
+
+    /**
+     * Define a converter, see {@link Selector#converter(String, Function)}.
+     *
+     * @param name     the name of the converter
+     * @param function the function
+     * @return {@code this}
+     */
+    public ElementSelector converter(String name, Function<Element, Object> function) {
+        selector.converter(name, function);
+        return this;
+    }
+
+    /**
+     * @param element the element to check
+     * @return {@code true} if the element matches the expression
+     */
+    public boolean match(Element element) {
+        return selector.match(element);
+    }
+
+    public Predicate<Element> predicate() {
+        return this::match;
+    }
+
+    /**
+     * @return the structure the selector evaluates, see {@link Selector#explain()}
+     */
+    public String explain() {
+        return selector.explain();
+    }
+}
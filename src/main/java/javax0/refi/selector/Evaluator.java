@@ -0,0 +1,79 @@
+package javax0.refi.selector;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * The executable form of a compiled selector expression built by the {@link EvaluatorBuilder}.
+ * <p>
+ * The evaluation of a single match uses a frame, which is an array of objects. The frame holds the results of the
+ * conversions that are used more than once in the expression, so that each of these conversions is executed at most
+ * once during a single match.
+ * <p>
+ * The nodes of an evaluator are shared by the selectors compiled from equivalent expressions. The nodes throw {@link
+ * Failure} without the expression, and each selector has its own evaluator object converting it to an exception
+ * that contains the expression of the selector.
+ */
+final class Evaluator {
+
+    /**
+     * The value of a frame slot before the conversion was executed.
+     */
+    static final Object NOT_CONVERTED = new Object();
+
+    /**
+     * An evaluator node, the compiled form of a {@link SelectorNode}.
+     */
+    @FunctionalInterface
+    interface Node {
+        /**
+         * @param m     the object to test
+         * @param frame the frame of the actual match, may be {@code null} if the expression does not use any slot
+         * @return the result of the evaluation
+         */
+        boolean test(Object m, Object[] frame);
+    }
+
+    /**
+     * Thrown by the nodes when the evaluation fails, like when a strict selector is applied to an object that a
+     * condition or conversion cannot be applied to, or the expression uses a selector that is not defined.
+     */
+    static final class Failure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Failure(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    final Node root;
+    final int frameSize;
+    private final Function<String, IllegalArgumentException> exceptionFactory;
+
+    Evaluator(Node root, int frameSize, Function<String, IllegalArgumentException> exceptionFactory) {
+        this.root = root;
+        this.frameSize = frameSize;
+        this.exceptionFactory = exceptionFactory;
+    }
+
+    /**
+     * @param exceptionFactory creates the exceptions containing the expression in the message
+     * @return an evaluator sharing the nodes of this evaluator and reporting the errors with the factory
+     */
+    Evaluator reporting(Function<String, IllegalArgumentException> exceptionFactory) {
+        return new Evaluator(root, frameSize, exceptionFactory);
+    }
+
+    boolean test(Object m) {
+        try {
+            if (frameSize == 0) {
+                return root.test(m, null);
+            }
+            final var frame = new Object[frameSize];
+            Arrays.fill(frame, NOT_CONVERTED);
+            return root.test(m, frame);
+        } catch (Failure e) {
+            throw exceptionFactory.apply(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,525 @@
+package javax0.refi.selector;
+
+import java.lang.reflect.AnnotatedElement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Build the {@link Evaluator} for a selector from the optimized {@link SelectorNode} structure.
+ * <p>
+ * When the kind of the objects a node will be evaluated for is known then the implementations of the conditions and
+ * conversions are selected here and the evaluator calls them directly. When the kind is not known, because the
+ * selector was compiled without a kind or a user defined converter was used then the evaluator selects the
+ * implementation based on the actual object each time.
+ * <p>
+ * The conversion paths (the chain of the converter names from the top of the expression) used more than once in the
+ * expression get a slot in the frame of the evaluation. For example in the expression
+ *
+ * <pre>{@code
+ *     declaringClass -> public & declaringClass -> annotation ~ /X/
+ * }</pre>
+ * <p>
+ * the declaring class is calculated only once during a single match. The conversions inside the body of a quantifier
+ * are evaluated for several objects during a single match, therefore they do not get a slot.
+ * <p>
+ * An instance of this class is used to build one evaluator.
+ */
+final class EvaluatorBuilder implements SelectorOptimizer.Applicability {
+    /**
+     * The value a conversion returns when it cannot be applied to the object and the selector is lenient.
+     */
+    private static final Object INAPPLICABLE = new Object();
+
+    private final Map<String, KindMap<Function<Object, Boolean>>> selectors;
+    private final Map<String, KindMap<Function<Object, Object>>> converters;
+    private final Map<String, KindMap<Function<Pattern, Predicate<Object>>>> regexSelectors;
+    private final Map<String, KindMap<Function<Object, Object[]>>> quantifiedElements;
+    private final Boolean inapplicable;
+    private final Function<String, IllegalArgumentException> exceptionFactory;
+    /**
+     * Wraps the evaluator of each node, used to profile the evaluation. {@code null} when not profiling.
+     */
+    private Probe probe = null;
+
+    /**
+     * Wraps the evaluator nodes when they are built.
+     */
+    @FunctionalInterface
+    interface Probe {
+        /**
+         * @param node      the node of the expression
+         * @param evaluator the evaluator of the node
+         * @return the evaluator to use instead of {@code evaluator}
+         */
+        Evaluator.Node wrap(SelectorNode node, Evaluator.Node evaluator);
+    }
+
+    /**
+     * The number of the conversion nodes for each conversion path.
+     */
+    private final Map<String, Integer> pathUses = new HashMap<>();
+    /**
+     * The frame slots allocated for the conversion paths used more than once.
+     */
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    /**
+     * @param selectors          the selectors of the {@link Selector}
+     * @param converters         the converters of the {@link Selector}
+     * @param regexSelectors     the regex selectors of the {@link Selector}
+     * @param quantifiedElements the functions returning the elements the quantifiers iterate over
+     * @param inapplicable       the value for the conditions and conversions that cannot be applied to an object or
+     *                           {@code null} if the selector is strict and has to throw an exception in that case
+     * @param exceptionFactory   creates the exceptions containing the expression in the message
+     */
+    EvaluatorBuilder(Map<String, KindMap<Function<Object, Boolean>>> selectors,
+                     Map<String, KindMap<Function<Object, Object>>> converters,
+                     Map<String, KindMap<Function<Pattern, Predicate<Object>>>> regexSelectors,
+                     Map<String, KindMap<Function<Object, Object[]>>> quantifiedElements,
+                     Boolean inapplicable,
+                     Function<String, IllegalArgumentException> exceptionFactory) {
+        this.selectors = selectors;
+        this.converters = converters;
+        this.regexSelectors = regexSelectors;
+        this.quantifiedElements = quantifiedElements;
+        this.inapplicable = inapplicable;
+        this.exceptionFactory = exceptionFactory;
+    }
+
+    /**
+     * @param probe wraps the evaluator of each node
+     * @return this
+     */
+    EvaluatorBuilder probe(Probe probe) {
+        this.probe = probe;
+        return this;
+    }
+
+    /**
+     * @param top  the top node of the expression
+     * @param kind the kind of the objects the evaluator will be invoked with, {@code Object.class} if not known
+     * @return the node the evaluator is built from. It is the {@code top} for strict selectors. For lenient selectors
+     * the inapplicable conditions and conversions are replaced and the result is optimized again.
+     */
+    SelectorNode evaluated(SelectorNode top, Class<?> kind) {
+        return inapplicable == null ? top : SelectorOptimizer.optimize(withoutInapplicable(top, kind), true);
+    }
+
+    /**
+     * A node can be evaluated for all the objects of the kind without failing if the functionality is implemented for
+     * all objects, like the user defined selectors, or it has an implementation for the kind.
+     */
+    @Override
+    public boolean isTotal(SelectorNode node, Class<?> kind) {
+        if (node instanceof SelectorNode.Converted) {
+            return isTotal(converters.get(((SelectorNode.Converted) node).converter), kind);
+        }
+        if (node instanceof SelectorNode.Quantified) {
+            return isTotal(quantifiedElements.get(((SelectorNode.Quantified) node).elements), kind);
+        }
+        if (node instanceof SelectorNode.Regex) {
+            return isTotal(regexSelectors.get(((SelectorNode.Regex) node).name), kind);
+        }
+        if (node instanceof SelectorNode.Terminal) {
+            return isTotal(selectors.get(((SelectorNode.Terminal) node).terminal), kind);
+        }
+        if (node instanceof SelectorNode.Attribute) {
+            return AnnotatedElement.class.isAssignableFrom(kind);
+        }
+        return false;
+    }
+
+    private static boolean isTotal(KindMap<?> functions, Class<?> kind) {
+        return functions != null && (functions.isUniversal() || functions.forKind(kind) != null);
+    }
+
+    @Override
+    public Class<?> resultKind(SelectorNode node) {
+        final KindMap<?> functions = node instanceof SelectorNode.Converted
+            ? converters.get(((SelectorNode.Converted) node).converter)
+            : quantifiedElements.get(((SelectorNode.Quantified) node).elements);
+        return functions == null ? Object.class : functions.resultKind;
+    }
+
+    /**
+     * @param top  the top node of the expression
+     * @param kind the kind of the objects the evaluator will be invoked with, {@code Object.class} if not known
+     * @return the evaluator
+     */
+    Evaluator build(SelectorNode top, Class<?> kind) {
+        final var node = evaluated(top, kind);
+        countPaths(node, "");
+        final var root = evaluator(node, kind, "");
+        return new Evaluator(root, slots.size(), exceptionFactory);
+    }
+
+    /**
+     * Replace the conditions and conversions that cannot be applied to the objects of the kind with the constant
+     * {@link #inapplicable} value. Used for lenient selectors before building the evaluator.
+     *
+     * @param node the node in which the replacement is performed
+     * @param kind the kind of the objects the node will be evaluated for
+     * @return the new node
+     */
+    private SelectorNode withoutInapplicable(SelectorNode node, Class<?> kind) {
+        if (node instanceof SelectorNode.Or) {
+            final var orNode = new SelectorNode.Or();
+            for (final var sub : ((SelectorNode.Or) node).subNodes) {
+                orNode.subNodes.add(withoutInapplicable(sub, kind));
+            }
+            return orNode;
+        }
+        if (node instanceof SelectorNode.And) {
+            final var andNode = new SelectorNode.And();
+            for (final var sub : ((SelectorNode.And) node).subNodes) {
+                andNode.subNodes.add(withoutInapplicable(sub, kind));
+            }
+            return andNode;
+        }
+        if (node instanceof SelectorNode.Not) {
+            return new SelectorNode.Not(withoutInapplicable(((SelectorNode.Not) node).subNode, kind));
+        }
+        if (node instanceof SelectorNode.Converted) {
+            final var converted = (SelectorNode.Converted) node;
+            final var functions = converters.get(converted.converter);
+            if (isInapplicable(functions, kind)) {
+                return SelectorNode.Constant.of(inapplicable);
+            }
+            final var resultKind = functions == null ? Object.class : functions.resultKind;
+            return new SelectorNode.Converted(withoutInapplicable(converted.subNode, resultKind), converted.converter);
+        }
+        if (node instanceof SelectorNode.Quantified) {
+            final var quantified = (SelectorNode.Quantified) node;
+            final var functions = quantifiedElements.get(quantified.elements);
+            if (isInapplicable(functions, kind)) {
+                return SelectorNode.Constant.of(inapplicable);
+            }
+            final var resultKind = functions == null ? Object.class : functions.resultKind;
+            return quantified.with(withoutInapplicable(quantified.subNode, resultKind));
+        }
+        if (node instanceof SelectorNode.Attribute
+            && !AnnotatedElement.class.isAssignableFrom(kind) && !kind.isAssignableFrom(AnnotatedElement.class)) {
+            return SelectorNode.Constant.of(inapplicable);
+        }
+        if (node instanceof SelectorNode.Regex && isInapplicable(regexSelectors.get(((SelectorNode.Regex) node).name), kind)
+            || node instanceof SelectorNode.Terminal && isInapplicable(selectors.get(((SelectorNode.Terminal) node).terminal), kind)) {
+            return SelectorNode.Constant.of(inapplicable);
+        }
+        return node;
+    }
+
+    private static boolean isInapplicable(KindMap<?> functions, Class<?> kind) {
+        return functions != null && !functions.mayApply(kind);
+    }
+
+    private void countPaths(SelectorNode node, String path) {
+        if (node instanceof SelectorNode.Or) {
+            for (final var sub : ((SelectorNode.Or) node).subNodes) {
+                countPaths(sub, path);
+            }
+        } else if (node instanceof SelectorNode.And) {
+            for (final var sub : ((SelectorNode.And) node).subNodes) {
+                countPaths(sub, path);
+            }
+        } else if (node instanceof SelectorNode.Not) {
+            countPaths(((SelectorNode.Not) node).subNode, path);
+        } else if (node instanceof SelectorNode.Converted) {
+            final var converted = (SelectorNode.Converted) node;
+            final var subPath = path + "/" + converted.converter;
+            pathUses.merge(subPath, 1, Integer::sum);
+            countPaths(converted.subNode, subPath);
+        }
+    }
+
+    private Evaluator.Node evaluator(SelectorNode node, Class<?> kind, String path) {
+        final var evaluator = unprobed(node, kind, path);
+        return probe == null ? evaluator : probe.wrap(node, evaluator);
+    }
+
+    private Evaluator.Node unprobed(SelectorNode node, Class<?> kind, String path) {
+        if (node instanceof SelectorNode.Constant) {
+            final var value = ((SelectorNode.Constant) node).value;
+            return (m, frame) -> value;
+        }
+        if (node instanceof SelectorNode.Or) {
+            final var subs = evaluators(((SelectorNode.Or) node).subNodes, kind, path);
+            return (m, frame) -> {
+                for (final var sub : subs) {
+                    if (sub.test(m, frame)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+        if (node instanceof SelectorNode.And) {
+            final var subs = evaluators(((SelectorNode.And) node).subNodes, kind, path);
+            return (m, frame) -> {
+                for (final var sub : subs) {
+                    if (!sub.test(m, frame)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+        if (node instanceof SelectorNode.Not) {
+            final var sub = evaluator(((SelectorNode.Not) node).subNode, kind, path);
+            return (m, frame) -> !sub.test(m, frame);
+        }
+        if (node instanceof SelectorNode.Converted) {
+            return converterEvaluator((SelectorNode.Converted) node, kind, path);
+        }
+        if (node instanceof SelectorNode.Quantified) {
+            return quantifiedEvaluator((SelectorNode.Quantified) node, kind);
+        }
+        if (node instanceof SelectorNode.Regex) {
+            return regexEvaluator((SelectorNode.Regex) node, kind);
+        }
+        if (node instanceof SelectorNode.Terminal) {
+            return terminalEvaluator((SelectorNode.Terminal) node, kind);
+        }
+        if (node instanceof SelectorNode.Attribute) {
+            return attributeEvaluator((SelectorNode.Attribute) node, kind);
+        }
+        throw exceptionFactory.apply("Invalid node type in the compiled structure");
+    }
+
+    private Evaluator.Node[] evaluators(Collection<SelectorNode> nodes, Class<?> kind, String path) {
+        final var evaluators = new Evaluator.Node[nodes.size()];
+        var i = 0;
+        for (final var node : nodes) {
+            evaluators[i++] = evaluator(node, kind, path);
+        }
+        return evaluators;
+    }
+
+    private Evaluator.Node converterEvaluator(SelectorNode.Converted node, Class<?> kind, String path) {
+        final var name = node.converter;
+        final var functions = converters.get(name);
+        if (functions == null) {
+            return (m, frame) -> {
+                throw new Evaluator.Failure("There is no converter for '" + name + "'");
+            };
+        }
+        final var subPath = path == null ? null : path + "/" + name;
+        final var sub = evaluator(node.subNode, functions.resultKind, subPath);
+        final Function<Object, Object> conversion;
+        if (functions.isUniversal()) {
+            conversion = functions.forKind(Object.class);
+        } else {
+            final var function = functions.forKind(kind);
+            if (function != null) {
+                conversion = m -> m == null ? null : function.apply(m);
+            } else {
+                assertApplicable(functions, name, kind);
+                conversion = m -> {
+                    if (m == null) {
+                        return null;
+                    }
+                    final var dispatched = functions.forObject(m);
+                    if (dispatched == null) {
+                        notApplicable(name, m);
+                        return INAPPLICABLE;
+                    }
+                    return dispatched.apply(m);
+                };
+            }
+        }
+        final var inapplicableValue = inapplicable != null && inapplicable;
+        if (subPath == null || pathUses.getOrDefault(subPath, 0) < 2) {
+            return (m, frame) -> {
+                final var converted = conversion.apply(m);
+                return converted == INAPPLICABLE ? inapplicableValue : sub.test(converted, frame);
+            };
+        }
+        final int slot = slots.computeIfAbsent(subPath, k -> slots.size());
+        return (m, frame) -> {
+            var converted = frame[slot];
+            if (converted == Evaluator.NOT_CONVERTED) {
+                converted = conversion.apply(m);
+                frame[slot] = converted;
+            }
+            return converted == INAPPLICABLE ? inapplicableValue : sub.test(converted, frame);
+        };
+    }
+
+    /**
+     * Build the evaluator of a quantifier. The body of the quantifier is built with {@code null} path, there are no
+     * frame slots allocated for the conversions inside the body.
+     * <p>
+     * The result of the quantifier for a class is memoized in a {@link ClassValue} that belongs to the evaluator node.
+     * This way the aggregate, like {@code methods -> count(public) > 3} is calculated only once for each class as long
+     * as the evaluator is used. The cached values do not prevent the unloading of the classes.
+     */
+    private Evaluator.Node quantifiedEvaluator(SelectorNode.Quantified node, Class<?> kind) {
+        final var name = node.quantifier() == null ? node.elements : node.quantifier();
+        final var functions = quantifiedElements.get(node.elements);
+        if (functions == null) {
+            throw exceptionFactory.apply("There are no elements '" + name + "' to aggregate");
+        }
+        final var sub = evaluator(node.subNode, functions.resultKind, null);
+        final Function<Object, Object[]> elements;
+        final var function = functions.forKind(kind);
+        if (function != null) {
+            elements = function;
+        } else {
+            assertApplicable(functions, name, kind);
+            elements = m -> {
+                final var dispatched = functions.forObject(m);
+                if (dispatched == null) {
+                    notApplicable(name, m);
+                    return null;
+                }
+                return dispatched.apply(m);
+            };
+        }
+        final var inapplicableValue = inapplicable != null && inapplicable;
+        final Evaluator.Node aggregate;
+        switch (node.aggregate) {
+            case ANY:
+            case ALL:
+                final var all = node.aggregate == SelectorNode.Quantified.Aggregate.ALL;
+                aggregate = (m, frame) -> {
+                    if (m == null) {
+                        return all;
+                    }
+                    final var objects = elements.apply(m);
+                    if (objects == null) {
+                        return inapplicableValue;
+                    }
+                    for (final var object : objects) {
+                        if (sub.test(object, null) != all) {
+                            return !all;
+                        }
+                    }
+                    return all;
+                };
+                break;
+            case COUNT:
+                final var comparison = node.comparison;
+                final var limit = node.limit;
+                aggregate = (m, frame) -> {
+                    if (m == null) {
+                        return comparison.test(0, limit);
+                    }
+                    final var objects = elements.apply(m);
+                    if (objects == null) {
+                        return inapplicableValue;
+                    }
+                    var count = 0;
+                    for (final var object : objects) {
+                        if (sub.test(object, null)) {
+                            count++;
+                        }
+                    }
+                    return comparison.test(count, limit);
+                };
+                break;
+            default:
+                throw exceptionFactory.apply("Invalid aggregate '" + node.aggregate + "' in the compiled structure");
+        }
+        final var memo = new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(Class<?> klass) {
+                return aggregate.test(klass, null);
+            }
+        };
+        return (m, frame) -> m instanceof Class ? memo.get((Class<?>) m) : aggregate.test(m, frame);
+    }
+
+    private Evaluator.Node regexEvaluator(SelectorNode.Regex node, Class<?> kind) {
+        final var name = node.name;
+        final var regex = node.regex;
+        final var functions = regexSelectors.get(name);
+        if (functions == null) {
+            return (m, frame) -> {
+                throw new Evaluator.Failure("There is no regex matcher functionality for '" + name + "'");
+            };
+        }
+        return testEvaluator(name, functions.map(f -> f.apply(regex)), kind);
+    }
+
+    private Evaluator.Node attributeEvaluator(SelectorNode.Attribute node, Class<?> kind) {
+        final var valueTest = node.regex == null ? AnnotationAttributes.equalValue(node.constant)
+            : AnnotationAttributes.matchingValue(node.regex);
+        final var test = AnnotationAttributes.matching(node.annotation, node.attribute, valueTest);
+        final var tests = new KindMap<Predicate<Object>>();
+        tests.put(AnnotatedElement.class, m -> test.test((AnnotatedElement) m));
+        return testEvaluator("annotation(" + node.annotation + ")", tests, kind);
+    }
+
+    /**
+     * Build the evaluator of a condition that was already prepared for the node, like a regex selector for the
+     * regular expression.
+     */
+    private Evaluator.Node testEvaluator(String name, KindMap<Predicate<Object>> tests, Class<?> kind) {
+        if (tests.isUniversal()) {
+            final var test = tests.forKind(Object.class);
+            return (m, frame) -> test.test(m);
+        }
+        final var test = tests.forKind(kind);
+        if (test != null) {
+            return (m, frame) -> m != null && test.test(m);
+        }
+        assertApplicable(tests, name, kind);
+        return (m, frame) -> {
+            if (m == null) {
+                return false;
+            }
+            final var dispatched = tests.forObject(m);
+            return dispatched == null ? notApplicable(name, m) : dispatched.test(m);
+        };
+    }
+
+    private Evaluator.Node terminalEvaluator(SelectorNode.Terminal node, Class<?> kind) {
+        final var name = node.terminal;
+        final var functions = selectors.get(name);
+        if (functions == null) {
+            return (m, frame) -> {
+                throw new Evaluator.Failure("The selector '" + name + "' is not known.");
+            };
+        }
+        if (functions.isUniversal()) {
+            final var function = functions.forKind(Object.class);
+            return (m, frame) -> function.apply(m);
+        }
+        final var function = functions.forKind(kind);
+        if (function != null) {
+            return (m, frame) -> m != null && function.apply(m);
+        }
+        assertApplicable(functions, name, kind);
+        return (m, frame) -> {
+            if (m == null) {
+                return false;
+            }
+            final var dispatched = functions.forObject(m);
+            return dispatched == null ? notApplicable(name, m) : dispatched.apply(m);
+        };
+    }
+
+    /**
+     * Check during the compilation that the functionality can be applied to at least some objects of the kind.
+     */
+    private void assertApplicable(KindMap<?> functions, String name, Class<?> kind) {
+        if (!functions.mayApply(kind)) {
+            throw exceptionFactory.apply("'" + name + "' cannot be applied to " + kind.getName());
+        }
+    }
+
+    /**
+     * Handle the case when the actual object is of a kind that the condition or conversion cannot be applied to.
+     *
+     * @return the configured value for lenient selectors. Strict selectors throw exception.
+     */
+    private boolean notApplicable(String name, Object m) {
+        if (inapplicable != null) {
+            return inapplicable;
+        }
+        throw new Evaluator.Failure("Selector '" + name + "' cannot be applied to " + m.getClass());
+    }
+}
@@ -0,0 +1,85 @@
+package javax0.refi.selector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The transitive closures of the class hierarchy used by the quantifiers {@code anySuper}, {@code allSupers}, {@code
+ * anyInterface}, {@code allInterfaces}, {@code anyEnclosing} and {@code allEnclosing}.
+ * <p>
+ * The closures are calculated once for each class and they are cached in {@link ClassValue}s. The cache does not
+ * prevent the unloading of the classes.
+ */
+final class Hierarchy {
+    private static final Class<?>[] NONE = new Class<?>[0];
+
+    private Hierarchy() {
+    }
+
+    private static final ClassValue<Class<?>[]> SUPERS = new ClassValue<>() {
+        @Override
+        protected Class<?>[] computeValue(Class<?> klass) {
+            final var supers = new ArrayList<Class<?>>();
+            for (var superClass = klass.getSuperclass(); superClass != null; superClass = superClass.getSuperclass()) {
+                supers.add(superClass);
+            }
+            return supers.toArray(NONE);
+        }
+    };
+
+    private static final ClassValue<Class<?>[]> INTERFACES = new ClassValue<>() {
+        @Override
+        protected Class<?>[] computeValue(Class<?> klass) {
+            final Set<Class<?>> interfaces = new LinkedHashSet<>();
+            for (final var interfAce : klass.getInterfaces()) {
+                interfaces.add(interfAce);
+                interfaces.addAll(Arrays.asList(interfaces(interfAce)));
+            }
+            final var superClass = klass.getSuperclass();
+            if (superClass != null) {
+                interfaces.addAll(Arrays.asList(interfaces(superClass)));
+            }
+            return interfaces.toArray(NONE);
+        }
+    };
+
+    private static final ClassValue<Class<?>[]> ENCLOSINGS = new ClassValue<>() {
+        @Override
+        protected Class<?>[] computeValue(Class<?> klass) {
+            final var enclosings = new ArrayList<Class<?>>();
+            for (var enclosing = klass.getEnclosingClass(); enclosing != null; enclosing = enclosing.getEnclosingClass()) {
+                enclosings.add(enclosing);
+            }
+            return enclosings.toArray(NONE);
+        }
+    };
+
+    /**
+     * @param klass the class
+     * @return the superclasses of the class starting with the direct superclass and ending with {@link Object}. The
+     * returned array is shared, it must not be modified.
+     */
+    static Class<?>[] supers(Class<?> klass) {
+        return SUPERS.get(klass);
+    }
+
+    /**
+     * @param klass the class or interface
+     * @return all the interfaces the class implements, or the interface extends, directly or indirectly. The returned
+     * array is shared, it must not be modified.
+     */
+    static Class<?>[] interfaces(Class<?> klass) {
+        return INTERFACES.get(klass);
+    }
+
+    /**
+     * @param klass the class
+     * @return the enclosing classes of the class starting with the innermost. The returned array is shared, it must not
+     * be modified.
+     */
+    static Class<?>[] enclosings(Class<?> klass) {
+        return ENCLOSINGS.get(klass);
+    }
+}
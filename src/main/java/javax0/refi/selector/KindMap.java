@@ -0,0 +1,106 @@
+package javax0.refi.selector;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The implementations of a named selector, regex selector or converter for the different kinds of reflective objects.
+ * <p>
+ * A kind is a class, like {@link java.lang.reflect.Method Method}, {@link java.lang.reflect.Field Field}, {@link
+ * Class}, or some interface like {@link java.lang.reflect.Member Member}. An implementation registered for a kind is
+ * used for all objects that are instances of the kind. Implementations registered for {@link Object} apply to anything
+ * including {@code null}.
+ *
+ * @param <F> the type of the function implementing the functionality
+ */
+final class KindMap<F> {
+    private final Map<Class<?>, F> implementations = new LinkedHashMap<>();
+    /**
+     * The kind of the object a converter returns. Selectors and regex selectors do not use it.
+     */
+    final Class<?> resultKind;
+
+    KindMap(Class<?> resultKind) {
+        this.resultKind = resultKind;
+    }
+
+    KindMap() {
+        this(Object.class);
+    }
+
+    static <F> KindMap<F> of(F function) {
+        final var it = new KindMap<F>();
+        it.put(Object.class, function);
+        return it;
+    }
+
+    void put(Class<?> kind, F function) {
+        implementations.put(kind, function);
+    }
+
+    /**
+     * @param mapper the function to convert the implementations
+     * @param <G>    the type of the converted implementations
+     * @return a new map containing the converted implementations for the same kinds
+     */
+    <G> KindMap<G> map(Function<F, G> mapper) {
+        final var it = new KindMap<G>(resultKind);
+        for (final var entry : implementations.entrySet()) {
+            it.put(entry.getKey(), mapper.apply(entry.getValue()));
+        }
+        return it;
+    }
+
+    /**
+     * @return {@code true} if the functionality is implemented for any object including {@code null}, like the
+     * selectors and converters defined by the user
+     */
+    boolean isUniversal() {
+        return implementations.containsKey(Object.class);
+    }
+
+    /**
+     * Get the implementation that can be used for all objects of the given kind.
+     *
+     * @param kind the kind of the objects, statically known when the expression is compiled
+     * @return the implementation or {@code null} if there is no implementation that could handle all objects of the
+     * kind
+     */
+    F forKind(Class<?> kind) {
+        for (final var entry : implementations.entrySet()) {
+            if (entry.getKey().isAssignableFrom(kind)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param kind the kind of the objects, statically known when the expression is compiled
+     * @return {@code true} if there is an implementation that may be applicable to some objects of the kind
+     */
+    boolean mayApply(Class<?> kind) {
+        for (final var implemented : implementations.keySet()) {
+            if (implemented.isAssignableFrom(kind) || kind.isAssignableFrom(implemented)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the implementation that handles the actual object.
+     *
+     * @param m the object, not {@code null}
+     * @return the implementation or {@code null} if the functionality is not implemented for the object
+     */
+    F forObject(Object m) {
+        for (final var entry : implementations.entrySet()) {
+            if (entry.getKey().isInstance(m)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -26,10 +26,16 @@ public class Lexeme {
      *
      * * a symbol, like `=` or `~`
      *
-     * *  
+     * * a regular expression between `/` characters,
+     *
+     * * a function, like `any` or `count` immediately followed by the `(`, which is consumed with the function name,
+     *
+     * * a non-negative decimal number,
+     *
+     * * a string between `"` characters, in which `\` escapes the next character.
      */
     public enum Type {
-        WORD, SYMBOL,REGEX, EOF
+        WORD, SYMBOL,REGEX, FUNCTION, NUMBER, STRING, EOF
     }
 
 }
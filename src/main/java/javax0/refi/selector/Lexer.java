@@ -1,5 +1,7 @@
 package javax0.refi.selector;
 
+import java.util.Set;
+
 /**
  * Lexical analyzer used to analyze strings for the selector expressions (see {@link Selector}.
  * <p>
@@ -15,6 +17,11 @@ package javax0.refi.selector;
  */
 public class Lexer {
     private static final Lexeme EOF = new Lexeme("", Lexeme.Type.EOF);
+    /**
+     * The words that are returned as {@link Lexeme.Type#FUNCTION} when they are followed by a {@code (}. Other words
+     * followed by {@code (} are returned as a single {@link Lexeme.Type#WORD} including the parenthesized part.
+     */
+    private static final Set<String> FUNCTIONS = Set.of("any", "all", "none", "count", "annotation");
     private final StringBuilder input;
     private Lexeme lookAhead = null;
 
@@ -104,6 +111,9 @@ public class Lexer {
             boolean inArgs = false;
             while (input1stCharIsStillPartOfMethodPrototype(inArgs)) {
                 final char c = input.charAt(0);
+                if ('(' == c && FUNCTIONS.contains(word.toString())) {
+                    break;
+                }
                 word.append(input.charAt(0));
                 deleteOneCharacter();
                 if ('(' == c) {
@@ -112,9 +122,43 @@ public class Lexer {
                     break;
                 }
             }
+            if (FUNCTIONS.contains(word.toString())) {
+                deleteSpaceFromTheStartOfInput();
+                if (input.length() > 0 && input.charAt(0) == '(') {
+                    deleteOneCharacter();
+                    return new Lexeme(word.toString(), Lexeme.Type.FUNCTION);
+                }
+            }
             return new Lexeme(word.toString(), Lexeme.Type.WORD);
         }
 
+        if (inputStartsWithString()) {
+            final var string = new StringBuilder();
+            deleteOneCharacter();
+            while (input.length() > 0 && input.charAt(0) != '"') {
+                if (input.charAt(0) == '\\' && input.length() > 1) {
+                    deleteOneCharacter();
+                }
+                string.append(input.charAt(0));
+                deleteOneCharacter();
+            }
+            if (input.length() > 0) {
+                deleteOneCharacter();
+            } else {
+                throw new IllegalArgumentException("String is not terminated.");
+            }
+            return new Lexeme(string.toString(), Lexeme.Type.STRING);
+        }
+
+        if (inputStartsWithDigit()) {
+            final var number = new StringBuilder();
+            while (inputStartsWithDigit()) {
+                number.append(input.charAt(0));
+                deleteOneCharacter();
+            }
+            return new Lexeme(number.toString(), Lexeme.Type.NUMBER);
+        }
+
         if (inputStartsWithRegex()) {
             final var regex = new StringBuilder();
             deleteOneCharacter();
@@ -162,6 +206,14 @@ public class Lexer {
                 || (')' == input.charAt(0) && inArgs));
     }
 
+    private boolean inputStartsWithString() {
+        return input.length() > 0 && input.charAt(0) == '"';
+    }
+
+    private boolean inputStartsWithDigit() {
+        return input.length() > 0 && Character.isDigit(input.charAt(0));
+    }
+
     private boolean inputStartsWithAnIdentifier() {
         return Character.isJavaIdentifierStart(input.charAt(0));
     }
@@ -0,0 +1,684 @@
+package javax0.refi.selector;
+
+import javax0.refi.Utilities;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+
+/**
+ * The metadata of the classes and members of a {@link SelectorIndex} laid out in off-heap primitive columns, and the
+ * evaluation of the conditions on the columns.
+ * <p>
+ * The kinds, the modifiers, the ids of the names, of the signatures and of the declaring classes of the members are
+ * stored in direct buffers, one buffer for each property (column). The names, the signatures created by the {@link
+ * MethodSignatureFactory}, and the names of the annotation types and of the superclasses and interfaces are stored
+ * once in off-heap dictionaries. The annotations and the superclasses and interfaces of the members are stored as
+ * lists of name ids (edges), and also inverted, as lists of the members for each name id (posting lists). The heap only
+ * holds the indexed {@link Class} objects, which are loaded anyway. The reflective objects of the members are not kept,
+ * they are looked up by the name and the descriptor when they are needed, see {@link #member(int)}.
+ * <p>
+ * A condition is evaluated for all the members at once producing a bitmap, which is a {@code long[]} array having a
+ * bit for each member. The bitmaps are combined word by word. The loops evaluating the conditions read the columns
+ * sequentially and do not touch the reflective objects.
+ */
+final class MemberColumns {
+    private static final Class<?>[] KINDS = {Class.class, Method.class, Field.class, Constructor.class};
+    private static final byte CLASS = 0;
+    private static final byte METHOD = 1;
+    private static final byte FIELD = 2;
+    private static final byte CONSTRUCTOR = 3;
+
+    final int size;
+    private final Class<?>[] classes;
+    /**
+     * The index of the kind of the members in {@link #KINDS}.
+     */
+    private final ByteBuffer kinds;
+    private final IntBuffer modifiers;
+    /**
+     * The ids of the names of the members in {@link #names}.
+     */
+    private final IntBuffer nameIds;
+    /**
+     * The ids of the signatures of the methods and constructors in {@link #signatures}, {@code -1} for the classes and
+     * fields.
+     */
+    private final IntBuffer signatureIds;
+    /**
+     * The index of the class in {@link #classes} that is the member itself or that declares the member.
+     */
+    private final IntBuffer ownerIds;
+    /**
+     * The position of the declaring class of the members among the indexed members, or {@code -1} if the member does
+     * not have a declaring class or the declaring class is not indexed.
+     */
+    private final IntBuffer declaringClassIds;
+    /**
+     * The ids of the descriptors of the methods and constructors in {@link #descriptors}, {@code -1} for the classes
+     * and fields.
+     */
+    private final IntBuffer descriptorIds;
+    private final Dictionary names = new Dictionary();
+    private final Dictionary signatures = new Dictionary();
+    /**
+     * The method descriptors, like {@code (ILjava/lang/String;)V}, used to look up the methods and constructors.
+     */
+    private final Dictionary descriptors = new Dictionary();
+    /**
+     * The ids of the simple names of the classes indexed by the ids of the names of the classes, {@code -1} for names
+     * that are not the names of superclasses or interfaces.
+     */
+    private final IntBuffer simpleNameIds;
+    private final Edges annotations;
+    private final Edges supers;
+    private final Edges interfaces;
+
+    MemberColumns(Collection<Class<?>> indexed) {
+        classes = indexed.toArray(new Class<?>[0]);
+        final var kindColumn = new IntColumn();
+        final var modifierColumn = new IntColumn();
+        final var nameColumn = new IntColumn();
+        final var signatureColumn = new IntColumn();
+        final var ownerColumn = new IntColumn();
+        final var declaringColumn = new IntColumn();
+        final var descriptorColumn = new IntColumn();
+        final var simpleNameColumn = new IntColumn();
+        final var annotationEdges = new Edges.Builder();
+        final var superEdges = new Edges.Builder();
+        final var interfaceEdges = new Edges.Builder();
+        final Map<Class<?>, Integer> positions = new IdentityHashMap<>();
+        final var enclosings = new ArrayList<Class<?>>();
+        for (int owner = 0; owner < classes.length; owner++) {
+            final var klass = classes[owner];
+            final var position = kindColumn.size;
+            positions.put(klass, position);
+            enclosings.add(klass.getDeclaringClass());
+            kindColumn.add(CLASS);
+            modifierColumn.add(klass.getModifiers());
+            nameColumn.add(names.id(klass.getName()));
+            signatureColumn.add(-1);
+            ownerColumn.add(owner);
+            declaringColumn.add(-1);
+            descriptorColumn.add(-1);
+            annotationEdges.add(annotationNameIds(klass));
+            superEdges.add(classNameIds(Hierarchy.supers(klass), simpleNameColumn));
+            interfaceEdges.add(classNameIds(Hierarchy.interfaces(klass), simpleNameColumn));
+            final List<Member> members = new ArrayList<>();
+            Utilities.Methods.getDeclared(klass).forEach(members::add);
+            Utilities.Fields.getDeclared(klass).forEach(members::add);
+            members.addAll(Arrays.asList(MemberTables.sortedConstructors(klass)));
+            for (final var member : members) {
+                kindColumn.add(member instanceof Method ? METHOD : member instanceof Field ? FIELD : CONSTRUCTOR);
+                modifierColumn.add(member.getModifiers());
+                nameColumn.add(names.id(member.getName()));
+                signatureColumn.add(member instanceof Field ? -1 : signatures.id(signature(member)));
+                descriptorColumn.add(member instanceof Field ? -1 : descriptors.id(descriptor(member)));
+                ownerColumn.add(owner);
+                declaringColumn.add(position);
+                annotationEdges.add(annotationNameIds((AnnotatedElement) member));
+                superEdges.add(new int[0]);
+                interfaceEdges.add(new int[0]);
+            }
+        }
+        for (int owner = 0; owner < classes.length; owner++) {
+            final var enclosing = enclosings.get(owner);
+            if (enclosing != null) {
+                declaringColumn.set(positions.get(classes[owner]), positions.getOrDefault(enclosing, -1));
+            }
+        }
+        size = kindColumn.size;
+        kinds = ByteBuffer.allocateDirect(size);
+        for (int i = 0; i < size; i++) {
+            kinds.put(i, (byte) kindColumn.get(i));
+        }
+        modifiers = modifierColumn.seal();
+        nameIds = nameColumn.seal();
+        signatureIds = signatureColumn.seal();
+        ownerIds = ownerColumn.seal();
+        declaringClassIds = declaringColumn.seal();
+        descriptorIds = descriptorColumn.seal();
+        while (simpleNameColumn.size < names.size()) {
+            simpleNameColumn.add(-1);
+        }
+        simpleNameIds = simpleNameColumn.seal();
+        annotations = annotationEdges.seal(names.size());
+        supers = superEdges.seal(names.size());
+        interfaces = interfaceEdges.seal(names.size());
+        names.seal();
+        signatures.seal();
+        descriptors.seal();
+    }
+
+    private static String signature(Member member) {
+        return member instanceof Method ?
+            new MethodSignatureFactory().signature((Method) member)
+            :
+            ((Constructor<?>) member).toGenericString();
+    }
+
+    private static String descriptor(Member member) {
+        return member instanceof Method ?
+            MethodType.methodType(((Method) member).getReturnType(), ((Method) member).getParameterTypes())
+                .toMethodDescriptorString()
+            :
+            MethodType.methodType(void.class, ((Constructor<?>) member).getParameterTypes()).toMethodDescriptorString();
+    }
+
+    private int[] annotationNameIds(AnnotatedElement element) {
+        final var annotations = element.getAnnotations();
+        final var ids = new int[annotations.length];
+        for (int i = 0; i < annotations.length; i++) {
+            ids[i] = names.id(Annotations.name(annotations[i].annotationType()));
+        }
+        return ids;
+    }
+
+    private int[] classNameIds(Class<?>[] types, IntColumn simpleNameColumn) {
+        final var ids = new int[types.length];
+        for (int i = 0; i < types.length; i++) {
+            ids[i] = names.id(types[i].getName());
+            final var simpleNameId = names.id(types[i].getSimpleName());
+            while (simpleNameColumn.size <= ids[i]) {
+                simpleNameColumn.add(-1);
+            }
+            simpleNameColumn.set(ids[i], simpleNameId);
+        }
+        return ids;
+    }
+
+    /**
+     * Look up the reflective object of a member. Only the class objects are kept in the memory, the methods, fields and
+     * constructors are looked up by their names, and the methods and constructors also by their parameter types
+     * resolved from the descriptor. The lookup copies only the member it finds. The members are not cached, they are
+     * looked up only for the members the residual evaluation or the result needs.
+     *
+     * @param i the position of the member
+     * @return the class, method, field or constructor
+     */
+    Object member(int i) {
+        final var owner = classes[ownerIds.get(i)];
+        final var kind = kinds.get(i);
+        if (kind == CLASS) {
+            return owner;
+        }
+        final var name = names.get(nameIds.get(i));
+        try {
+            if (kind == FIELD) {
+                return owner.getDeclaredField(name);
+            }
+            final var type = MethodType.fromMethodDescriptorString(descriptors.get(descriptorIds.get(i)),
+                owner.getClassLoader());
+            if (kind == CONSTRUCTOR) {
+                return owner.getDeclaredConstructor(type.parameterArray());
+            }
+            final var method = owner.getDeclaredMethod(name, type.parameterArray());
+            if (method.getReturnType() == type.returnType()) {
+                return method;
+            }
+            // a bridge method, it has the same name and parameter types as the method returning a more specific type
+            for (final var candidate : owner.getDeclaredMethods()) {
+                if (candidate.getName().equals(name) && candidate.getReturnType() == type.returnType()
+                    && Arrays.equals(candidate.getParameterTypes(), type.parameterArray())) {
+                    return candidate;
+                }
+            }
+            throw new NoSuchMethodException(name);
+        } catch (NoSuchFieldException | NoSuchMethodException e) {
+            throw new IllegalStateException("The member '" + name + "' is not in the class '" + owner.getName() + "'",
+                e);
+        }
+    }
+
+    /**
+     * @param i the position of the member
+     * @return the kind, the name of the class and the name and signature of the member, which identify the member also
+     * when the class is loaded again by another class loader
+     */
+    String key(int i) {
+        final var kind = kinds.get(i);
+        final var key = kind + classes[ownerIds.get(i)].getName();
+        if (kind == CLASS) {
+            return key;
+        }
+        final var signatureId = signatureIds.get(i);
+        return key + '#' + names.get(nameIds.get(i)) + (signatureId < 0 ? "" : '#' + signatures.get(signatureId));
+    }
+
+    /**
+     * @param kind the kind of the objects, like {@link Method} or {@link Member}
+     * @return the bitmap of the members that are instances of the kind
+     */
+    long[] ofKind(Class<?> kind) {
+        final var matching = new boolean[KINDS.length];
+        for (int k = 0; k < KINDS.length; k++) {
+            matching[k] = kind.isAssignableFrom(KINDS[k]);
+        }
+        final var bitmap = empty();
+        for (int i = 0; i < size; i++) {
+            if (matching[kinds.get(i)]) {
+                bitmap[i >>> 6] |= 1L << i;
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Evaluate a modifier selector. The selector is {@code false} for the members of the kinds it cannot be applied
+     * to.
+     *
+     * @param tests the tests of the modifier selector for the different kinds
+     * @param scope the bitmap of the members to evaluate the selector for
+     * @return the bitmap of the members in the scope the selector is {@code true} for
+     */
+    long[] modifiers(KindMap<IntPredicate> tests, long[] scope) {
+        final var kindTests = new IntPredicate[KINDS.length];
+        for (int k = 0; k < KINDS.length; k++) {
+            kindTests[k] = tests.forKind(KINDS[k]);
+        }
+        final var bitmap = empty();
+        for (int w = 0; w < scope.length; w++) {
+            for (var word = scope[w]; word != 0; word &= word - 1) {
+                final var i = (w << 6) + Long.numberOfTrailingZeros(word);
+                final var test = kindTests[kinds.get(i)];
+                if (test != null && test.test(modifiers.get(i))) {
+                    bitmap[w] |= 1L << i;
+                }
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Evaluate the {@code name ~ /regex/} regex selector. The regular expression is matched against each distinct name
+     * only once.
+     *
+     * @param regex the regular expression
+     * @param scope the bitmap of the members to evaluate the selector for
+     * @return the bitmap of the members in the scope the selector is {@code true} for
+     */
+    long[] names(Pattern regex, long[] scope) {
+        return lookup(nameIds, names.matching(regex), scope);
+    }
+
+    /**
+     * Evaluate the {@code signature ~ /regex/} regex selector. The signature of the constructors is not matched.
+     *
+     * @param regex the regular expression
+     * @param scope the bitmap of the members to evaluate the selector for
+     * @return the bitmap of the members in the scope the selector is {@code true} for
+     */
+    long[] signatures(Pattern regex, long[] scope) {
+        return MemberColumns.and(ofKind(Method.class), lookup(signatureIds, signatures.matching(regex), scope));
+    }
+
+    private long[] lookup(IntBuffer ids, BitSet matching, long[] scope) {
+        final var bitmap = empty();
+        for (int w = 0; w < scope.length; w++) {
+            for (var word = scope[w]; word != 0; word &= word - 1) {
+                final var i = (w << 6) + Long.numberOfTrailingZeros(word);
+                final var id = ids.get(i);
+                if (id >= 0 && matching.get(id)) {
+                    bitmap[w] |= 1L << i;
+                }
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Evaluate the {@code annotation ~ /regex/} regex selector.
+     *
+     * @param regex the regular expression
+     * @param scope the bitmap of the members to evaluate the selector for
+     * @return the bitmap of the members in the scope the selector is {@code true} for
+     */
+    long[] annotations(Pattern regex, long[] scope) {
+        return annotations.any(names.matching(regex), scope, empty());
+    }
+
+    /**
+     * Evaluate {@code anySuper -> name ~ /regex/} or {@code anySuper -> simpleName ~ /regex/}.
+     *
+     * @param regex  the regular expression
+     * @param simple {@code true} to match the simple names of the superclasses
+     * @param scope  the bitmap of the members to evaluate the selector for
+     * @return the bitmap of the members in the scope the selector is {@code true} for
+     */
+    long[] supers(Pattern regex, boolean simple, long[] scope) {
+        return supers.any(classNames(regex, simple), scope, empty());
+    }
+
+    /**
+     * Evaluate {@code anyInterface -> name ~ /regex/} or {@code anyInterface -> simpleName ~ /regex/}.
+     *
+     * @param regex  the regular expression
+     * @param simple {@code true} to match the simple names of the interfaces
+     * @param scope  the bitmap of the members to evaluate the selector for
+     * @return the bitmap of the members in the scope the selector is {@code true} for
+     */
+    long[] interfaces(Pattern regex, boolean simple, long[] scope) {
+        return interfaces.any(classNames(regex, simple), scope, empty());
+    }
+
+    /**
+     * @return the ids of the names of the classes whose name or simple name matches the regular expression
+     */
+    private BitSet classNames(Pattern regex, boolean simple) {
+        final var matching = names.matching(regex);
+        if (!simple) {
+            return matching;
+        }
+        final var classNames = new BitSet();
+        for (int id = 0; id < simpleNameIds.limit(); id++) {
+            final var simpleNameId = simpleNameIds.get(id);
+            if (simpleNameId >= 0 && matching.get(simpleNameId)) {
+                classNames.set(id);
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * @param scope the bitmap of some members
+     * @return the bitmap of the declaring classes of the members or {@code null} if any of the members does not have a
+     * declaring class in the index
+     */
+    long[] declaringClasses(long[] scope) {
+        final var bitmap = empty();
+        for (int w = 0; w < scope.length; w++) {
+            for (var word = scope[w]; word != 0; word &= word - 1) {
+                final var id = declaringClassIds.get((w << 6) + Long.numberOfTrailingZeros(word));
+                if (id < 0) {
+                    return null;
+                }
+                bitmap[id >>> 6] |= 1L << id;
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * @param classes the bitmap of some classes
+     * @param scope   the bitmap of some members
+     * @return the bitmap of the members in the scope whose declaring class is in the {@code classes}
+     */
+    long[] declaredIn(long[] classes, long[] scope) {
+        final var bitmap = empty();
+        for (int w = 0; w < scope.length; w++) {
+            for (var word = scope[w]; word != 0; word &= word - 1) {
+                final var i = (w << 6) + Long.numberOfTrailingZeros(word);
+                final var id = declaringClassIds.get(i);
+                if ((classes[id >>> 6] & 1L << id) != 0) {
+                    bitmap[w] |= 1L << i;
+                }
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return a new bitmap without any member
+     */
+    long[] empty() {
+        return new long[(size + 63) >>> 6];
+    }
+
+    static long[] and(long[] a, long[] b) {
+        final var bitmap = new long[a.length];
+        for (int w = 0; w < bitmap.length; w++) {
+            bitmap[w] = a[w] & b[w];
+        }
+        return bitmap;
+    }
+
+    static long[] or(long[] a, long[] b) {
+        final var bitmap = new long[a.length];
+        for (int w = 0; w < bitmap.length; w++) {
+            bitmap[w] = a[w] | b[w];
+        }
+        return bitmap;
+    }
+
+    static long[] andNot(long[] a, long[] b) {
+        final var bitmap = new long[a.length];
+        for (int w = 0; w < bitmap.length; w++) {
+            bitmap[w] = a[w] & ~b[w];
+        }
+        return bitmap;
+    }
+
+    static boolean isEmpty(long[] bitmap) {
+        for (final var word : bitmap) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static IntBuffer allocate(int size) {
+        return ByteBuffer.allocateDirect(size * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    /**
+     * A growing on-heap int array used while the columns are built.
+     */
+    private static final class IntColumn {
+        private int[] values = new int[16];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void set(int index, int value) {
+            values[index] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        IntBuffer seal() {
+            final var buffer = allocate(size);
+            buffer.put(values, 0, size);
+            return buffer.flip();
+        }
+    }
+
+    /**
+     * Strings stored once, encoded in UTF-8 in a direct buffer, and referenced by their ids.
+     */
+    private static final class Dictionary {
+        private Map<String, Integer> ids = new HashMap<>();
+        private List<String> strings = new ArrayList<>();
+        private ByteBuffer bytes;
+        private IntBuffer offsets;
+
+        int id(String string) {
+            return ids.computeIfAbsent(string, k -> {
+                strings.add(k);
+                return strings.size() - 1;
+            });
+        }
+
+        int size() {
+            return offsets == null ? strings.size() : offsets.limit() - 1;
+        }
+
+        /**
+         * Move the strings to the direct buffer. After this, no new strings can be added.
+         */
+        void seal() {
+            final var encoded = new byte[strings.size()][];
+            var length = 0;
+            for (int id = 0; id < encoded.length; id++) {
+                encoded[id] = strings.get(id).getBytes(StandardCharsets.UTF_8);
+                length += encoded[id].length;
+            }
+            bytes = ByteBuffer.allocateDirect(length);
+            offsets = allocate(encoded.length + 1);
+            for (final var string : encoded) {
+                offsets.put(bytes.position());
+                bytes.put(string);
+            }
+            offsets.put(bytes.position());
+            offsets.flip();
+            ids = null;
+            strings = null;
+        }
+
+        String get(int id) {
+            final var start = offsets.get(id);
+            final var string = new byte[offsets.get(id + 1) - start];
+            bytes.duplicate().position(start).get(string);
+            return new String(string, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @param regex the regular expression
+         * @return the ids of the strings that match the regular expression
+         */
+        BitSet matching(Pattern regex) {
+            final var matching = new BitSet();
+            for (int id = 0; id < size(); id++) {
+                if (regex.matcher(get(id)).find()) {
+                    matching.set(id);
+                }
+            }
+            return matching;
+        }
+    }
+
+    /**
+     * Lists of ids for each member, and the inverted lists of the members for each id, stored in direct buffers.
+     */
+    private static final class Edges {
+        /**
+         * The start of the list of the member in {@link #targets}. The list of the member {@code i} ends where the list
+         * of the member {@code i+1} starts.
+         */
+        private final IntBuffer offsets;
+        private final IntBuffer targets;
+        /**
+         * The start of the posting list of the id in {@link #postings}. The posting list of an id contains the
+         * positions of the members that have the id in their list, in increasing order.
+         */
+        private final IntBuffer postingOffsets;
+        private final IntBuffer postings;
+
+        private Edges(IntBuffer offsets, IntBuffer targets, IntBuffer postingOffsets, IntBuffer postings) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.postingOffsets = postingOffsets;
+            this.postings = postings;
+        }
+
+        /**
+         * Find the members that have any of the matching ids. When the posting lists of the matching ids are shorter
+         * than the number of the members in the scope, then the posting lists are read, otherwise the lists of the
+         * members in the scope.
+         *
+         * @param matching the ids to look for
+         * @param scope    the bitmap of the members to check
+         * @param bitmap   the empty bitmap to fill
+         * @return the bitmap of the members in the scope that have any of the matching ids in their list
+         */
+        long[] any(BitSet matching, long[] scope, long[] bitmap) {
+            var postingCount = 0L;
+            for (var id = matching.nextSetBit(0); id >= 0 && id < postingOffsets.limit() - 1;
+                 id = matching.nextSetBit(id + 1)) {
+                postingCount += postingOffsets.get(id + 1) - postingOffsets.get(id);
+            }
+            var scopeCount = 0L;
+            for (final var word : scope) {
+                scopeCount += Long.bitCount(word);
+            }
+            return postingCount < scopeCount ? posted(matching, scope, bitmap) : scanned(matching, scope, bitmap);
+        }
+
+        private long[] posted(BitSet matching, long[] scope, long[] bitmap) {
+            for (var id = matching.nextSetBit(0); id >= 0 && id < postingOffsets.limit() - 1;
+                 id = matching.nextSetBit(id + 1)) {
+                for (int p = postingOffsets.get(id); p < postingOffsets.get(id + 1); p++) {
+                    final var i = postings.get(p);
+                    bitmap[i >>> 6] |= scope[i >>> 6] & 1L << i;
+                }
+            }
+            return bitmap;
+        }
+
+        private long[] scanned(BitSet matching, long[] scope, long[] bitmap) {
+            for (int w = 0; w < scope.length; w++) {
+                for (var word = scope[w]; word != 0; word &= word - 1) {
+                    final var i = (w << 6) + Long.numberOfTrailingZeros(word);
+                    for (int e = offsets.get(i); e < offsets.get(i + 1); e++) {
+                        if (matching.get(targets.get(e))) {
+                            bitmap[w] |= 1L << i;
+                            break;
+                        }
+                    }
+                }
+            }
+            return bitmap;
+        }
+
+        private static final class Builder {
+            private final IntColumn offsets = new IntColumn();
+            private final IntColumn targets = new IntColumn();
+
+            void add(int[] ids) {
+                offsets.add(targets.size);
+                for (final var id : ids) {
+                    targets.add(id);
+                }
+            }
+
+            /**
+             * @param ids the number of the ids, all the ids in the lists are smaller
+             * @return the edges with the posting lists
+             */
+            Edges seal(int ids) {
+                final var members = offsets.size;
+                offsets.add(targets.size);
+                final var postingOffsets = new int[ids + 1];
+                for (int e = 0; e < targets.size; e++) {
+                    postingOffsets[targets.get(e) + 1]++;
+                }
+                for (int id = 0; id < ids; id++) {
+                    postingOffsets[id + 1] += postingOffsets[id];
+                }
+                final var next = Arrays.copyOf(postingOffsets, ids);
+                final var postings = allocate(targets.size);
+                for (int i = 0; i < members; i++) {
+                    for (int e = offsets.get(i); e < offsets.get(i + 1); e++) {
+                        postings.put(next[targets.get(e)]++, i);
+                    }
+                }
+                return new Edges(offsets.seal(), targets.seal(), allocate(ids + 1).put(postingOffsets).flip(),
+                    postings);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package javax0.refi.selector;
+
+import javax0.refi.Events;
+import javax0.refi.Utilities;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Function;
+
+/**
+ * The members of the classes used by the aggregates, like {@code methods -> any(...)}.
+ * <p>
+ * The member tables are calculated once for each class and they are cached in {@link ClassValue}s. The cache does not
+ * prevent the unloading of the classes. The order of the members in the tables is deterministic, it is the same as the
+ * order of the corresponding methods in {@link Utilities}.
+ */
+final class MemberTables {
+
+    private MemberTables() {
+    }
+
+    private static final ClassValue<Method[]> METHODS = table("methods",
+        klass -> Utilities.Methods.getAll(klass).toArray(Method[]::new));
+    private static final ClassValue<Method[]> DECLARED_METHODS = table("declaredMethods",
+        klass -> Utilities.Methods.getDeclared(klass).toArray(Method[]::new));
+    private static final ClassValue<Field[]> FIELDS = table("fields",
+        klass -> Utilities.Fields.getAll(klass).toArray(Field[]::new));
+    private static final ClassValue<Field[]> DECLARED_FIELDS = table("declaredFields",
+        klass -> Utilities.Fields.getDeclared(klass).toArray(Field[]::new));
+    private static final ClassValue<Constructor<?>[]> CONSTRUCTORS = table("constructors", MemberTables::sortedConstructors);
+    private static final ClassValue<Class<?>[]> CLASSES = table("classes",
+        klass -> Utilities.Classes.getAll(klass).toArray(Class<?>[]::new));
+
+    private static <M> ClassValue<M[]> table(String name, Function<Class<?>, M[]> members) {
+        return new ClassValue<>() {
+            @Override
+            protected M[] computeValue(Class<?> klass) {
+                final var event = Events.catalog();
+                final var table = members.apply(klass);
+                if (event != null) {
+                    event.report(name, klass, 1, table.length);
+                }
+                return table;
+            }
+        };
+    }
+
+    /**
+     * @param klass the class
+     * @return the declared and inherited methods of the class, see {@link Utilities.Methods#getAll(Class)}. The returned
+     * array is shared, it must not be modified.
+     */
+    static Method[] methods(Class<?> klass) {
+        return METHODS.get(klass);
+    }
+
+    /**
+     * @param klass the class
+     * @return the declared methods of the class. The returned array is shared, it must not be modified.
+     */
+    static Method[] declaredMethods(Class<?> klass) {
+        return DECLARED_METHODS.get(klass);
+    }
+
+    /**
+     * @param klass the class
+     * @return the declared and inherited fields of the class, see {@link Utilities.Fields#getAll(Class)}. The returned
+     * array is shared, it must not be modified.
+     */
+    static Field[] fields(Class<?> klass) {
+        return FIELDS.get(klass);
+    }
+
+    /**
+     * @param klass the class
+     * @return the declared fields of the class. The returned array is shared, it must not be modified.
+     */
+    static Field[] declaredFields(Class<?> klass) {
+        return DECLARED_FIELDS.get(klass);
+    }
+
+    /**
+     * @param klass the class
+     * @return the declared constructors of the class. The returned array is shared, it must not be modified.
+     */
+    static Constructor<?>[] constructors(Class<?> klass) {
+        return CONSTRUCTORS.get(klass);
+    }
+
+    /**
+     * @param klass the class
+     * @return the declared constructors of the class in a deterministic order, without caching them
+     */
+    static Constructor<?>[] sortedConstructors(Class<?> klass) {
+        final var constructors = klass.getDeclaredConstructors();
+        Arrays.sort(constructors, Comparator.comparing(Constructor::toGenericString));
+        return constructors;
+    }
+
+    /**
+     * @param klass the class
+     * @return the declared and inherited member classes of the class, see {@link Utilities.Classes#getAll(Class)}. The
+     * returned array is shared, it must not be modified.
+     */
+    static Class<?>[] classes(Class<?> klass) {
+        return CLASSES.get(klass);
+    }
+}
@@ -0,0 +1,146 @@
+package javax0.refi.selector;
+
+import java.lang.reflect.Member;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+
+/**
+ * A selector that remembers the result of the match for each class, method, field and constructor it was used to
+ * match, created by {@link Selector#memoized()}. Matching a member the second time costs a hash lookup and a bit
+ * test.
+ * <p>
+ * The results are stored for each declaring class in a {@link ClassValue}, as two bits for each member of the class:
+ * the member was already matched, and the result. The members are numbered in the order {@link
+ * Class#getDeclaredMethods()}, {@link Class#getDeclaredFields()} and {@link Class#getDeclaredConstructors()} return
+ * them, the class itself has the number zero. The stored results do not prevent the unloading of the classes.
+ * <p>
+ * The results are forgotten when a function of the selector is defined or redefined, for example, calling {@link
+ * Selector#selectorRe(String, java.util.function.Function) selectorRe()} or {@link Selector#converterRe(String,
+ * java.util.function.Function) converterRe()}. Use a memoized selector only if the functions you define give the same
+ * result for the same member every time. Objects that are not classes or members, like parameters, are matched by the
+ * selector each time.
+ */
+public final class MemoizedSelector {
+
+    private static final long KNOWN = 1L;
+    private static final long MATCHED = 2L;
+
+    /**
+     * The numbers of the class and its members shared by all memoized selectors.
+     */
+    private static final ClassValue<Map<Object, Integer>> ORDINALS = new ClassValue<>() {
+        @Override
+        protected Map<Object, Integer> computeValue(Class<?> type) {
+            final var ordinals = new HashMap<Object, Integer>();
+            ordinals.put(type, 0);
+            try {
+                for (final var method : type.getDeclaredMethods()) {
+                    ordinals.put(method, ordinals.size());
+                }
+                for (final var field : type.getDeclaredFields()) {
+                    ordinals.put(field, ordinals.size());
+                }
+                for (final var constructor : type.getDeclaredConstructors()) {
+                    ordinals.put(constructor, ordinals.size());
+                }
+            } catch (LinkageError e) {
+                return Map.of(type, 0);
+            }
+            return Collections.unmodifiableMap(ordinals);
+        }
+    };
+
+    /**
+     * The results of the matches with one evaluator of the selector. A new one is created when the selector builds a
+     * new evaluator because some function was redefined.
+     */
+    private static final class Results extends ClassValue<AtomicLongArray> {
+        private final Evaluator evaluator;
+
+        private Results(Evaluator evaluator) {
+            this.evaluator = evaluator;
+        }
+
+        @Override
+        protected AtomicLongArray computeValue(Class<?> type) {
+            return new AtomicLongArray((2 * ORDINALS.get(type).size() + 63) / 64);
+        }
+    }
+
+    private final Selector<?> selector;
+    private volatile Results results;
+
+    MemoizedSelector(Selector<?> selector) {
+        this.selector = selector;
+    }
+
+    /**
+     * @return the selector this memoized selector remembers the results of
+     */
+    public Selector<?> selector() {
+        return selector;
+    }
+
+    /**
+     * Check that the object matches the selector, using the remembered result if the object was already matched.
+     *
+     * @param member the member to check
+     * @return {@code true} if the member matches the expression
+     */
+    public boolean match(Object member) {
+        final Class<?> type;
+        if (member instanceof Class) {
+            type = (Class<?>) member;
+        } else if (member instanceof Member) {
+            type = ((Member) member).getDeclaringClass();
+        } else {
+            return selector.match(member);
+        }
+        final var ordinal = ORDINALS.get(type).get(member);
+        if (ordinal == null) {
+            return selector.match(member);
+        }
+        final var results = results();
+        final var bits = results.get(type);
+        final var index = 2 * ordinal;
+        final var shift = index & 63;
+        final var word = bits.get(index >>> 6) >>> shift;
+        if ((word & KNOWN) != 0) {
+            return (word & MATCHED) != 0;
+        }
+        final var result = results.evaluator.test(member);
+        final var value = (result ? KNOWN | MATCHED : KNOWN) << shift;
+        bits.accumulateAndGet(index >>> 6, value, (a, b) -> a | b);
+        return result;
+    }
+
+    public Predicate<Object> predicate() {
+        return this::match;
+    }
+
+    /**
+     * Create a selector of the frames of the stack of the current thread, whose method or constructor matches this
+     * selector. The methods are matched only once, no matter how many times they are on the stack.
+     *
+     * @return a new stack frame selector using this memoized selector
+     */
+    public StackFrameSelector stackFrames() {
+        return new StackFrameSelector(this::match);
+    }
+
+    /**
+     * @return the results belonging to the current evaluator of the selector
+     */
+    private Results results() {
+        final var evaluator = selector.evaluator();
+        var it = results;
+        if (it == null || it.evaluator != evaluator) {
+            it = new Results(evaluator);
+            results = it;
+        }
+        return it;
+    }
+}
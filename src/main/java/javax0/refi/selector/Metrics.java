@@ -0,0 +1,349 @@
+package javax0.refi.selector;
+
+import javax0.refi.Counters;
+import javax0.refi.Counters.Counter;
+import javax0.refi.Counters.Histogram;
+import javax0.refi.Counters.Timer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The metrics of the library: how many selectors were compiled and found in the cache, how long the compilation and
+ * the lookups of {@link javax0.refi.Utilities} and {@link javax0.refi.Invoker} take, and how many objects each cached
+ * selector matched.
+ * <p>
+ * The metrics are collected only when the system property {@code refi.metrics} is {@code true} when the library is
+ * loaded, for example, starting the JVM with {@code -Drefi.metrics=true}. Otherwise, collecting the metrics costs
+ * nothing and the snapshots contain zeros.
+ * <p>
+ * Call {@link #snapshot()} to get the current values, or {@link #registerMBean()} to publish them through JMX.
+ */
+public final class Metrics {
+
+    private Metrics() {
+    }
+
+    /**
+     * The name of the MBean registered by {@link #registerMBean()}.
+     */
+    public static final String OBJECT_NAME = "javax0.refi:type=Metrics";
+
+    /**
+     * @return {@code true} if the metrics are collected
+     */
+    public static boolean isEnabled() {
+        return Counters.ENABLED;
+    }
+
+    /**
+     * @return the current values of the metrics
+     */
+    public static Snapshot snapshot() {
+        final var counters = new LinkedHashMap<String, Long>();
+        for (final var counter : Counter.values()) {
+            counters.put(name(counter), counter.sum());
+        }
+        final var latencies = new LinkedHashMap<String, Latency>();
+        for (final var timer : Timer.values()) {
+            latencies.put(name(timer), new Latency(timer.histogram()));
+        }
+        final var selectors = new ArrayList<Matches>();
+        for (final var selector : Caches.selectors()) {
+            if (selector.tested() > 0) {
+                selectors.add(new Matches(selector));
+            }
+        }
+        return new Snapshot(counters, latencies, selectors);
+    }
+
+    /**
+     * Register an MBean in the platform MBean server publishing the metrics with the name {@value #OBJECT_NAME}. The
+     * registration is done only once, calling this method again does nothing.
+     * <p>
+     * The library does not require the {@code java.management} module, only this method uses it. An application
+     * running on the module path calling this method has to require the module.
+     *
+     * @return the name of the MBean
+     * @throws IllegalStateException if the {@code java.management} module is not in the runtime
+     */
+    public static synchronized ObjectName registerMBean() {
+        if (ModuleLayer.boot().findModule("java.management").isEmpty()) {
+            throw new IllegalStateException("The metrics MBean cannot be registered without the java.management module");
+        }
+        return MBean.register();
+    }
+
+    /**
+     * The values of the metrics at a point in time.
+     */
+    public static final class Snapshot {
+        private final Map<String, Long> counters;
+        private final Map<String, Latency> latencies;
+        private final List<Matches> selectors;
+
+        private Snapshot(Map<String, Long> counters, Map<String, Latency> latencies, List<Matches> selectors) {
+            this.counters = Collections.unmodifiableMap(counters);
+            this.latencies = Collections.unmodifiableMap(latencies);
+            this.selectors = Collections.unmodifiableList(selectors);
+        }
+
+        /**
+         * The counters are
+         * <ul>
+         *     <li>{@code compileHits}, the number of compilations returning a cached selector,</li>
+         *     <li>{@code compileMisses}, the number of compilations parsing the expression,</li>
+         *     <li>{@code classCacheHits} and {@code classCacheMisses}, the number of class names resolved from the
+         *     cache and by the class loader,</li>
+         *     <li>{@code invocations}, the number of methods called by {@link javax0.refi.Invoker}.</li>
+         * </ul>
+         *
+         * @return the values of the counters by name
+         */
+        public Map<String, Long> counters() {
+            return counters;
+        }
+
+        /**
+         * The latencies are {@code compile}, {@code methodsGet}, {@code methodsGetAll}, {@code fieldsGet}, {@code
+         * fieldsGetAll}, {@code classesForName}, {@code invokeLookup} and {@code invoke}.
+         *
+         * @return the latencies by name
+         */
+        public Map<String, Latency> latencies() {
+            return latencies;
+        }
+
+        /**
+         * @return the match counts of the cached selectors that matched any object
+         */
+        public List<Matches> selectors() {
+            return selectors;
+        }
+    }
+
+    /**
+     * The distribution of the durations of an operation.
+     */
+    public static final class Latency {
+        private final long[] buckets;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        private Latency(Histogram histogram) {
+            buckets = histogram.buckets();
+            var count = 0L;
+            for (final var bucket : buckets) {
+                count += bucket;
+            }
+            this.count = count;
+            totalNanos = histogram.total();
+            maxNanos = histogram.max();
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        public long maxNanos() {
+            return maxNanos;
+        }
+
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * The durations are counted in buckets of powers of two, the result is the upper bound of the bucket that
+         * contains the percentile, but not more than the maximum.
+         *
+         * @param percentile the percentile between 0 and 100, like 99
+         * @return the duration that is not exceeded by the given percent of the operations
+         */
+        public long percentileNanos(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("The percentile " + percentile + " is not between 0 and 100");
+            }
+            final var limit = Math.ceil(count * percentile / 100);
+            var cumulated = 0L;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulated += buckets[i];
+                if (cumulated > 0 && cumulated >= limit) {
+                    return Math.min(maxNanos, i == 0 ? 0 : (1L << i) - 1);
+                }
+            }
+            return maxNanos;
+        }
+    }
+
+    /**
+     * The number of objects a cached selector matched.
+     */
+    public static final class Matches {
+        private final String expression;
+        private final Class<?> kind;
+        private final Boolean inapplicable;
+        private final long tested;
+        private final long matched;
+
+        private Matches(Selector<?> selector) {
+            expression = selector.expression();
+            kind = selector.kind();
+            inapplicable = selector.inapplicable();
+            tested = selector.tested();
+            matched = selector.matched();
+        }
+
+        public String expression() {
+            return expression;
+        }
+
+        /**
+         * @return the kind the selector was compiled for, {@code Object} if it was compiled without a kind
+         */
+        public Class<?> kind() {
+            return kind;
+        }
+
+        /**
+         * @return {@code true} if the selector is lenient
+         */
+        public boolean lenient() {
+            return inapplicable != null;
+        }
+
+        /**
+         * @return the number of objects the selector was used to match
+         */
+        public long tested() {
+            return tested;
+        }
+
+        /**
+         * @return the number of objects that matched
+         */
+        public long matched() {
+            return matched;
+        }
+
+        /**
+         * @return the ratio of the matching objects, zero if no object was tested
+         */
+        public double matchRate() {
+            return tested == 0 ? 0 : (double) matched / tested;
+        }
+
+        /**
+         * @return the key of the selector in the maps of the MBean, like {@code java.lang.reflect.Method lenient:false
+         * public}
+         */
+        @Override
+        public String toString() {
+            return kind.getName() + " " + (inapplicable == null ? "" : "lenient:" + inapplicable + ":") + expression;
+        }
+    }
+
+    /**
+     * The implementation of the MBean. The JMX classes are referenced only from this class, which is not loaded unless
+     * the MBean is registered.
+     */
+    private static final class MBean implements MetricsMXBean {
+        private static ObjectName register() {
+            try {
+                final var name = new ObjectName(OBJECT_NAME);
+                final var server = ManagementFactory.getPlatformMBeanServer();
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new MBean(), name);
+                }
+                return name;
+            } catch (JMException e) {
+                throw new IllegalStateException("The metrics MBean cannot be registered", e);
+            }
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public Map<String, Long> getCounters() {
+            return snapshot().counters();
+        }
+
+        @Override
+        public Map<String, Long> getLatencyCounts() {
+            return latencies(Latency::count);
+        }
+
+        @Override
+        public Map<String, Double> getLatencyMeanNanos() {
+            return latencies(Latency::meanNanos);
+        }
+
+        @Override
+        public Map<String, Long> getLatency99PercentileNanos() {
+            return latencies(latency -> latency.percentileNanos(99));
+        }
+
+        @Override
+        public Map<String, Long> getLatencyMaxNanos() {
+            return latencies(Latency::maxNanos);
+        }
+
+        @Override
+        public Map<String, Long> getSelectorTested() {
+            return selectors(Matches::tested);
+        }
+
+        @Override
+        public Map<String, Double> getSelectorMatchRates() {
+            return selectors(Matches::matchRate);
+        }
+
+        private static <V> Map<String, V> latencies(Function<Latency, V> value) {
+            final var values = new LinkedHashMap<String, V>();
+            snapshot().latencies().forEach((name, latency) -> values.put(name, value.apply(latency)));
+            return values;
+        }
+
+        private static <V> Map<String, V> selectors(Function<Matches, V> value) {
+            final var values = new LinkedHashMap<String, V>();
+            for (final var matches : snapshot().selectors()) {
+                values.put(matches.toString(), value.apply(matches));
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Convert the name of a counter or a timer, like {@code METHODS_GET_ALL}, to camel case, like {@code
+     * methodsGetAll}.
+     */
+    private static String name(Enum<?> constant) {
+        final var sb = new StringBuilder();
+        var upper = false;
+        for (final var c : constant.name().toLowerCase(Locale.ROOT).toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                sb.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,27 @@
+package javax0.refi.selector;
+
+import java.util.Map;
+
+/**
+ * The management interface of the metrics registered by {@link Metrics#registerMBean()}. The values are the same as
+ * in a {@link Metrics#snapshot()}. The maps of the selectors are keyed by the kind and the expression of the
+ * selectors.
+ */
+public interface MetricsMXBean {
+
+    boolean isEnabled();
+
+    Map<String, Long> getCounters();
+
+    Map<String, Long> getLatencyCounts();
+
+    Map<String, Double> getLatencyMeanNanos();
+
+    Map<String, Long> getLatency99PercentileNanos();
+
+    Map<String, Long> getLatencyMaxNanos();
+
+    Map<String, Long> getSelectorTested();
+
+    Map<String, Double> getSelectorMatchRates();
+}
@@ -1,7 +1,14 @@
 package javax0.refi.selector;
 
 
+import javax0.refi.Counters;
+import javax0.refi.Counters.Counter;
+import javax0.refi.Counters.Timer;
+import javax0.refi.Events;
+
 import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
 import java.lang.reflect.Field;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
@@ -12,11 +19,12 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
 import java.util.function.Function;
+import java.util.function.IntPredicate;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
@@ -29,14 +37,67 @@ import java.util.regex.Pattern;
 public class Selector<T> {
 
     private static final int SYNTHETIC = 0x00001000;
-    private final Map<String, Function<T, Boolean>> selectors = new HashMap<>();
-    private final Map<String, Function<T, Object>> converters = new HashMap<>();
-    private final Map<String, BiFunction<T, Pattern, Boolean>> regexMemberSelectors = new HashMap<>();
+    private final Map<String, KindMap<Function<T, Boolean>>> selectors = new HashMap<>();
+    private final Map<String, KindMap<Function<T, Object>>> converters = new HashMap<>();
+    /**
+     * The regex selectors get the regular expression when the evaluator is built and return the test that uses it.
+     */
+    private final Map<String, KindMap<Function<Pattern, Predicate<T>>>> regexMemberSelectors = new HashMap<>();
+    /**
+     * The functions returning the elements the quantifiers iterate over, keyed by {@link
+     * SelectorNode.Quantified#elements}.
+     */
+    private final Map<String, KindMap<Function<T, Object[]>>> quantifiedElements = new HashMap<>();
+    /**
+     * The tests of the built-in selectors that only check the modifiers, used to evaluate them on the modifier column
+     * of a {@link SelectorIndex}.
+     */
+    private final Map<String, KindMap<IntPredicate>> modifierTests = new HashMap<>();
     private SelectorNode top = null;
+    /**
+     * The kind of the objects the selector is compiled for. It is {@code Object.class} when the selector was compiled
+     * without specifying the kind.
+     */
+    private Class<?> kind = Object.class;
+    /**
+     * The value of the conditions and conversions that cannot be applied to the matched object. It is {@code null}
+     * for strict selectors, which throw an exception in this case.
+     */
+    private Boolean inapplicable = null;
+    /**
+     * The class loaders of the functions defined by the user for this selector.
+     */
+    private final Set<ClassLoader> functionLoaders = Collections.synchronizedSet(new HashSet<>());
+    /**
+     * The compiled evaluator. It is {@code null} when it was not built yet or when some selector, regex selector or
+     * converter was (re)defined since it was built.
+     */
+    private volatile Evaluator evaluator = null;
     /**
      * Store the original expression to be used in exceptions.
      */
     private final String expression;
+    /**
+     * The number of the objects matched and the number of the matching ones. They are {@code null} when the metrics
+     * are not collected.
+     */
+    private final LongAdder tested = Counters.ENABLED ? new LongAdder() : null;
+    private final LongAdder matched = Counters.ENABLED ? new LongAdder() : null;
+
+    /**
+     * Create a selector that has no built-in selectors, converters and aggregates. The caller registers the functions
+     * for the objects it matches, like {@link ElementSelector} does for the {@code javax.lang.model} elements, and then
+     * calls {@link #compileTop()}.
+     *
+     * @param expression   the expression
+     * @param kind         the kind of the objects the selector is used to match
+     * @param inapplicable the value of the inapplicable conditions, {@code null} for a strict selector
+     */
+    Selector(String expression, Class<T> kind, Boolean inapplicable) {
+        this.expression = expression;
+        this.kind = kind;
+        this.inapplicable = inapplicable;
+    }
 
     protected Selector(String expression) {
         this.expression = expression;
@@ -60,15 +121,28 @@ public class Selector<T> {
          *
          * `annotation ~ /regex/` is `true` if the examined member has an annotation that matches the regular expression.
          */
-        regexSelector("annotation", (m, regex) -> only(m, AnnotatedElement.class) &&
-            matchAnnotations((AnnotatedElement) m, regex));
+        preparedRegexSelector("annotation", AnnotatedElement.class, Annotations::matching);
+        /**
+         * -
+         *
+         * `metaAnnotation ~ /regex/` is `true` if the examined member has an annotation that matches the regular
+         * expression, or that is annotated, directly or through other annotations, with an annotation that matches.
+         */
+        preparedRegexSelector("metaAnnotation", AnnotatedElement.class, Annotations::matchingMeta);
+        /**
+         * -
+         *
+         * `inheritedAnnotation ~ /regex/` is `true` if the examined member has an annotation that matches the regular
+         * expression. For a class, the annotations of the superclasses and the interfaces also count, and for a method,
+         * the annotations of the methods it overrides or implements.
+         */
+        preparedRegexSelector("inheritedAnnotation", AnnotatedElement.class, Annotations::matchingInherited);
         /**
          * -
          *
          * `annotated` is `true` if the examined member has an annotation. (Any annotation.)
          */
-        selector("annotated", (m) -> only(m, AnnotatedElement.class) &&
-            hasAnnotations((AnnotatedElement) m));
+        selector("annotated", AnnotatedElement.class, m -> !Annotations.of(m).isEmpty());
         // end snippet
 
     }
@@ -90,94 +164,202 @@ public class Selector<T> {
          * This can be applied to methods, fields and classes.
          * Note that there is an `enclosingClass` that can be applied to a class.
          */
-        converter("declaringClass", this::getDeclaringClass);
-        converter("returnType", m -> method(m, Method::getReturnType));
-        converter("type", m -> field(m, Field::getType));
-        converter("superClass", m -> klass(m, Class::getSuperclass));
-        converter("enclosingClass", m -> klass(m, Class::getEnclosingClass));
-        converter("enclosingMethod", m -> klass(m, Class::getEnclosingMethod));
-        converter("componentType", m -> klass(m, Class::getComponentType));
-        converter("nestHost", m -> klass(m, Class::getNestHost));
-    }
-
-    private <Q> Object member(T m, Function<Q, Object> f, Class<Q> klass) {
-        if (only(m, klass)) {
-            return f.apply(klass.cast(m));
-        }
-        return null;
+        converter("declaringClass", Class.class, Class<?>::getDeclaringClass, Class.class);
+        converter("declaringClass", Member.class, Member::getDeclaringClass, Class.class);
+        converter("returnType", Method.class, Method::getReturnType, Class.class);
+        converter("type", Field.class, Field::getType, Class.class);
+        converter("superClass", Class.class, Class<?>::getSuperclass, Class.class);
+        converter("enclosingClass", Class.class, Class<?>::getEnclosingClass, Class.class);
+        converter("enclosingMethod", Class.class, Class<?>::getEnclosingMethod, Method.class);
+        converter("componentType", Class.class, Class<?>::getComponentType, Class.class);
+        converter("nestHost", Class.class, Class<?>::getNestHost, Class.class);
+        /**
+         * -
+         *
+         * * `anySuper`, `allSupers` check the condition for all the superclasses of a class, transitively up to
+         * `Object`. `anySuper -> X` is `true` if `X` is `true` for any of the superclasses, `allSupers -> X` is `true`
+         * if `X` is `true` for all of them.
+         * `anyInterface`, `allInterfaces` do the same for all the interfaces the class implements directly or through
+         * its superclasses and superinterfaces.
+         * `anyEnclosing`, `allEnclosing` do the same for the enclosing classes of a nested class.
+         * These can be applied to classes.
+         * When there are no such classes, like the enclosing classes of a top level class, then the `any` version is
+         * `false` and the `all` version is `true`.
+         */
+        elements("supers", Class.class, Hierarchy::supers, Class.class);
+        elements("interfaces", Class.class, Hierarchy::interfaces, Class.class);
+        elements("enclosings", Class.class, Hierarchy::enclosings, Class.class);
+        /**
+         * -
+         *
+         * * `methods`, `declaredMethods`, `fields`, `declaredFields`, `constructors`, `classes`, `supers`,
+         * `interfaces`, `enclosings` can be applied to classes and `parameterTypes` to methods and constructors.
+         * They are followed by an aggregate, like `methods -> any(public & annotation ~ /Inject/)` or
+         * `fields -> count(static) > 3`.
+         * The aggregates are `any(...)`, `all(...)`, `none(...)`, and `count(...)` followed by one of the
+         * comparisons `<`, `<=`, `=`, `!=`, `>=`, `>` and a number.
+         * The `methods` and `fields` contain the inherited members as well, the `declaredMethods` and
+         * `declaredFields` only the members declared in the class.
+         * `supers -> any(X)` is the same as `anySuper -> X`.
+         */
+        elements("methods", Class.class, MemberTables::methods, Method.class);
+        elements("declaredMethods", Class.class, MemberTables::declaredMethods, Method.class);
+        elements("fields", Class.class, MemberTables::fields, Field.class);
+        elements("declaredFields", Class.class, MemberTables::declaredFields, Field.class);
+        elements("constructors", Class.class, MemberTables::constructors, Constructor.class);
+        elements("classes", Class.class, MemberTables::classes, Class.class);
+        elements("parameterTypes", Executable.class, Executable::getParameterTypes, Class.class);
     }
 
-    private Object method(T m, Function<Method, Object> f) {
-        return member(m, f, Method.class);
+    /**
+     * Compile a string to the internal structure of the member selector that can later be used to match a member.
+     *
+     * @param expression a logical expression described as a string
+     * @return {@code this} object to allow method chaining
+     */
+    public static Selector<?> compile(String expression) {
+        return compile(expression, Object.class, null);
     }
 
-    private boolean methodSelector(T m, Function<Method, Object> f) {
-        return (boolean) Optional.ofNullable(member(m, f, Method.class)).orElse(false);
+    /**
+     * Compile a string to a member selector specialized to match objects of the given kind, typically {@link
+     * Method}, {@link Field} or {@link Class}.
+     * <p>
+     * The expression is checked against the kind during the compilation. If the expression contains a condition or a
+     * conversion that cannot be applied to the kind (e.g. {@code volatile} to a method) then the compilation throws
+     * {@link IllegalArgumentException}. The selector created this way does not check the type of the matched object
+     * for each condition. It must not be used to match objects of other kinds.
+     *
+     * @param expression a logical expression described as a string
+     * @param kind       the class of the objects the selector will be used to match
+     * @param <K>        the type of the objects the selector will be used to match
+     * @return the compiled selector
+     */
+    public static <K> Selector<K> compile(String expression, Class<K> kind) {
+        return compile(expression, kind, null);
     }
 
-    private Method method(T m) {
-        return (Method) m;
+    /**
+     * Compile a string to a lenient member selector. A lenient selector does not throw exception when a condition or
+     * conversion cannot be applied to the matched object, like {@code transient} to a method. Such conditions and
+     * conversions evaluate to {@code false}.
+     * <p>
+     * Use lenient selectors to filter streams that contain classes, methods and fields mixed. Use the strict selectors
+     * created by {@link #compile(String)} to validate that the expression fits the matched objects.
+     *
+     * @param expression a logical expression described as a string
+     * @return the compiled selector
+     */
+    public static Selector<?> compileLenient(String expression) {
+        return compileLenient(expression, false);
     }
 
-    private Object field(T m, Function<Field, Object> f) {
-        return member(m, f, Field.class);
+    /**
+     * The same as {@link #compileLenient(String)} but the value of the not applicable conditions and conversions can
+     * be specified.
+     *
+     * @param expression   a logical expression described as a string
+     * @param inapplicable the value of the conditions and conversions that cannot be applied to the matched object
+     * @return the compiled selector
+     */
+    public static Selector<?> compileLenient(String expression, boolean inapplicable) {
+        return compile(expression, Object.class, inapplicable);
     }
 
-    private Field field(T m) {
-        return (Field) m;
+    /**
+     * Compile a string to a lenient member selector specialized to match objects of the given kind. The conditions and
+     * conversions that cannot be applied to the kind are replaced by the constant {@code inapplicable} during the
+     * compilation and then the expression is optimized again.
+     *
+     * @param expression   a logical expression described as a string
+     * @param kind         the class of the objects the selector will be used to match
+     * @param inapplicable the value of the conditions and conversions that cannot be applied to the matched object
+     * @param <K>          the type of the objects the selector will be used to match
+     * @return the compiled selector
+     */
+    public static <K> Selector<K> compileLenient(String expression, Class<K> kind, boolean inapplicable) {
+        return compile(expression, kind, inapplicable);
+    }
+
+    private static <K> Selector<K> compile(String expression, Class<K> kind, Boolean inapplicable) {
+        final String key = inapplicable == null ? expression : "lenient:" + inapplicable + ":" + expression;
+        final var compiled = new boolean[1];
+        final var selector = Caches.selector(kind, key, () -> {
+            final var start = Timer.start();
+            final var event = Events.compile();
+            final var it = new Selector<K>(expression);
+            it.kind = kind;
+            it.inapplicable = inapplicable;
+            it.compileTop();
+            final var top = it.top;
+            it.evaluator = Caches.evaluator(it, top, () -> it.evaluator(top))
+                .reporting(it::illegalArgumentException);
+            Timer.COMPILE.stop(start);
+            if (event != null) {
+                event.report(expression, kind, inapplicable != null);
+            }
+            compiled[0] = true;
+            return it;
+        });
+        (compiled[0] ? Counter.COMPILE_MISSES : Counter.COMPILE_HITS).increment();
+        return selector;
     }
 
-    private Object klass(T m, Function<Class, Object> f) {
-        return member(m, f, Class.class);
+    /**
+     * @return the expression the selector was compiled from
+     */
+    String expression() {
+        return expression;
     }
 
-    private Class<?> klass(T m) {
-        return (Class<?>) m;
+    /**
+     * @return the kind of the objects the selector was compiled for
+     */
+    Class<?> kind() {
+        return kind;
     }
 
-    private static final Map<String, Selector<?>> cache = Collections.synchronizedMap(new WeakHashMap<>());
+    /**
+     * @return the value of the inapplicable conditions of a lenient selector, or {@code null} for a strict selector
+     */
+    Boolean inapplicable() {
+        return inapplicable;
+    }
 
     /**
-     * Compile a string to the internal structure of the member selector that can later be used to match a member.
-     *
-     * @param expression a logical expression described as a string
-     * @return {@code this} object to allow method chaining
+     * @return the number of objects matched by the selector, or zero if the metrics are not collected
      */
-    public static Selector<?> compile(String expression) {
-        return cache.computeIfAbsent(expression, e -> {
-            final var it = new Selector(expression);
-            it.top = SelectorCompiler.compile(expression);
-            return it;
-        });
+    long tested() {
+        return tested == null ? 0 : tested.sum();
     }
 
-    private Class<?> getDeclaringClass(T m) {
-        if (m instanceof Class) {
-            return klass(m).getDeclaringClass();
-        }
-        if (m instanceof Method) {
-            return method(m).getDeclaringClass();
-        }
-        if (m instanceof Field) {
-            return field(m).getDeclaringClass();
-        }
-        if (m == null) {
-            return null;
-        }
-        throw illegalArgumentException("Selector cannot be applied to " + m.getClass());
+    /**
+     * @return the number of objects that matched, or zero if the metrics are not collected
+     */
+    long matched() {
+        return matched == null ? 0 : matched.sum();
     }
 
-    private Class<?> toClass(T m) {
-        if (m instanceof Class) {
-            return (Class<?>) m;
-        }
-        if (m instanceof Method) {
-            return method(m).getReturnType();
-        }
-        if (m instanceof Field) {
-            return field(m).getType();
+    /**
+     * @param loader the class loader
+     * @return {@code true} if the selector references a class loaded by the class loader, either the kind it was
+     * compiled for or the class of a function defined calling {@link #selector(String, Function)}, {@link
+     * #regexSelector(String, BiFunction)} or {@link #converter(String, Function)}
+     */
+    boolean retains(ClassLoader loader) {
+        return kind.getClassLoader() == loader || functionLoaders.contains(loader);
+    }
+
+    /**
+     * @return the class loaders of the kind and the functions the selector references
+     */
+    Set<ClassLoader> loaders() {
+        final var loaders = new HashSet<ClassLoader>();
+        loaders.add(kind.getClassLoader());
+        synchronized (functionLoaders) {
+            loaders.addAll(functionLoaders);
         }
-        throw illegalArgumentException("Selector cannot be applied to " + (m == null ? "null " : m.getClass()));
+        return loaders;
     }
 
     /**
@@ -190,15 +372,12 @@ public class Selector<T> {
      */
     //snippet methodAndClassOnlySelectors
     private void methodAndClassOnlySelectors() {
-        selector("abstract", m -> only(m, Class.class, Method.class) && Modifier.isAbstract(getModifiers(m)));
-        selector("implements", m -> only(m, Class.class, Method.class) && methodOrClassImplements(m));
+        modifierSelector("abstract", Modifier::isAbstract, Class.class, Method.class);
+        selector("implements", Class.class, Selector::classImplements);
+        selector("implements", Method.class, Selector::methodImplements);
     }
     //end snippet
 
-    private boolean notNull(T m) {
-        return m != null;
-    }
-
     /**
      * -
      * <p>
@@ -211,25 +390,22 @@ public class Selector<T> {
      */
     //snippet classOnlySelectors
     private void classOnlySelectors() {
-        selector("interface", m -> notNull(m) && toClass(m).isInterface());
-        selector("primitive", m -> notNull(m) && toClass(m).isPrimitive());
-        selector("annotation", m -> notNull(m) && toClass(m).isAnnotation());
-        selector("anonymous", m -> notNull(m) && toClass(m).isAnonymousClass());
-        selector("array", m -> notNull(m) && toClass(m).isArray());
-        selector("enum", m -> notNull(m) && toClass(m).isEnum());
-        selector("member", m -> notNull(m) && toClass(m).isMemberClass());
-        selector("local", m -> notNull(m) && toClass(m).isLocalClass());
-        selector("extends", m -> {
-            if (m == null) {
-                return false;
-            }
-            final var superClass = toClass(m).getSuperclass();
+        typeSelector("interface", Class::isInterface);
+        typeSelector("primitive", Class::isPrimitive);
+        typeSelector("annotation", Class::isAnnotation);
+        typeSelector("anonymous", Class::isAnonymousClass);
+        typeSelector("array", Class::isArray);
+        typeSelector("enum", Class::isEnum);
+        typeSelector("member", Class::isMemberClass);
+        typeSelector("local", Class::isLocalClass);
+        typeSelector("extends", klass -> {
+            final var superClass = klass.getSuperclass();
             return superClass != null && !"java.lang.Object".equals((superClass.getCanonicalName()));
         });
-        regexSelector("extends", (m, regex) -> notNull(m) && regex.matcher(toClass(m).getSuperclass().getCanonicalName()).find());
-        regexSelector("simpleName", (m, regex) -> notNull(m) && regex.matcher(toClass(m).getSimpleName()).find());
-        regexSelector("canonicalName", (m, regex) -> notNull(m) && regex.matcher(toClass(m).getCanonicalName()).find());
-        regexSelector("implements", (m, regex) -> notNull(m) && classImplements(toClass(m), regex));
+        typeRegexSelector("extends", (klass, regex) -> regex.matcher(klass.getSuperclass().getCanonicalName()).find());
+        typeRegexSelector("simpleName", (klass, regex) -> regex.matcher(klass.getSimpleName()).find());
+        typeRegexSelector("canonicalName", (klass, regex) -> regex.matcher(klass.getCanonicalName()).find());
+        typeRegexSelector("implements", Selector::classImplements);
     }
     //end snippet
 
@@ -243,21 +419,21 @@ public class Selector<T> {
      */
     // snippet methodOnlySelectors
     private void methodOnlySelectors() {
-        selector("synthetic", m -> only(m, Method.class) && (getModifiers(m) & SYNTHETIC) != 0);
-        selector("synchronized", m -> only(m, Method.class) && Modifier.isSynchronized(getModifiers(m)));
-        selector("native", m -> only(m, Method.class) && Modifier.isNative(getModifiers(m)));
-        selector("strict", m -> only(m, Method.class) && Modifier.isStrict(getModifiers(m)));
-        selector("default", m -> only(m, Method.class) && ((Member) m).getDeclaringClass().isInterface() && !Modifier.isAbstract(getModifiers(m)));
-        selector("bridge", m -> methodSelector(m, Method::isBridge));
-        selector("vararg", m -> methodSelector(m, Method::isVarArgs));
-        selector("overrides", m -> only(m, Method.class) && methodOverrides((Method) m));
-        selector("void", m -> Void.TYPE.equals(method(m, Method::getReturnType)));
-        regexSelector("returns", (m, regex) -> only(m, Method.class) && regex.matcher(method(m).getReturnType().getCanonicalName()).find());
-        regexSelector("throws", (m, regex) -> only(m, Method.class) &&
-            Arrays.stream(method(m).getGenericExceptionTypes())
+        modifierSelector("synthetic", modifiers -> (modifiers & SYNTHETIC) != 0, Method.class);
+        modifierSelector("synchronized", Modifier::isSynchronized, Method.class);
+        modifierSelector("native", Modifier::isNative, Method.class);
+        modifierSelector("strict", Modifier::isStrict, Method.class);
+        selector("default", Method.class, m -> m.getDeclaringClass().isInterface() && !Modifier.isAbstract(m.getModifiers()));
+        selector("bridge", Method.class, Method::isBridge);
+        selector("vararg", Method.class, Method::isVarArgs);
+        selector("overrides", Method.class, Selector::methodOverrides);
+        selector("void", Method.class, m -> Void.TYPE.equals(m.getReturnType()));
+        regexSelector("returns", Method.class, (m, regex) -> regex.matcher(m.getReturnType().getCanonicalName()).find());
+        regexSelector("throws", Method.class, (m, regex) ->
+            Arrays.stream(m.getGenericExceptionTypes())
                 .anyMatch(exception -> regex.matcher(exception.getTypeName()).find()));
-        regexSelector("signature", (m, regex) ->
-            only(m, Method.class) && regex.matcher(new MethodSignatureFactory().signature(method(m))).find());
+        regexSelector("signature", Method.class, (m, regex) ->
+            regex.matcher(new MethodSignatureFactory().signature(m)).find());
     }
     //end snippet
 
@@ -270,8 +446,8 @@ public class Selector<T> {
      */
     // snippet fieldOnlySelectors
     private void fieldOnlySelectors() {
-        selector("transient", m -> only(m, Field.class) && Modifier.isTransient(getModifiers(m)));
-        selector("volatile", m -> only(m, Field.class) && Modifier.isVolatile(getModifiers(m)));
+        modifierSelector("transient", Modifier::isTransient, Field.class);
+        modifierSelector("volatile", Modifier::isVolatile, Field.class);
     }
     //end snippet
 
@@ -287,39 +463,64 @@ public class Selector<T> {
         selector("true", m -> true);
         selector("false", m -> false);
         selector("null", Objects::isNull);
-        selector("private", m -> notNull(m) && Modifier.isPrivate(getModifiers(m)));
-        selector("protected", m -> notNull(m) && Modifier.isProtected(getModifiers(m)));
-        selector("package", m ->
-            notNull(m) &&
-                !Modifier.isPublic(getModifiers(m)) &&
-                !Modifier.isProtected(getModifiers(m)) &&
-                !Modifier.isPrivate(getModifiers(m)));
-        selector("public", m -> m != null && Modifier.isPublic(getModifiers(m)));
-        selector("static", m -> m != null && Modifier.isStatic(getModifiers(m)));
-        selector("final", m -> m != null && Modifier.isFinal(getModifiers(m)));
-        selector("class", m -> notNull(m) && !(m instanceof Field) && !(m instanceof Method) && !toClass(m).isInterface());
-        regexSelector("name", (m, regex) -> m != null && regex.matcher(getName(m)).find());
+        modifierSelector("private", Modifier::isPrivate, Class.class, Member.class);
+        modifierSelector("protected", Modifier::isProtected, Class.class, Member.class);
+        modifierSelector("package", modifiers ->
+            !Modifier.isPublic(modifiers) &&
+                !Modifier.isProtected(modifiers) &&
+                !Modifier.isPrivate(modifiers), Class.class, Member.class);
+        modifierSelector("public", Modifier::isPublic, Class.class, Member.class);
+        modifierSelector("static", Modifier::isStatic, Class.class, Member.class);
+        modifierSelector("final", Modifier::isFinal, Class.class, Member.class);
+        selector("class", Class.class, klass -> !klass.isInterface());
+        selector("class", Member.class, m -> false);
+        regexSelector("name", Class.class, (klass, regex) -> regex.matcher(klass.getName()).find());
+        regexSelector("name", Member.class, (m, regex) -> regex.matcher(m.getName()).find());
     }
     //end snippet
 
-    private String getName(T m) {
-        if (m instanceof Member) {
-            return ((Member) m).getName();
-        }
-        if (m instanceof Class) {
-            return klass(m).getName();
+    /**
+     * Register a built-in selector that checks the modifiers of the object.
+     *
+     * @param name  the name of the selector
+     * @param test  the test on the modifiers
+     * @param kinds the kinds the selector can be applied to. Each has to be {@link Class} or some {@link Member}.
+     */
+    private void modifierSelector(String name, IntPredicate test, Class<?>... kinds) {
+        for (final var kind : kinds) {
+            modifierTests.computeIfAbsent(name, k -> new KindMap<>()).put(kind, test);
+            if (kind == Class.class) {
+                selector(name, Class.class, klass -> test.test(klass.getModifiers()));
+            } else {
+                selector(name, kind, m -> test.test(((Member) m).getModifiers()));
+            }
         }
-        throw illegalArgumentException("Cannot get the name for " + m.getClass().getCanonicalName());
     }
 
-    private int getModifiers(T m) {
-        if (m instanceof Member) {
-            return ((Member) m).getModifiers();
-        }
-        if (m instanceof Class) {
-            return klass(m).getModifiers();
-        }
-        throw illegalArgumentException("Cannot get the modifiers for " + m.getClass().getCanonicalName());
+    /**
+     * Register a built-in selector that checks the type. The type is the class itself, the type of the field or the
+     * return type of the method.
+     *
+     * @param name the name of the selector
+     * @param test the test on the type
+     */
+    private void typeSelector(String name, Predicate<Class<?>> test) {
+        selector(name, Class.class, test::test);
+        selector(name, Method.class, m -> test.test(m.getReturnType()));
+        selector(name, Field.class, f -> test.test(f.getType()));
+    }
+
+    /**
+     * Register a built-in regex selector that checks the type. The type is the class itself, the type of the field or
+     * the return type of the method.
+     *
+     * @param name the name of the regex selector
+     * @param test the test on the type
+     */
+    private void typeRegexSelector(String name, BiPredicate<Class<?>, Pattern> test) {
+        regexSelector(name, Class.class, test::test);
+        regexSelector(name, Method.class, (m, regex) -> test.test(m.getReturnType(), regex));
+        regexSelector(name, Field.class, (f, regex) -> test.test(f.getType(), regex));
     }
 
     /**
@@ -336,7 +537,7 @@ public class Selector<T> {
      * unless this is a default method that implements another method declared in an interface that the declaring
      * interface extends directly or through transitive closure of the interfaces extending each other.
      */
-    private boolean methodImplements(Method m) {
+    private static boolean methodImplements(Method m) {
         if (m.getDeclaringClass().isInterface() && !m.isDefault() || Modifier.isAbstract(m.getModifiers())) {
             return false;
         }
@@ -349,16 +550,6 @@ public class Selector<T> {
         return false;
     }
 
-    private boolean methodOrClassImplements(Object m) {
-        if (m instanceof Method) {
-            return methodImplements((Method) m);
-        }
-        if (m instanceof Class) {
-            return classImplements((Class<?>) m);
-        }
-        return false;
-    }
-
     private static boolean classImplements(Class<?> klass) {
         if (klass.isInterface()) {
             return false;
@@ -387,7 +578,7 @@ public class Selector<T> {
      * @param klass the class for which we need all the interfaces
      * @return the set of the interfaces the class implements directly or transitively
      */
-    private Set<Class<?>> collectInterfaces(Class<?> klass) {
+    private static Set<Class<?>> collectInterfaces(Class<?> klass) {
         final Set<Class<?>> returnSet = new HashSet<>();
         for (final var interfAce : klass.getInterfaces()) {
             collectInterfaces(interfAce, returnSet);
@@ -402,7 +593,7 @@ public class Selector<T> {
      * @param klass     the interface to collect and also the interfaces that this extends
      * @param returnSet the set into which collect the interfaces
      */
-    private void collectInterfaces(Class<?> klass, Set<Class<?>> returnSet) {
+    private static void collectInterfaces(Class<?> klass, Set<Class<?>> returnSet) {
         if (returnSet.contains(klass)) {
             return;
         }
@@ -420,7 +611,7 @@ public class Selector<T> {
      * @return {@code true} if the method is overriding a method in the superclass or in the superclass of the
      * superclass and so on.
      */
-    private boolean methodOverrides(Method m) {
+    private static boolean methodOverrides(Method m) {
         final var args = m.getParameterTypes();
         final var name = m.getName();
         for (var klass = m.getDeclaringClass().getSuperclass(); klass != null; klass = klass.getSuperclass()) {
@@ -436,7 +627,7 @@ public class Selector<T> {
      * @return {@code true} is the class has a declared method that matches the name and the argument types. Otherwise
      * it returns {@code false}.
      */
-    private boolean classHas(Class<?> klass, String name, Class<?>[] args) {
+    private static boolean classHas(Class<?> klass, String name, Class<?>[] args) {
         try {
             klass.getDeclaredMethod(name, args);
             return true;
@@ -446,21 +637,42 @@ public class Selector<T> {
     }
 
     /**
-     * Check that the argument {@code m} is a Method, Field, Class or whatever it is.
-     *
-     * @param m       the reflective object to be checked for the listed types
-     * @param classes the different types
-     * @return {@code true} if a type is found for {@code m} or throws exception. It returns {@code false} only for
-     * {@code null} argument.
+     * Register a built-in selector implementation for a kind.
      */
-    private boolean only(T m, Class<?>... classes) {
-        if (m == null) {
-            return false;
-        }
-        for (final var klass : classes) {
-            if (klass.isAssignableFrom(m.getClass())) return true;
-        }
-        throw illegalArgumentException("Selector cannot be applied to " + m.getClass());
+    <K> void selector(String name, Class<K> kind, Predicate<K> function) {
+        selectors.computeIfAbsent(name, k -> new KindMap<>()).put(kind, m -> function.test(kind.cast(m)));
+    }
+
+    /**
+     * Register a built-in regex selector implementation for a kind.
+     */
+    <K> void regexSelector(String name, Class<K> kind, BiPredicate<K, Pattern> function) {
+        preparedRegexSelector(name, kind, regex -> m -> function.test(m, regex));
+    }
+
+    /**
+     * Register a built-in regex selector implementation for a kind that prepares the test for the regular expression
+     * when the evaluator is built.
+     */
+    private <K> void preparedRegexSelector(String name, Class<K> kind, Function<Pattern, Predicate<? super K>> preparation) {
+        regexMemberSelectors.computeIfAbsent(name, k -> new KindMap<>()).put(kind, regex -> {
+            final var test = preparation.apply(regex);
+            return m -> test.test(kind.cast(m));
+        });
+    }
+
+    /**
+     * Register a built-in converter implementation for a kind.
+     */
+    <K> void converter(String name, Class<K> kind, Function<K, ?> function, Class<?> resultKind) {
+        converters.computeIfAbsent(name, k -> new KindMap<>(resultKind)).put(kind, m -> function.apply(kind.cast(m)));
+    }
+
+    /**
+     * Register the function that returns the elements a built-in quantifier iterates over for a kind.
+     */
+    <K> void elements(String name, Class<K> kind, Function<K, Object[]> function, Class<?> resultKind) {
+        quantifiedElements.computeIfAbsent(name, k -> new KindMap<>(resultKind)).put(kind, m -> function.apply(kind.cast(m)));
     }
 
     /**
@@ -471,7 +683,9 @@ public class Selector<T> {
      * @return {@code this}
      */
     public Selector converterRe(String name, Function<T, Object> function) {
-        converters.put(name, function);
+        converters.put(name, KindMap.of(function));
+        functionLoaders.add(function.getClass().getClassLoader());
+        evaluator = null;
         return this;
     }
 
@@ -516,7 +730,9 @@ public class Selector<T> {
      * @return {@code this} object to allow method chaining
      */
     public Selector selectorRe(String name, Function<T, Boolean> function) {
-        selectors.put(name, function);
+        selectors.put(name, KindMap.of(function));
+        functionLoaders.add(function.getClass().getClassLoader());
+        evaluator = null;
         return this;
     }
 
@@ -535,7 +751,9 @@ public class Selector<T> {
      */
     @SuppressWarnings({"WeakerAccess", "UnusedReturnValue"})
     public Selector regexSelector(String name, BiFunction<T, Pattern, Boolean> function) {
-        regexMemberSelectors.put(name, function);
+        regexMemberSelectors.put(name, KindMap.of(regex -> m -> function.apply(m, regex)));
+        functionLoaders.add(function.getClass().getClassLoader());
+        evaluator = null;
         return this;
     }
 
@@ -547,84 +765,155 @@ public class Selector<T> {
      */
     @SuppressWarnings("WeakerAccess")
     public boolean match(Object member) {
-        //noinspection unchecked
-        return match((T) member, top);
+        final var result = evaluator().test(member);
+        if (Counters.ENABLED) {
+            tested.increment();
+            if (result) {
+                matched.increment();
+            }
+        }
+        return result;
     }
 
     public Predicate<Object> predicate() {
         return this::match;
     }
 
-    private boolean matchOr(T m, SelectorNode.Or node) {
-        for (final var sub : node.subNodes) {
-            if (match(m, sub)) {
-                return true;
-            }
-        }
-        return false;
+    /**
+     * @return the optimized structure of the compiled expression
+     */
+    /**
+     * Compile the expression to the top node. The expression of a strict selector is optimized for the kind using the
+     * functions of the selector, therefore they have to be registered before. A term that cannot be evaluated for all
+     * the objects of the kind is not folded, the evaluator has to check it.
+     */
+    void compileTop() {
+        top = SelectorInterner.intern(inapplicable == null
+            ? SelectorCompiler.compile(expression, kind, evaluatorBuilder())
+            : SelectorCompiler.compile(expression, true));
     }
 
-    private boolean matchAnd(T m, SelectorNode.And node) {
-        for (final var sub : node.subNodes) {
-            if (!match(m, sub)) {
-                return false;
-            }
-        }
-        return true;
+    SelectorNode topNode() {
+        return top;
     }
 
-    private boolean match(T m, SelectorNode node) {
-        if (node instanceof SelectorNode.Or) {
-            return matchOr(m, (SelectorNode.Or) node);
-        }
-        if (node instanceof SelectorNode.And) {
-            return matchAnd(m, (SelectorNode.And) node);
-        }
-        if (node instanceof SelectorNode.Converted) {
-            final var converter = ((SelectorNode.Converted) node).converter;
-            final Function<T, Object> function = converters.get(converter);
-            if (function == null) {
-                throw illegalArgumentException("There is no converter for '" + converter + "'");
-            } else {
-                return match((T) function.apply(m), ((SelectorNode.Converted) node).subNode);
-            }
-        }
-        if (node instanceof SelectorNode.Not) {
-            return !match(m, ((SelectorNode.Not) node).subNode);
-        }
-        if (node instanceof SelectorNode.Regex) {
-            final var regexNode = (SelectorNode.Regex) node;
-            if (!regexMemberSelectors.containsKey(regexNode.name)) {
-                throw illegalArgumentException("There is no regex matcher functionality for '" + regexNode.name + "'");
-            }
-            return regexMemberSelectors.get(regexNode.name).apply(m, regexNode.regex);
-        }
-        if (node instanceof SelectorNode.Terminal) {
-            final var terminalNode = (SelectorNode.Terminal) node;
-            if (!selectors.containsKey(terminalNode.terminal)) {
-                throw illegalArgumentException("The selector '" + terminalNode.terminal + "' is not known.");
-            }
-            return selectors.get(terminalNode.terminal).apply(m);
-        }
-        throw illegalArgumentException("Invalid node type in the compiled structure");
+    /**
+     * Build an evaluator for a part of the expression using the selectors, converters and the settings of this
+     * selector.
+     *
+     * @param node the node, usually some part of the {@link #topNode()}
+     * @return the evaluator of the node
+     */
+    Evaluator evaluator(SelectorNode node) {
+        return evaluator(node, kind);
+    }
+
+    /**
+     * Build an evaluator for a part of the expression that is evaluated for objects of some other kind than the
+     * selector was compiled for, like the sub node of a conversion.
+     *
+     * @param node the node
+     * @param kind the kind of the objects the node is evaluated for
+     * @return the evaluator of the node
+     */
+    Evaluator evaluator(SelectorNode node, Class<?> kind) {
+        return evaluatorBuilder().build(node, kind);
     }
 
-    private boolean hasAnnotations(AnnotatedElement m) {
-        final var ann = m.getAnnotations();
-        return ann != null && ann.length > 0;
+    private EvaluatorBuilder evaluatorBuilder() {
+        return new EvaluatorBuilder(ofObjects(selectors), ofObjects(converters), ofObjects(regexMemberSelectors),
+            ofObjects(quantifiedElements), inapplicable, this::illegalArgumentException);
     }
 
     /**
-     * Check that the member has annotation that matches the regex
+     * View the functions of the selector as functions of any object. The {@link KindMap} calls a function only with
+     * the objects of the kind it was registered for, therefore the cast is safe.
+     */
+    @SuppressWarnings("unchecked")
+    private static <F> Map<String, KindMap<F>> ofObjects(Map<String, ? extends KindMap<?>> functions) {
+        return (Map<String, KindMap<F>>) functions;
+    }
+
+    /**
+     * Create a selector that remembers the result of the match for each class and member. Use it when the same members
+     * are matched many times. See {@link MemoizedSelector} for the details.
      *
-     * @param m       the member that has or does not have the annotation
-     * @param pattern the annotation has to match
-     * @return {@code true} if the member has at least one annotation so that the canonical name of the annotation
-     * matches the regular expression pattern
-     */
-    private boolean matchAnnotations(AnnotatedElement m, Pattern pattern) {
-        return Arrays.stream(m.getAnnotations()).anyMatch(a ->
-            pattern.matcher(a.annotationType().getCanonicalName()).find());
+     * @return a new memoized selector using this selector
+     */
+    public MemoizedSelector memoized() {
+        return new MemoizedSelector(this);
+    }
+
+    /**
+     * Create a selector of the frames of the stack of the current thread, whose method or constructor matches this
+     * selector. See {@link StackFrameSelector} for the details.
+     *
+     * @return a new stack frame selector using this selector
+     */
+    public StackFrameSelector stackFrames() {
+        return new StackFrameSelector(this::match);
+    }
+
+    /**
+     * Describe the structure the selector evaluates, one node per line, the sub nodes indented under the node. The
+     * structure is the expression after the optimization, and for a lenient selector after the inapplicable
+     * conditions were replaced. Each node shows its expected cost, see {@link SelectorProfile.Cost}.
+     *
+     * @return the description of the evaluated structure
+     */
+    public String explain() {
+        return SelectorProfile.explain(this, evaluatorBuilder().evaluated(top, kind));
+    }
+
+    /**
+     * Create a profiling evaluator of the selector. The returned profile matches the same way as this selector, and it
+     * counts the evaluations, the matches and the time for each node of the evaluated structure. The counters are not
+     * shared with the selector or with other profiles.
+     *
+     * @return a new profile
+     */
+    public SelectorProfile profile() {
+        return new SelectorProfile(this, probe -> evaluatorBuilder().probe(probe).build(top, kind));
+    }
+
+    /**
+     * @param name the name of a regex selector
+     * @return {@code true} if the regex selector is the built-in one, not defined or redefined by the user
+     */
+    boolean isBuiltInRegexSelector(String name) {
+        final var functions = regexMemberSelectors.get(name);
+        return functions != null && !functions.isUniversal();
+    }
+
+    /**
+     * @param name the name of a converter
+     * @return {@code true} if the converter is the built-in one, not defined or redefined by the user
+     */
+    boolean isBuiltInConverter(String name) {
+        final var functions = converters.get(name);
+        return functions != null && !functions.isUniversal();
+    }
+
+    /**
+     * @param name the name of a selector
+     * @return the tests on the modifiers for the different kinds if the selector is a built-in modifier selector, not
+     * redefined by the user, otherwise {@code null}
+     */
+    KindMap<IntPredicate> modifierTest(String name) {
+        final var functions = selectors.get(name);
+        return functions == null || functions.isUniversal() ? null : modifierTests.get(name);
+    }
+
+    /**
+     * @return the evaluator of the selector, a new one after a function was defined or redefined
+     */
+    Evaluator evaluator() {
+        var it = evaluator;
+        if (it == null) {
+            it = evaluator(top);
+            evaluator = it;
+        }
+        return it;
     }
 
     // snipline illegalArgumentException
@@ -1,20 +1,58 @@
 package javax0.refi.selector;
 
+import java.util.regex.Pattern;
+
 /**
  * <ul>
  * <li>EXPRESSION ::= EXPRESSION1 ['|' EXPRESSION1 ]+ </li>
  * <li>EXPRESSION1 ::= EXPRESSION2 ['&amp;' EXPRESSION2] +</li>
- * <li>EXPRESSION2 :== TERMINAL | '!' EXPRESSION2 | CONVERSION '->' EXPRESSION2 |'(' EXPRESSION ')' </li>
- * <li>TERMINAL ::= TEST | REGEX_MATCH
+ * <li>EXPRESSION2 :== TERMINAL | '!' EXPRESSION2 | CONVERSION '->' EXPRESSION2 | QUANTIFIER '->' EXPRESSION2 |
+ * ELEMENTS '->' AGGREGATE | '(' EXPRESSION ')' </li>
+ * <li>TERMINAL ::= TEST | REGEX_MATCH | ATTRIBUTE_MATCH
  * <li>TEST ::= registered word</li>
  * <li>REGEX_MATCH ::= registered regex word '~' '/' regular expression '/'</li>
+ * <li>QUANTIFIER ::= 'anySuper' | 'allSupers' | 'anyInterface' | 'allInterfaces' | 'anyEnclosing' | 'allEnclosing'</li>
+ * <li>ELEMENTS ::= 'methods' | 'declaredMethods' | 'fields' | 'declaredFields' | 'constructors' | 'classes' | 'supers'
+ * | 'interfaces' | 'enclosings' | 'parameterTypes'</li>
+ * <li>AGGREGATE ::= ('any' | 'all' | 'none') '(' EXPRESSION ')' | 'count' '(' EXPRESSION ')' COMPARISON number</li>
+ * <li>COMPARISON ::= '&lt;' | '&lt;=' | '=' | '!=' | '&gt;=' | '&gt;'</li>
+ * <li>ATTRIBUTE_MATCH ::= 'annotation' '(' annotation name ')' '.' attribute name ( '~' '/' regular expression '/' | '='
+ * CONSTANT )</li>
+ * <li>CONSTANT ::= '"' string '"' | number | word</li>
  * </ul>
+ * <p>
+ * The structure built following the syntax is passed through the {@link SelectorOptimizer} before returning it.
  */
 class SelectorCompiler {
 
     private Lexer lexer;
 
     static SelectorNode compile(String expression) {
+        return compile(expression, false);
+    }
+
+    /**
+     * @param expression the expression to compile
+     * @param lenient    {@code true} if the expression is compiled for a lenient selector, see {@link
+     *                   SelectorOptimizer#optimize(SelectorNode, boolean)}
+     * @return the optimized structure of the expression
+     */
+    static SelectorNode compile(String expression, boolean lenient) {
+        return SelectorOptimizer.optimize(parse(expression), lenient);
+    }
+
+    /**
+     * @param expression    the expression to compile for a strict selector
+     * @param kind          the kind of the objects the selector is used for
+     * @param applicability tells the optimizer which terms can be folded, see {@link
+     *                      SelectorOptimizer#optimize(SelectorNode, Class, SelectorOptimizer.Applicability)}
+     * @return the optimized structure of the expression
+     */
+    static SelectorNode compile(String expression, Class<?> kind, SelectorOptimizer.Applicability applicability) {
+        return SelectorOptimizer.optimize(parse(expression), kind, applicability);
+    }
+
+    private static SelectorNode parse(String expression) {
         final var it = new SelectorCompiler();
         it.lexer = new Lexer(expression);
         final var topNode = it.expression();
@@ -37,6 +75,10 @@ class SelectorCompiler {
         return lexer.peek().type == Lexeme.Type.SYMBOL && lexer.peek().string.equals(s);
     }
 
+    private boolean isAnnotationAttribute() {
+        return lexer.peek().type == Lexeme.Type.FUNCTION && lexer.peek().string.equals("annotation");
+    }
+
     private SelectorNode expression() {
         final var topNode = expression1();
         if (isSymbol("|")) {
@@ -83,12 +125,23 @@ class SelectorCompiler {
                 throw new IllegalArgumentException("Closing ')' is missing" + atRest());
             }
         }
+        if (isAnnotationAttribute()) {
+            lexer.get();
+            return attribute();
+        }
         if (lexer.peek().type == Lexeme.Type.WORD) {
             final var name = lexer.get().string;
             if( isSymbol("-")){
                 lexer.get();
                 if( isSymbol(">")) {
                     lexer.get();
+                    if (lexer.peek().type == Lexeme.Type.FUNCTION && !isAnnotationAttribute()) {
+                        return aggregate(name);
+                    }
+                    final var quantifier = SelectorNode.Quantified.QUANTIFIERS.get(name);
+                    if (quantifier != null) {
+                        return new SelectorNode.Quantified(expression2(), quantifier.elements, quantifier.aggregate);
+                    }
                     return new SelectorNode.Converted(expression2(), name);
                 }else{
                     throw new IllegalArgumentException("Conversion is missing -> " + atRest());
@@ -107,4 +160,93 @@ class SelectorCompiler {
         }
         throw new IllegalArgumentException("Invalid syntax" + atRest());
     }
+
+    /**
+     * Compile the aggregate part of the expression following the {@code ->} after the name of the elements, like
+     * {@code any(public)} or {@code count(static) > 3}. The function name and the opening {@code (} were already
+     * read by the lexer as a single lexeme.
+     *
+     * @param elements the name of the elements the aggregate works on
+     * @return the compiled node
+     */
+    private SelectorNode aggregate(String elements) {
+        final var function = lexer.get().string;
+        final var sub = expression();
+        if (!isSymbol(")")) {
+            throw new IllegalArgumentException("Closing ')' is missing" + atRest());
+        }
+        lexer.get();
+        if (!function.equals("count")) {
+            return new SelectorNode.Quantified(sub, elements,
+                SelectorNode.Quantified.Aggregate.valueOf(function.toUpperCase()));
+        }
+        final var comparison = comparison();
+        if (lexer.peek().type != Lexeme.Type.NUMBER) {
+            throw new IllegalArgumentException("Number is missing after the comparison" + atRest());
+        }
+        final int limit;
+        try {
+            limit = Integer.parseInt(lexer.get().string);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The number is too large in count()" + atRest());
+        }
+        return new SelectorNode.Quantified(sub, elements, comparison, limit);
+    }
+
+    private SelectorNode.Quantified.Comparison comparison() {
+        if (lexer.peek().type != Lexeme.Type.SYMBOL) {
+            throw new IllegalArgumentException("Comparison is missing after count()" + atRest());
+        }
+        var symbol = lexer.get().string;
+        if (isSymbol("=")) {
+            lexer.get();
+            symbol += "=";
+        }
+        final var comparison = SelectorNode.Quantified.Comparison.of(symbol);
+        if (comparison == null) {
+            throw new IllegalArgumentException("Invalid comparison '" + symbol + "' after count()" + atRest());
+        }
+        return comparison;
+    }
+
+    /**
+     * Compile an annotation attribute match, like {@code annotation(Path).value ~ /^\/api/}. The {@code annotation(}
+     * was already read by the lexer as a single lexeme.
+     *
+     * @return the compiled node
+     */
+    private SelectorNode attribute() {
+        if (lexer.peek().type != Lexeme.Type.WORD) {
+            throw new IllegalArgumentException("Annotation name is missing after 'annotation('" + atRest());
+        }
+        final var annotation = lexer.get().string;
+        if (!isSymbol(")")) {
+            throw new IllegalArgumentException("Closing ')' is missing" + atRest());
+        }
+        lexer.get();
+        if (!isSymbol(".")) {
+            throw new IllegalArgumentException("'.' and the attribute name is missing after 'annotation(...)'" + atRest());
+        }
+        lexer.get();
+        if (lexer.peek().type != Lexeme.Type.WORD) {
+            throw new IllegalArgumentException("Attribute name is missing" + atRest());
+        }
+        final var attribute = lexer.get().string;
+        if (isSymbol("~")) {
+            lexer.get();
+            if (lexer.peek().type != Lexeme.Type.REGEX) {
+                throw new IllegalArgumentException("Regex is missing after '~'" + atRest());
+            }
+            return new SelectorNode.Attribute(annotation, attribute, Pattern.compile(lexer.get().string), null);
+        }
+        if (isSymbol("=")) {
+            lexer.get();
+            final var type = lexer.peek().type;
+            if (type != Lexeme.Type.STRING && type != Lexeme.Type.NUMBER && type != Lexeme.Type.WORD) {
+                throw new IllegalArgumentException("Constant is missing after '='" + atRest());
+            }
+            return new SelectorNode.Attribute(annotation, attribute, null, lexer.get().string);
+        }
+        throw new IllegalArgumentException("'~' or '=' is missing after the attribute name" + atRest());
+    }
 }
@@ -0,0 +1,402 @@
+package javax0.refi.selector;
+
+import javax0.refi.Events;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * An index of a set of classes and their declared methods, fields and constructors that answers selector expressions
+ * without evaluating the selector for each member.
+ * <p>
+ * The index stores the kinds, the modifiers, the names, the signatures and the declaring classes of the members, and
+ * the names of their annotations, superclasses and interfaces off-heap, in direct buffers, see {@link MemberColumns}.
+ * The index does not keep the {@link Method}, {@link Field} and {@link java.lang.reflect.Constructor Constructor}
+ * objects. They are looked up again for the members the query selects, and for the members some part of the query has
+ * to be evaluated on the reflective object.
+ * <p>
+ * A query is evaluated node by node for all the members at once, producing bitmaps that are combined word by word.
+ * The nodes that can be answered from the columns are
+ *
+ * <ul>
+ * <li>the modifier selectors, like {@code public}, {@code static} or {@code abstract},</li>
+ * <li>{@code annotation ~ /regex/},</li>
+ * <li>{@code name ~ /regex/},</li>
+ * <li>{@code signature ~ /regex/},</li>
+ * <li>{@code anySuper -> name ~ /regex/}, {@code anySuper -> simpleName ~ /regex/} and the same with {@code
+ * anyInterface},</li>
+ * <li>{@code declaringClass -> ...} when the declaring classes are also indexed, and</li>
+ * <li>{@code &}, {@code |} and {@code !} of these.</li>
+ * </ul>
+ * <p>
+ * The other nodes are evaluated for each member, but only for the members that the already evaluated nodes have not
+ * decided. The expressions are compiled as lenient selectors, therefore the conditions that cannot be applied to a
+ * member, like {@code vararg} to a field, are {@code false}.
+ * <p>
+ * The index is built of segments, each holding the classes of a source, like a class file or a JAR file. When a
+ * source changes, {@link #update(Object, Collection)} rebuilds only the segment of the source, and the registered
+ * {@link Listener}s get the classes and members that started or stopped matching their expressions. The {@link
+ * SelectorIndexWatcher} calls it when the files in a directory change.
+ * <p>
+ * The index holds references to the classes it was built from. An index can be used from multiple threads, the
+ * queries running during an update see the index before or after the update.
+ */
+public final class SelectorIndex {
+    /**
+     * The key of the segment of the classes given to {@link #of(Collection)}.
+     */
+    private static final Object INITIAL = new Object();
+
+    /**
+     * The columns of the classes grouped by their source, like a class file or a JAR. The map is replaced when a
+     * segment changes, it is never modified.
+     */
+    private volatile Map<Object, MemberColumns> segments = Map.of();
+    private final List<Subscription<?>> subscriptions = new CopyOnWriteArrayList<>();
+
+    private SelectorIndex() {
+    }
+
+    /**
+     * Build the index of the classes, and their declared methods, fields and constructors.
+     *
+     * @param classes the classes to index
+     * @return the new index
+     */
+    public static SelectorIndex of(Collection<Class<?>> classes) {
+        final var it = new SelectorIndex();
+        it.update(INITIAL, classes);
+        return it;
+    }
+
+    /**
+     * @return the number of the classes and members in the index
+     */
+    public int size() {
+        var size = 0;
+        for (final var columns : segments.values()) {
+            size += columns.size;
+        }
+        return size;
+    }
+
+    /**
+     * Replace the classes that came from a source, like a class file or a JAR file. Only the classes of the source are
+     * indexed again, the other parts of the index do not change. The listeners get the classes and members that start
+     * or stop matching their expressions.
+     *
+     * @param source  the source of the classes, for example the {@link java.nio.file.Path Path} of the file
+     * @param classes the new classes of the source. When the collection is empty then the source is removed.
+     */
+    public synchronized void update(Object source, Collection<Class<?>> classes) {
+        final var old = segments.get(source);
+        final var event = Events.catalog();
+        final var replacement = classes.isEmpty() ? null : new MemberColumns(classes);
+        if (event != null) {
+            event.report("index", null, classes.size(), replacement == null ? 0 : replacement.size);
+        }
+        final var updated = new LinkedHashMap<>(segments);
+        if (replacement == null) {
+            updated.remove(source);
+        } else {
+            updated.put(source, replacement);
+        }
+        segments = Collections.unmodifiableMap(updated);
+        for (final var subscription : subscriptions) {
+            subscription.notify(old, replacement);
+        }
+    }
+
+    /**
+     * Remove the classes that came from a source.
+     *
+     * @param source the source of the classes
+     */
+    public void remove(Object source) {
+        update(source, List.of());
+    }
+
+    /**
+     * @return the sources of the classes in the index
+     */
+    Set<Object> sources() {
+        return segments.keySet();
+    }
+
+    /**
+     * Listener of the changes of the result of an expression.
+     *
+     * @param <K> the kind of the objects the expression selects
+     */
+    @FunctionalInterface
+    public interface Listener<K> {
+        /**
+         * @param added   the classes or members that match the expression after an update
+         * @param removed the classes or members that matched the expression before an update and do not match any more
+         */
+        void changed(List<K> added, List<K> removed);
+    }
+
+    /**
+     * Register a listener that is called after each {@link #update(Object, Collection)} that changes the result of the
+     * expression. The listener is called on the thread performing the update.
+     *
+     * @param expression the selector expression
+     * @param kind       the kind of the objects to select
+     * @param listener   the listener
+     * @param <K>        the kind of the objects
+     */
+    public <K> void addListener(String expression, Class<K> kind, Listener<K> listener) {
+        subscriptions.add(new Subscription<>(Selector.compileLenient(expression, kind, false), kind, listener));
+    }
+
+    /**
+     * @param listener the listener to remove
+     */
+    public void removeListener(Listener<?> listener) {
+        subscriptions.removeIf(subscription -> subscription.listener == listener);
+    }
+
+    /**
+     * Select the classes and members that match the expression.
+     *
+     * @param expression the selector expression
+     * @return the matching classes and members in the order they were indexed
+     */
+    public Stream<Object> select(String expression) {
+        return select(expression, Object.class);
+    }
+
+    /**
+     * Select the classes or members of the given kind that match the expression.
+     *
+     * @param expression the selector expression
+     * @param kind       the kind of the objects to select, like {@link Method}, {@link Field}, {@link Class} or {@link
+     *                   Member}
+     * @param <K>        the kind of the objects
+     * @return the matching objects in the order they were indexed
+     */
+    public <K> Stream<K> select(String expression, Class<K> kind) {
+        final var selector = Selector.compileLenient(expression, kind, false);
+        return segments.values().stream().flatMap(columns -> select(columns, selector, kind));
+    }
+
+    private static <K> Stream<K> select(MemberColumns columns, Selector<K> selector, Class<K> kind) {
+        return matching(columns, selector, kind).stream().mapToObj(columns::member).map(kind::cast);
+    }
+
+    /**
+     * @return the positions of the members of the kind in the columns that match the selector
+     */
+    private static BitSet matching(MemberColumns columns, Selector<?> selector, Class<?> kind) {
+        final var event = Events.match();
+        final var bitmap = BitSet.valueOf(bitmap(columns, selector, selector.topNode(), kind, columns.ofKind(kind)));
+        if (event != null) {
+            event.report(selector.expression(), kind, columns.size, bitmap.cardinality());
+        }
+        return bitmap;
+    }
+
+    private static final class Subscription<K> {
+        private final Selector<K> selector;
+        private final Class<K> kind;
+        private final Listener<K> listener;
+
+        private Subscription(Selector<K> selector, Class<K> kind, Listener<K> listener) {
+            this.selector = selector;
+            this.kind = kind;
+            this.listener = listener;
+        }
+
+        /**
+         * Compare the matches before and after the update by their {@link MemberColumns#key(int) keys}, which are the
+         * names of the classes and the signatures of the members. A class loaded again by a new class loader is not
+         * reported, unless its matching members changed.
+         */
+        private void notify(MemberColumns old, MemberColumns replacement) {
+            final var before = matching(old);
+            final var after = matching(replacement);
+            final var added = new ArrayList<K>();
+            after.forEach((key, i) -> {
+                if (!before.containsKey(key)) {
+                    added.add(kind.cast(replacement.member(i)));
+                }
+            });
+            final var removed = new ArrayList<K>();
+            before.forEach((key, i) -> {
+                if (!after.containsKey(key)) {
+                    removed.add(kind.cast(old.member(i)));
+                }
+            });
+            if (!added.isEmpty() || !removed.isEmpty()) {
+                listener.changed(added, removed);
+            }
+        }
+
+        /**
+         * @return the positions of the matching members by their keys
+         */
+        private Map<String, Integer> matching(MemberColumns columns) {
+            final var matching = new LinkedHashMap<String, Integer>();
+            if (columns != null) {
+                SelectorIndex.matching(columns, selector, kind).stream().forEach(i -> matching.put(columns.key(i), i));
+            }
+            return matching;
+        }
+    }
+
+    /**
+     * Evaluate the node for the members in the scope.
+     * <p>
+     * The {@code &}, {@code |} and {@code !} nodes combine the bitmaps of the sub nodes. The sub nodes of an {@code &}
+     * are evaluated only for the members the previous sub nodes were {@code true} for, and the sub nodes of an {@code
+     * |} only for the members the previous sub nodes were {@code false} for. The leaf nodes that can be answered from
+     * the columns or the posting lists are evaluated before the other sub nodes. The rest of the nodes are evaluated
+     * for each member in the scope.
+     *
+     * @param columns  the columns of the members
+     * @param selector the selector containing the node
+     * @param node     the node to evaluate
+     * @param kind     the kind of the members the node is evaluated for
+     * @param scope    the bitmap of the members to evaluate the node for
+     * @return the bitmap of the members in the scope the node is {@code true} for
+     */
+    private static long[] bitmap(MemberColumns columns, Selector<?> selector, SelectorNode node, Class<?> kind,
+                                 long[] scope) {
+        if (MemberColumns.isEmpty(scope)) {
+            return scope;
+        }
+        if (node instanceof SelectorNode.Constant) {
+            return ((SelectorNode.Constant) node).value ? scope : columns.empty();
+        }
+        if (node instanceof SelectorNode.And) {
+            var bitmap = scope;
+            for (final var sub : leavesFirst(((SelectorNode.And) node).subNodes)) {
+                bitmap = bitmap(columns, selector, sub, kind, bitmap);
+            }
+            return bitmap;
+        }
+        if (node instanceof SelectorNode.Or) {
+            var bitmap = columns.empty();
+            var rest = scope;
+            for (final var sub : leavesFirst(((SelectorNode.Or) node).subNodes)) {
+                final var matching = bitmap(columns, selector, sub, kind, rest);
+                bitmap = MemberColumns.or(bitmap, matching);
+                rest = MemberColumns.andNot(rest, matching);
+            }
+            return bitmap;
+        }
+        if (node instanceof SelectorNode.Not) {
+            return MemberColumns.andNot(scope, bitmap(columns, selector, ((SelectorNode.Not) node).subNode, kind, scope));
+        }
+        if (node instanceof SelectorNode.Terminal) {
+            final var tests = selector.modifierTest(((SelectorNode.Terminal) node).terminal);
+            if (tests != null) {
+                return columns.modifiers(tests, scope);
+            }
+        }
+        if (node instanceof SelectorNode.Regex) {
+            final var regex = (SelectorNode.Regex) node;
+            if (selector.isBuiltInRegexSelector(regex.name)) {
+                switch (regex.name) {
+                    case "annotation":
+                        return columns.annotations(regex.regex, scope);
+                    case "name":
+                        return columns.names(regex.regex, scope);
+                    case "signature":
+                        return columns.signatures(regex.regex, scope);
+                    default:
+                        break;
+                }
+            }
+        }
+        if (node instanceof SelectorNode.Quantified) {
+            final var bitmap = quantified(columns, selector, (SelectorNode.Quantified) node, scope);
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+        if (node instanceof SelectorNode.Converted) {
+            final var converted = (SelectorNode.Converted) node;
+            if ("declaringClass".equals(converted.converter) && selector.isBuiltInConverter(converted.converter)) {
+                final var classes = columns.declaringClasses(scope);
+                if (classes != null) {
+                    return columns.declaredIn(bitmap(columns, selector, converted.subNode, Class.class, classes), scope);
+                }
+            }
+        }
+        final var evaluator = selector.evaluator(node, kind);
+        final var bitmap = columns.empty();
+        for (int w = 0; w < scope.length; w++) {
+            for (var word = scope[w]; word != 0; word &= word - 1) {
+                final var i = (w << 6) + Long.numberOfTrailingZeros(word);
+                if (evaluator.test(columns.member(i))) {
+                    bitmap[w] |= 1L << i;
+                }
+            }
+        }
+        return bitmap;
+    }
+
+    private static List<SelectorNode> leavesFirst(Collection<SelectorNode> nodes) {
+        final var ordered = new ArrayList<SelectorNode>(nodes.size());
+        for (final var node : nodes) {
+            if (isLeaf(node)) {
+                ordered.add(node);
+            }
+        }
+        for (final var node : nodes) {
+            if (!isLeaf(node)) {
+                ordered.add(node);
+            }
+        }
+        return ordered;
+    }
+
+    private static boolean isLeaf(SelectorNode node) {
+        return node instanceof SelectorNode.Terminal || node instanceof SelectorNode.Regex;
+    }
+
+    /**
+     * Evaluate a quantifier on the hierarchy edges.
+     *
+     * @param columns    the columns of the members
+     * @param selector   the selector containing the quantifier
+     * @param quantified the quantifier node
+     * @param scope      the bitmap of the members to evaluate the node for
+     * @return the bitmap of the members in the scope the quantifier is {@code true} for, or {@code null} if the
+     * quantifier cannot be evaluated on the columns
+     */
+    private static long[] quantified(MemberColumns columns, Selector<?> selector, SelectorNode.Quantified quantified,
+                                     long[] scope) {
+        if (quantified.aggregate != SelectorNode.Quantified.Aggregate.ANY
+            || !(quantified.subNode instanceof SelectorNode.Regex)) {
+            return null;
+        }
+        final var regex = (SelectorNode.Regex) quantified.subNode;
+        if (!selector.isBuiltInRegexSelector(regex.name)
+            || !"name".equals(regex.name) && !"simpleName".equals(regex.name)) {
+            return null;
+        }
+        final var simple = "simpleName".equals(regex.name);
+        switch (quantified.elements) {
+            case "supers":
+                return columns.supers(regex.regex, simple, scope);
+            case "interfaces":
+                return columns.interfaces(regex.regex, simple, scope);
+            default:
+                return null;
+        }
+    }
+}
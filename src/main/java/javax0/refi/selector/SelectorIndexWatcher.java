@@ -0,0 +1,197 @@
+package javax0.refi.selector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Keep a {@link SelectorIndex} up to date with the class files and JAR files in a directory tree.
+ * <p>
+ * The watcher indexes the {@code .class} and {@code .jar} files found in the directory tree when it starts, and then
+ * it updates the index in a background thread whenever a file is created, modified or deleted, using a {@link
+ * java.nio.file.WatchService WatchService}. Only the classes of the changed file are indexed again, each file is a
+ * separate segment of the index keyed by its {@link Path}.
+ * <p>
+ * The watcher does not load the classes. Loading the new version of a changed class needs a new class loader, which
+ * is the responsibility of the application. The loader function gets the path of a file and returns the classes
+ * loaded from it. A file the loader function throws an exception or error for is treated as if it was deleted.
+ * <p>
+ * The exceptions and errors thrown by the loader function or by the {@link SelectorIndex.Listener}s are passed to the
+ * error handler together with the path of the file, and the watcher goes on with the next file. When a directory is
+ * deleted, the classes of all the files under it are removed from the index.
+ */
+public final class SelectorIndexWatcher implements Closeable {
+    private final SelectorIndex index;
+    private final Function<Path, Collection<Class<?>>> loader;
+    private final BiConsumer<Path, Throwable> errors;
+    private final WatchService service;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private final Thread thread;
+
+    private SelectorIndexWatcher(SelectorIndex index, Path root, Function<Path, Collection<Class<?>>> loader,
+                                 BiConsumer<Path, Throwable> errors) throws IOException {
+        this.index = index;
+        this.loader = loader;
+        this.errors = errors;
+        this.service = root.getFileSystem().newWatchService();
+        register(root);
+        thread = new Thread(this::run, "refi-index-watcher " + root);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Index the class files and JAR files in the directory tree and start watching them. The exceptions and errors
+     * thrown while a file is indexed are passed to the uncaught exception handler of the watcher thread.
+     *
+     * @param index  the index to update
+     * @param root   the root directory of the tree to watch
+     * @param loader the function that loads the classes of a class file or a JAR file
+     * @return the watcher, which should be closed when it is not needed any more
+     * @throws IOException if the directory cannot be watched
+     */
+    public static SelectorIndexWatcher watch(SelectorIndex index, Path root,
+                                             Function<Path, Collection<Class<?>>> loader) throws IOException {
+        return watch(index, root, loader, (path, e) -> {
+            final var thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        });
+    }
+
+    /**
+     * Index the class files and JAR files in the directory tree and start watching them.
+     *
+     * @param index  the index to update
+     * @param root   the root directory of the tree to watch
+     * @param loader the function that loads the classes of a class file or a JAR file
+     * @param errors the handler of the exceptions and errors thrown while a file is indexed
+     * @return the watcher, which should be closed when it is not needed any more
+     * @throws IOException if the directory cannot be watched
+     */
+    public static SelectorIndexWatcher watch(SelectorIndex index, Path root,
+                                             Function<Path, Collection<Class<?>>> loader,
+                                             BiConsumer<Path, Throwable> errors) throws IOException {
+        return new SelectorIndexWatcher(index, root, loader, errors);
+    }
+
+    /**
+     * Register the directory and its sub directories, and index the files in them. The directories are registered
+     * before the files are listed, therefore a file created in the meantime is either listed or reported by the watch
+     * service.
+     */
+    private void register(Path directory) throws IOException {
+        for (final var path : walk(directory)) {
+            if (Files.isDirectory(path)) {
+                directories.put(path.register(service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), path);
+            }
+        }
+        for (final var path : walk(directory)) {
+            if (!Files.isDirectory(path)) {
+                changed(path);
+            }
+        }
+    }
+
+    private static List<Path> walk(Path directory) throws IOException {
+        try (final var walk = Files.walk(directory)) {
+            return walk.collect(Collectors.toList());
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                final var key = service.take();
+                final var directory = directories.get(key);
+                final var changed = new LinkedHashSet<Path>();
+                for (final var event : key.pollEvents()) {
+                    if (event.kind() != OVERFLOW && directory != null) {
+                        final var path = directory.resolve((Path) event.context());
+                        if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                            try {
+                                register(path);
+                            } catch (IOException e) {
+                                // the directory was deleted since it was created
+                            }
+                        } else if (event.kind() == ENTRY_DELETE) {
+                            deleted(path);
+                        } else {
+                            changed.add(path);
+                        }
+                    }
+                }
+                changed.forEach(this::changed);
+                if (!key.reset()) {
+                    directories.remove(key);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // the watcher was closed
+        }
+    }
+
+    /**
+     * Index the file again. The several modification events of a file delivered together are handled only once.
+     */
+    private void changed(Path path) {
+        final var name = path.getFileName().toString();
+        if (!name.endsWith(".class") && !name.endsWith(".jar")) {
+            return;
+        }
+        Collection<Class<?>> classes;
+        try {
+            classes = Files.isRegularFile(path) ? loader.apply(path) : List.of();
+        } catch (Throwable e) {
+            errors.accept(path, e);
+            classes = List.of();
+        }
+        update(path, classes);
+    }
+
+    /**
+     * Remove the deleted file, or all the files under the deleted directory from the index.
+     */
+    private void deleted(Path path) {
+        for (final var source : index.sources()) {
+            if (source instanceof Path && ((Path) source).startsWith(path)) {
+                update((Path) source, List.of());
+            }
+        }
+    }
+
+    private void update(Path path, Collection<Class<?>> classes) {
+        try {
+            index.update(path, classes);
+        } catch (Throwable e) {
+            errors.accept(path, e);
+        }
+    }
+
+    /**
+     * Stop watching the directory tree. The index keeps the classes it contains.
+     *
+     * @throws IOException if the watch service cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        service.close();
+        thread.interrupt();
+    }
+}
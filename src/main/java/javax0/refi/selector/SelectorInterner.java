@@ -0,0 +1,90 @@
+package javax0.refi.selector;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Interns the nodes of the compiled expressions, so that equal sub expressions of all the compiled selectors are
+ * represented by the same node object. For example, the {@code declaringClass -> annotation ~ /Entity/} node and its
+ * {@link java.util.regex.Pattern} exist only once, no matter how many expressions contain it.
+ * <p>
+ * The nodes are equal structurally, and the {@code &} and {@code |} nodes are equal when they have the same sub nodes
+ * in the same order. The order of the sub nodes is the order of the evaluation, which matters for the conditions
+ * guarding the others and for the order tuned by the profiling, therefore it is never changed by the interning.
+ * <p>
+ * The interned nodes are referenced weakly. A node is dropped from the interner when no compiled selector uses it.
+ */
+final class SelectorInterner {
+
+    private SelectorInterner() {
+    }
+
+    private static final Map<SelectorNode, WeakReference<SelectorNode>> NODES = new WeakHashMap<>();
+
+    /**
+     * @param node the node to intern, it must not be modified after the call
+     * @return the interned node equal to {@code node}
+     */
+    static SelectorNode intern(SelectorNode node) {
+        if (node instanceof SelectorNode.Constant) {
+            return node;
+        }
+        return canonical(withInternedSubNodes(node));
+    }
+
+    private static SelectorNode canonical(SelectorNode node) {
+        synchronized (NODES) {
+            final var reference = NODES.get(node);
+            final var interned = reference == null ? null : reference.get();
+            if (interned != null) {
+                return interned;
+            }
+            NODES.put(node, new WeakReference<>(node));
+            return node;
+        }
+    }
+
+    /**
+     * @param node the node
+     * @return the node with the interned sub nodes, or the node itself if the sub nodes were already interned
+     */
+    private static SelectorNode withInternedSubNodes(SelectorNode node) {
+        if (node instanceof SelectorNode.And) {
+            final var andNode = new SelectorNode.And();
+            var changed = false;
+            for (final var sub : ((SelectorNode.And) node).subNodes) {
+                final var interned = intern(sub);
+                changed |= interned != sub;
+                andNode.subNodes.add(interned);
+            }
+            return changed ? andNode : node;
+        }
+        if (node instanceof SelectorNode.Or) {
+            final var orNode = new SelectorNode.Or();
+            var changed = false;
+            for (final var sub : ((SelectorNode.Or) node).subNodes) {
+                final var interned = intern(sub);
+                changed |= interned != sub;
+                orNode.subNodes.add(interned);
+            }
+            return changed ? orNode : node;
+        }
+        if (node instanceof SelectorNode.Not) {
+            final var sub = ((SelectorNode.Not) node).subNode;
+            final var interned = intern(sub);
+            return interned == sub ? node : new SelectorNode.Not(interned);
+        }
+        if (node instanceof SelectorNode.Converted) {
+            final var converted = (SelectorNode.Converted) node;
+            final var interned = intern(converted.subNode);
+            return interned == converted.subNode ? node : new SelectorNode.Converted(interned, converted.converter);
+        }
+        if (node instanceof SelectorNode.Quantified) {
+            final var quantified = (SelectorNode.Quantified) node;
+            final var interned = intern(quantified.subNode);
+            return interned == quantified.subNode ? node : quantified.with(interned);
+        }
+        return node;
+    }
+}
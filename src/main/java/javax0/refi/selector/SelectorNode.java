@@ -1,17 +1,60 @@
 package javax0.refi.selector;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+/**
+ * The nodes of the compiled selector expression.
+ * <p>
+ * Nodes implement structural {@code equals()} and {@code hashCode()}, therefore the optimizer can store the same sub
+ * expression appearing twice under an {@link And} or {@link Or} node only once. The sub nodes of an {@link And} or
+ * {@link Or} are ordered, they are evaluated in that order, and two nodes are equal only if their sub nodes are equal in
+ * the same order. The {@code toString()} of a node is a valid selector expression that compiles to the same
+ * structure.
+ */
 class SelectorNode {
 
     static class Or extends SelectorNode {
-        final Set<SelectorNode> subNodes = new HashSet<>();
+        final List<SelectorNode> subNodes = new ArrayList<>();
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Or && subNodes.equals(((Or) o).subNodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Or.class.hashCode() + subNodes.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return subNodes.stream().map(SelectorNode::toString).collect(Collectors.joining(" | "));
+        }
     }
 
     static class And extends SelectorNode {
-        final Set<SelectorNode> subNodes = new HashSet<>();
+        final List<SelectorNode> subNodes = new ArrayList<>();
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof And && subNodes.equals(((And) o).subNodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * And.class.hashCode() + subNodes.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return subNodes.stream().map(n -> n instanceof Or ? "(" + n + ")" : n.toString())
+                .collect(Collectors.joining(" & "));
+        }
     }
 
     static class Not extends SelectorNode {
@@ -20,6 +63,21 @@ class SelectorNode {
         Not(SelectorNode subNode) {
             this.subNode = subNode;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Not && subNode.equals(((Not) o).subNode);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Not.class.hashCode() + subNode.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "!" + parenthesized(subNode);
+        }
     }
 
     static class Converted extends SelectorNode {
@@ -30,8 +88,173 @@ class SelectorNode {
             this.converter = converter;
             this.subNode = subNode;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Converted && converter.equals(((Converted) o).converter)
+                && subNode.equals(((Converted) o).subNode);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(Converted.class, converter, subNode);
+        }
+
+        @Override
+        public String toString() {
+            return converter + " -> " + parenthesized(subNode);
+        }
     }
 
+    /**
+     * A node that evaluates the sub node for several objects related to the examined object, like all the
+     * superclasses or all the methods of a class, and aggregates the results.
+     */
+    static class Quantified extends SelectorNode {
+        /**
+         * The short forms of the quantifiers, like {@code anySuper} for {@code supers -> any(...)}.
+         */
+        static final Map<String, Quantified> QUANTIFIERS = Map.of(
+            "anySuper", new Quantified(null, "supers", Aggregate.ANY),
+            "allSupers", new Quantified(null, "supers", Aggregate.ALL),
+            "anyInterface", new Quantified(null, "interfaces", Aggregate.ANY),
+            "allInterfaces", new Quantified(null, "interfaces", Aggregate.ALL),
+            "anyEnclosing", new Quantified(null, "enclosings", Aggregate.ANY),
+            "allEnclosing", new Quantified(null, "enclosings", Aggregate.ALL)
+        );
+
+        enum Aggregate {
+            ANY, ALL, NONE, COUNT;
+
+            @Override
+            public String toString() {
+                return name().toLowerCase();
+            }
+        }
+
+        enum Comparison {
+            LT("<"), LE("<="), EQ("="), NE("!="), GE(">="), GT(">");
+            final String symbol;
+
+            Comparison(String symbol) {
+                this.symbol = symbol;
+            }
+
+            boolean test(int count, int limit) {
+                switch (this) {
+                    case LT:
+                        return count < limit;
+                    case LE:
+                        return count <= limit;
+                    case EQ:
+                        return count == limit;
+                    case NE:
+                        return count != limit;
+                    case GE:
+                        return count >= limit;
+                    default:
+                        return count > limit;
+                }
+            }
+
+            Comparison negate() {
+                switch (this) {
+                    case LT:
+                        return GE;
+                    case LE:
+                        return GT;
+                    case EQ:
+                        return NE;
+                    case NE:
+                        return EQ;
+                    case GE:
+                        return LT;
+                    default:
+                        return LE;
+                }
+            }
+
+            static Comparison of(String symbol) {
+                for (final var comparison : values()) {
+                    if (comparison.symbol.equals(symbol)) {
+                        return comparison;
+                    }
+                }
+                return null;
+            }
+        }
+
+        final SelectorNode subNode;
+        final String elements;
+        final Aggregate aggregate;
+        /**
+         * The comparison and the limit of the {@link Aggregate#COUNT} aggregate. {@code null} and zero for the others.
+         */
+        final Comparison comparison;
+        final int limit;
+
+        Quantified(SelectorNode subNode, String elements, Aggregate aggregate) {
+            this(subNode, elements, aggregate, null, 0);
+        }
+
+        Quantified(SelectorNode subNode, String elements, Comparison comparison, int limit) {
+            this(subNode, elements, Aggregate.COUNT, comparison, limit);
+        }
+
+        private Quantified(SelectorNode subNode, String elements, Aggregate aggregate, Comparison comparison, int limit) {
+            this.subNode = subNode;
+            this.elements = elements;
+            this.aggregate = aggregate;
+            this.comparison = comparison;
+            this.limit = limit;
+        }
+
+        /**
+         * @param subNode the new sub node
+         * @return a quantifier node, which is the same as this except the sub node
+         */
+        Quantified with(SelectorNode subNode) {
+            return new Quantified(subNode, elements, aggregate, comparison, limit);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Quantified)) {
+                return false;
+            }
+            final var other = (Quantified) o;
+            return elements.equals(other.elements) && aggregate == other.aggregate
+                && comparison == other.comparison && limit == other.limit && subNode.equals(other.subNode);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(Quantified.class, elements, aggregate, comparison, limit, subNode);
+        }
+
+        /**
+         * @return the short name of the quantifier as it can be used in the expression, like {@code anySuper} or
+         * {@code null} if there is no short name
+         */
+        String quantifier() {
+            for (final var entry : QUANTIFIERS.entrySet()) {
+                if (entry.getValue().elements.equals(elements) && entry.getValue().aggregate == aggregate) {
+                    return entry.getKey();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            final var quantifier = quantifier();
+            if (quantifier != null) {
+                return quantifier + " -> " + parenthesized(subNode);
+            }
+            return elements + " -> " + aggregate + "(" + subNode + ")"
+                + (aggregate == Aggregate.COUNT ? " " + comparison.symbol + " " + limit : "");
+        }
+    }
 
     static class Terminal extends SelectorNode {
         final String terminal;
@@ -39,6 +262,21 @@ class SelectorNode {
         Terminal(String terminal) {
             this.terminal = terminal;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Terminal && terminal.equals(((Terminal) o).terminal);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(Terminal.class, terminal);
+        }
+
+        @Override
+        public String toString() {
+            return terminal;
+        }
     }
 
     static class Regex extends SelectorNode {
@@ -49,5 +287,94 @@ class SelectorNode {
             this.regex = Pattern.compile(regex);
             this.name = name;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Regex && name.equals(((Regex) o).name)
+                && regex.pattern().equals(((Regex) o).regex.pattern());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(Regex.class, name, regex.pattern());
+        }
+
+        @Override
+        public String toString() {
+            return name + " ~ /" + regex.pattern().replace("/", "\\/") + "/";
+        }
+    }
+
+    /**
+     * A node that checks the value of an attribute of an annotation, like {@code annotation(Path).value ~ /^\/api/} or
+     * {@code annotation(Path).value = "/api"}. Exactly one of {@link #regex} and {@link #constant} is not {@code
+     * null}.
+     */
+    static class Attribute extends SelectorNode {
+        final String annotation;
+        final String attribute;
+        final Pattern regex;
+        final String constant;
+
+        Attribute(String annotation, String attribute, Pattern regex, String constant) {
+            this.annotation = annotation;
+            this.attribute = attribute;
+            this.regex = regex;
+            this.constant = constant;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Attribute)) {
+                return false;
+            }
+            final var other = (Attribute) o;
+            return annotation.equals(other.annotation) && attribute.equals(other.attribute)
+                && Objects.equals(pattern(), other.pattern()) && Objects.equals(constant, other.constant);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(Attribute.class, annotation, attribute, pattern(), constant);
+        }
+
+        private String pattern() {
+            return regex == null ? null : regex.pattern();
+        }
+
+        @Override
+        public String toString() {
+            return "annotation(" + annotation + ")." + attribute + (regex == null
+                ? " = \"" + constant.replace("\\", "\\\\").replace("\"", "\\\"") + "\""
+                : " ~ /" + regex.pattern().replace("/", "\\/") + "/");
+        }
+    }
+
+    /**
+     * A node that evaluates to a value known at compile time. The compiler never creates these nodes directly. They
+     * are created by the {@link SelectorOptimizer} from the {@code true} and {@code false} terminals and from sub
+     * expressions that are always {@code true} or always {@code false}.
+     */
+    static class Constant extends SelectorNode {
+        static final Constant TRUE = new Constant(true);
+        static final Constant FALSE = new Constant(false);
+        final boolean value;
+
+        private Constant(boolean value) {
+            this.value = value;
+        }
+
+        static Constant of(boolean value) {
+            return value ? TRUE : FALSE;
+        }
+
+        @Override
+        public String toString() {
+            return Boolean.toString(value);
+        }
+    }
+
+    private static String parenthesized(SelectorNode node) {
+        return node instanceof And || node instanceof Or ? "(" + node + ")" : node.toString();
     }
 }
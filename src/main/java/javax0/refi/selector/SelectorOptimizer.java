@@ -0,0 +1,379 @@
+package javax0.refi.selector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+import static javax0.refi.selector.SelectorNode.Quantified.Aggregate.ALL;
+import static javax0.refi.selector.SelectorNode.Quantified.Aggregate.ANY;
+import static javax0.refi.selector.SelectorNode.Quantified.Aggregate.COUNT;
+import static javax0.refi.selector.SelectorNode.Quantified.Comparison.EQ;
+import static javax0.refi.selector.SelectorNode.Quantified.Comparison.GE;
+import static javax0.refi.selector.SelectorNode.Quantified.Comparison.GT;
+import static javax0.refi.selector.SelectorNode.Quantified.Comparison.LE;
+import static javax0.refi.selector.SelectorNode.Quantified.Comparison.LT;
+import static javax0.refi.selector.SelectorNode.Quantified.Comparison.NE;
+
+/**
+ * Optimizer working on the structure created by the {@link SelectorCompiler}.
+ * <p>
+ * The optimizer
+ *
+ * <ul>
+ * <li>converts the terminals {@code true} and {@code false} to constants,</li>
+ * <li>pushes the negations to the leaves using the De Morgan rules, eliminating double negations, e.g. {@code
+ * !(anySuper -> A)} becomes {@code allSupers -> !A},</li>
+ * <li>simplifies the aggregates, e.g. {@code methods -> count(A) > 0} becomes {@code methods -> any(A)},</li>
+ * <li>flattens the nested {@code &} and {@code |} nodes, e.g. {@code A & (B & C)} becomes {@code A & B & C},</li>
+ * <li>removes the duplicate terms, e.g. {@code A & A} becomes {@code A},</li>
+ * <li>folds the constants, e.g. {@code true & A} becomes {@code A} and {@code true | A} becomes {@code true}, and</li>
+ * <li>recognizes contradictions and tautologies, e.g. {@code static & !static} becomes {@code false}.</li>
+ * </ul>
+ * <p>
+ * The optimization of a lenient selector does not push the negations into the conversions and quantifiers and does not
+ * fold the conversions and quantifiers of constants. A conversion or quantifier that cannot be applied to the object is
+ * replaced by the inapplicable value as a whole, and the negation outside of it has to negate that value, the same way
+ * as {@code !transient} is {@code true} for a method.
+ * <p>
+ * The optimization of a strict selector for a kind folds a term away only if the term can be evaluated for all the
+ * objects of the kind, as told by the {@link Applicability}. A strict selector throws an exception when a condition or
+ * conversion is applied to an object it cannot handle, and folding {@code transient | !transient} to {@code true} would
+ * hide that for a method. The terms following a constant that decides an {@code &} or {@code |} are never evaluated,
+ * therefore they are removed in any case, e.g. {@code false & transient} is {@code false} even for a method.
+ * <p>
+ * The optimizer assumes that the selectors and the converters are pure functions, which is the case for all the
+ * built-in ones. The terminals {@code true} and {@code false} are folded, therefore redefining them calling {@link
+ * Selector#selectorRe(String, java.util.function.Function)} has no effect.
+ */
+final class SelectorOptimizer {
+
+    /**
+     * Tells the optimizer which conditions, conversions and quantifiers can be evaluated for all the objects of a kind.
+     */
+    interface Applicability {
+        /**
+         * Anything can be evaluated for any object. Used for the lenient selectors, where the inapplicable terms are
+         * replaced by constants before the evaluation, and when the structure is optimized without the functions.
+         */
+        Applicability ANY = new Applicability() {
+            @Override
+            public boolean isTotal(SelectorNode node, Class<?> kind) {
+                return true;
+            }
+
+            @Override
+            public Class<?> resultKind(SelectorNode node) {
+                return Object.class;
+            }
+        };
+
+        /**
+         * @param node a terminal, regex, attribute, conversion or quantifier node. For the conversions and
+         *             quantifiers only the conversion, or the listing of the elements, is checked, not the sub node.
+         * @param kind the kind of the objects
+         * @return {@code true} if the node can be evaluated for all objects of the kind without throwing an exception
+         */
+        boolean isTotal(SelectorNode node, Class<?> kind);
+
+        /**
+         * @param node a conversion or quantifier node
+         * @return the kind of the objects the sub node of the conversion or quantifier is evaluated for
+         */
+        Class<?> resultKind(SelectorNode node);
+    }
+
+    private final boolean lenient;
+    private final Applicability applicability;
+
+    private SelectorOptimizer(boolean lenient, Applicability applicability) {
+        this.lenient = lenient;
+        this.applicability = applicability;
+    }
+
+    static SelectorNode optimize(SelectorNode node) {
+        return optimize(node, false);
+    }
+
+    /**
+     * @param node    the node to optimize
+     * @param lenient {@code true} if the node is optimized for a lenient selector
+     * @return the optimized node, folding the terms as if everything could be evaluated for any object
+     */
+    static SelectorNode optimize(SelectorNode node, boolean lenient) {
+        return new SelectorOptimizer(lenient, Applicability.ANY).optimize(node, Object.class);
+    }
+
+    /**
+     * @param node          the node to optimize for a strict selector
+     * @param kind          the kind of the objects the selector is used for
+     * @param applicability tells which terms can be folded
+     * @return the optimized node
+     */
+    static SelectorNode optimize(SelectorNode node, Class<?> kind, Applicability applicability) {
+        return new SelectorOptimizer(false, applicability).optimize(node, kind);
+    }
+
+    private SelectorNode optimize(SelectorNode node, Class<?> kind) {
+        if (node instanceof SelectorNode.Terminal) {
+            final var terminal = ((SelectorNode.Terminal) node).terminal;
+            if ("true".equals(terminal)) {
+                return SelectorNode.Constant.TRUE;
+            }
+            if ("false".equals(terminal)) {
+                return SelectorNode.Constant.FALSE;
+            }
+            return node;
+        }
+        if (node instanceof SelectorNode.Not) {
+            return negate(optimize(((SelectorNode.Not) node).subNode, kind), kind);
+        }
+        if (node instanceof SelectorNode.Converted) {
+            final var converted = (SelectorNode.Converted) node;
+            return converted(converted,
+                optimize(converted.subNode, applicability.resultKind(converted)), kind);
+        }
+        if (node instanceof SelectorNode.Quantified) {
+            final var quantified = (SelectorNode.Quantified) node;
+            return quantified(quantified, quantified.aggregate, quantified.comparison, quantified.limit,
+                optimize(quantified.subNode, applicability.resultKind(quantified)), kind);
+        }
+        if (node instanceof SelectorNode.And) {
+            return and(optimizeAll(((SelectorNode.And) node).subNodes, kind), kind);
+        }
+        if (node instanceof SelectorNode.Or) {
+            return or(optimizeAll(((SelectorNode.Or) node).subNodes, kind), kind);
+        }
+        return node;
+    }
+
+    private Collection<SelectorNode> optimizeAll(Collection<SelectorNode> nodes, Class<?> kind) {
+        final var optimized = new ArrayList<SelectorNode>(nodes.size());
+        for (final var node : nodes) {
+            optimized.add(optimize(node, kind));
+        }
+        return optimized;
+    }
+
+    /**
+     * Create the negation of an already optimized node pushing the negation down to the leaves. The negation is not
+     * pushed into the conversions and quantifiers of a lenient selector.
+     *
+     * @param node the optimized node to negate
+     * @param kind the kind of the objects the node is evaluated for
+     * @return the optimized negated node
+     */
+    private SelectorNode negate(SelectorNode node, Class<?> kind) {
+        if (node instanceof SelectorNode.Constant) {
+            return SelectorNode.Constant.of(!((SelectorNode.Constant) node).value);
+        }
+        if (node instanceof SelectorNode.Not) {
+            return ((SelectorNode.Not) node).subNode;
+        }
+        if (lenient && (node instanceof SelectorNode.Converted || node instanceof SelectorNode.Quantified)) {
+            return new SelectorNode.Not(node);
+        }
+        if (node instanceof SelectorNode.Converted) {
+            final var converted = (SelectorNode.Converted) node;
+            return converted(converted, negate(converted.subNode, applicability.resultKind(converted)), kind);
+        }
+        if (node instanceof SelectorNode.Quantified) {
+            final var quantified = (SelectorNode.Quantified) node;
+            final var elementKind = applicability.resultKind(quantified);
+            switch (quantified.aggregate) {
+                case ANY:
+                    return quantified(quantified, ALL, null, 0, negate(quantified.subNode, elementKind), kind);
+                case ALL:
+                    return quantified(quantified, ANY, null, 0, negate(quantified.subNode, elementKind), kind);
+                default:
+                    return quantified(quantified, COUNT, quantified.comparison.negate(), quantified.limit,
+                        quantified.subNode, kind);
+            }
+        }
+        if (node instanceof SelectorNode.And) {
+            return or(negateAll(((SelectorNode.And) node).subNodes, kind), kind);
+        }
+        if (node instanceof SelectorNode.Or) {
+            return and(negateAll(((SelectorNode.Or) node).subNodes, kind), kind);
+        }
+        return new SelectorNode.Not(node);
+    }
+
+    private Collection<SelectorNode> negateAll(Collection<SelectorNode> nodes, Class<?> kind) {
+        final var negated = new ArrayList<SelectorNode>(nodes.size());
+        for (final var node : nodes) {
+            negated.add(negate(node, kind));
+        }
+        return negated;
+    }
+
+    /**
+     * A conversion of a constant is the constant itself, there is no need to perform the conversion. It is not the case
+     * for a lenient selector, or when the conversion cannot be applied to all the objects of the kind, because then the
+     * conversion may not be applicable to the object.
+     *
+     * @param converted the conversion node providing the name of the converter
+     */
+    private SelectorNode converted(SelectorNode.Converted converted, SelectorNode subNode, Class<?> kind) {
+        if (!lenient && subNode instanceof SelectorNode.Constant && applicability.isTotal(converted, kind)) {
+            return subNode;
+        }
+        return new SelectorNode.Converted(subNode, converted.converter);
+    }
+
+    /**
+     * Create an optimized quantifier node. The {@code none(X)} aggregate is replaced by {@code all(!X)}, and the counts
+     * that only check whether there is a matching element are replaced by {@code any} or {@code all}, which can stop at
+     * the first element that decides the result.
+     * <p>
+     * A quantifier of a constant is constant only in some cases. When any of the elements has to be {@code false}, it
+     * is {@code false} even if there are no elements. When all the elements have to be {@code true}, it is {@code true}
+     * even if there are no elements. The count of the elements for which the sub node is {@code false} is zero. These
+     * quantifiers are not replaced by the constant for a lenient selector, or when the elements cannot be listed for all
+     * the objects of the kind, because then the quantifier may not be applicable to the object.
+     *
+     * @param quantified the quantifier node providing the name of the elements
+     */
+    private SelectorNode quantified(SelectorNode.Quantified quantified, SelectorNode.Quantified.Aggregate aggregate,
+                                    SelectorNode.Quantified.Comparison comparison, int limit,
+                                    SelectorNode subNode, Class<?> kind) {
+        final var elements = quantified.elements;
+        final var foldable = !lenient && applicability.isTotal(quantified, kind);
+        switch (aggregate) {
+            case NONE:
+                return quantified(quantified, ALL, null, 0, negate(subNode, applicability.resultKind(quantified)),
+                    kind);
+            case COUNT:
+                if (foldable && (subNode == SelectorNode.Constant.FALSE || comparison == LT && limit == 0
+                    || comparison == GE && limit == 0)) {
+                    return SelectorNode.Constant.of(comparison.test(0, limit));
+                }
+                if (comparison == GT && limit == 0 || comparison == GE && limit == 1 || comparison == NE && limit == 0) {
+                    return quantified(quantified, ANY, null, 0, subNode, kind);
+                }
+                if (comparison == EQ && limit == 0 || comparison == LE && limit == 0 || comparison == LT && limit == 1) {
+                    return quantified(quantified, ALL, null, 0,
+                        negate(subNode, applicability.resultKind(quantified)), kind);
+                }
+                return new SelectorNode.Quantified(subNode, elements, comparison, limit);
+            default:
+                if (foldable && subNode == SelectorNode.Constant.of(aggregate == ALL)) {
+                    return subNode;
+                }
+                return new SelectorNode.Quantified(subNode, elements, aggregate);
+        }
+    }
+
+    private SelectorNode and(Collection<SelectorNode> nodes, Class<?> kind) {
+        final var terms = new LinkedHashSet<SelectorNode>();
+        for (final var node : nodes) {
+            if (node instanceof SelectorNode.And) {
+                terms.addAll(((SelectorNode.And) node).subNodes);
+            } else if (node != SelectorNode.Constant.TRUE) {
+                terms.add(node);
+            }
+            if (terms.contains(SelectorNode.Constant.FALSE)) {
+                break;
+            }
+        }
+        if (isDecided(terms, SelectorNode.Constant.FALSE, kind)) {
+            return SelectorNode.Constant.FALSE;
+        }
+        if (terms.isEmpty()) {
+            return SelectorNode.Constant.TRUE;
+        }
+        if (terms.size() == 1) {
+            return terms.iterator().next();
+        }
+        final var andNode = new SelectorNode.And();
+        andNode.subNodes.addAll(terms);
+        return andNode;
+    }
+
+    private SelectorNode or(Collection<SelectorNode> nodes, Class<?> kind) {
+        final var terms = new LinkedHashSet<SelectorNode>();
+        for (final var node : nodes) {
+            if (node instanceof SelectorNode.Or) {
+                terms.addAll(((SelectorNode.Or) node).subNodes);
+            } else if (node != SelectorNode.Constant.FALSE) {
+                terms.add(node);
+            }
+            if (terms.contains(SelectorNode.Constant.TRUE)) {
+                break;
+            }
+        }
+        if (isDecided(terms, SelectorNode.Constant.TRUE, kind)) {
+            return SelectorNode.Constant.TRUE;
+        }
+        if (terms.isEmpty()) {
+            return SelectorNode.Constant.FALSE;
+        }
+        if (terms.size() == 1) {
+            return terms.iterator().next();
+        }
+        final var orNode = new SelectorNode.Or();
+        orNode.subNodes.addAll(terms);
+        return orNode;
+    }
+
+    /**
+     * @param terms    the sub nodes of an {@code &} or {@code |} node, ending with the deciding constant if there is any
+     * @param decision the constant that decides the result, {@code false} for {@code &} and {@code true} for {@code |}
+     * @param kind     the kind of the objects the terms are evaluated for
+     * @return {@code true} if the node can be replaced by the deciding constant, because there is the constant or
+     * complementary terms among the terms, and none of the terms can fail
+     */
+    private boolean isDecided(Collection<SelectorNode> terms, SelectorNode.Constant decision, Class<?> kind) {
+        return (terms.contains(decision) || hasComplementary(terms)) && areTotal(terms, kind);
+    }
+
+    /**
+     * @param terms the sub nodes of an {@code &} or {@code |} node
+     * @return {@code true} if there is a term {@code X} and also a term {@code !X} among the terms
+     */
+    private static boolean hasComplementary(Collection<SelectorNode> terms) {
+        for (final var term : terms) {
+            if (term instanceof SelectorNode.Not && terms.contains(((SelectorNode.Not) term).subNode)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean areTotal(Collection<SelectorNode> nodes, Class<?> kind) {
+        for (final var node : nodes) {
+            if (!isTotal(node, kind)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param node the node to check
+     * @param kind the kind of the objects the node is evaluated for
+     * @return {@code true} if the node, including all its sub nodes, can be evaluated for all objects of the kind
+     */
+    private boolean isTotal(SelectorNode node, Class<?> kind) {
+        if (node instanceof SelectorNode.Constant) {
+            return true;
+        }
+        if (node instanceof SelectorNode.Not) {
+            return isTotal(((SelectorNode.Not) node).subNode, kind);
+        }
+        if (node instanceof SelectorNode.And) {
+            return areTotal(((SelectorNode.And) node).subNodes, kind);
+        }
+        if (node instanceof SelectorNode.Or) {
+            return areTotal(((SelectorNode.Or) node).subNodes, kind);
+        }
+        if (node instanceof SelectorNode.Converted) {
+            return applicability.isTotal(node, kind)
+                && isTotal(((SelectorNode.Converted) node).subNode, applicability.resultKind(node));
+        }
+        if (node instanceof SelectorNode.Quantified) {
+            return applicability.isTotal(node, kind)
+                && isTotal(((SelectorNode.Quantified) node).subNode, applicability.resultKind(node));
+        }
+        return applicability.isTotal(node, kind);
+    }
+}
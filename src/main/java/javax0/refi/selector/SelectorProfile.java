@@ -0,0 +1,396 @@
+package javax0.refi.selector;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A profiling evaluator of a selector created by {@link Selector#profile()}.
+ * <p>
+ * The profile matches the objects the same way as the selector, and it counts for each node of the evaluated
+ * expression how many times it was evaluated, how many times it was {@code true} and how much time the evaluation
+ * took, including the sub nodes. For the {@code &} and {@code |} nodes it also shows how often the evaluation stopped
+ * before the last sub node. The counting makes the evaluation slower, use the profile only to find out which part of
+ * an expression is expensive, and use the selector otherwise.
+ * <p>
+ * The nodes are listed in the order they are evaluated, the sub nodes of a node following the node. The {@code
+ * toString()} of the profile is a readable report of the nodes.
+ */
+public final class SelectorProfile {
+
+    /**
+     * The expected cost of evaluating a node for one object, from the cheapest to the most expensive. The cost of an
+     * {@code &}, {@code |} or {@code !} node is the cost of its most expensive sub node.
+     */
+    public enum Cost {
+        /**
+         * The value is known without evaluation, like {@code true}.
+         */
+        CONSTANT,
+        /**
+         * A check of the modifiers, like {@code public} or {@code static}.
+         */
+        MODIFIER,
+        /**
+         * A condition calling a simple reflective method, or a condition defined by the user.
+         */
+        TEST,
+        /**
+         * A regular expression matched against a name, like {@code name ~ /.../}.
+         */
+        REGEX,
+        /**
+         * A condition reading the annotations of the object.
+         */
+        ANNOTATION,
+        /**
+         * A condition building the signature of a method.
+         */
+        SIGNATURE,
+        /**
+         * A condition walking the class hierarchy, like {@code overrides} or {@code inheritedAnnotation ~ /.../}.
+         */
+        HIERARCHY,
+        /**
+         * An aggregate evaluating its condition for several related objects, like {@code methods -> any(...)}.
+         */
+        AGGREGATE
+    }
+
+    /**
+     * The statistics of the nodes wrapped already, whose parent node was not wrapped yet.
+     */
+    private final Deque<Statistics> wrapped = new ArrayDeque<>();
+    private final Selector<?> selector;
+    private final Evaluator evaluator;
+    private Statistics root;
+
+    /**
+     * The counters of a position in the evaluated expression. The equal sub expressions are the same node object, and
+     * the same node can be at several positions, therefore the counters belong to the position and not to the node.
+     */
+    private static final class Statistics {
+        private final SelectorNode node;
+        private final List<Statistics> subs;
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder matched = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private Statistics(SelectorNode node, List<Statistics> subs) {
+            this.node = node;
+            this.subs = subs;
+        }
+    }
+
+    /**
+     * @param selector the selector to profile
+     * @param builder  builds the evaluator of the selector using the probe
+     */
+    SelectorProfile(Selector<?> selector, Function<EvaluatorBuilder.Probe, Evaluator> builder) {
+        this.selector = selector;
+        this.evaluator = builder.apply(this::probe);
+    }
+
+    /**
+     * Wrap the evaluator of a node to count the evaluations. The nodes are wrapped after their sub nodes, the last
+     * node wrapped is the top node of the expression. The statistics of the sub nodes are the last ones wrapped.
+     */
+    private Evaluator.Node probe(SelectorNode node, Evaluator.Node evaluator) {
+        final var subNodes = subNodes(node);
+        final var subs = new ArrayList<Statistics>();
+        for (var i = subNodes.size() - 1; i >= 0 && !wrapped.isEmpty() && wrapped.peek().node == subNodes.get(i); i--) {
+            subs.add(0, wrapped.pop());
+        }
+        final var stats = new Statistics(node, subs);
+        wrapped.push(stats);
+        root = stats;
+        return (m, frame) -> {
+            final var start = System.nanoTime();
+            final var result = evaluator.test(m, frame);
+            stats.nanos.add(System.nanoTime() - start);
+            stats.invocations.increment();
+            if (result) {
+                stats.matched.increment();
+            }
+            return result;
+        };
+    }
+
+    /**
+     * The same as {@link Selector#match(Object)} counting the evaluations.
+     *
+     * @param member the member to check
+     * @return {@code true} if the member matches the expression
+     */
+    public boolean match(Object member) {
+        return evaluator.test(member);
+    }
+
+    public Predicate<Object> predicate() {
+        return this::match;
+    }
+
+    /**
+     * @return the nodes of the evaluated expression and their counters at the time of the call
+     */
+    public List<Node> nodes() {
+        final var nodes = new ArrayList<Node>();
+        if (root != null) {
+            collect(root, 0, nodes);
+        }
+        return Collections.unmodifiableList(nodes);
+    }
+
+    private void collect(Statistics stats, int depth, List<Node> nodes) {
+        final var node = stats.node;
+        final var subs = stats.subs;
+        final var last = subs.isEmpty() ? null : subs.get(subs.size() - 1);
+        final var shortCircuited = node instanceof SelectorNode.And || node instanceof SelectorNode.Or
+            ? stats.invocations.sum() - (last == null ? 0 : last.invocations.sum()) : 0;
+        nodes.add(new Node(node.toString(), label(node), depth, cost(selector, node),
+            stats.invocations.sum(), stats.matched.sum(), stats.nanos.sum(), shortCircuited));
+        for (final var sub : subs) {
+            collect(sub, depth + 1, nodes);
+        }
+    }
+
+    /**
+     * The counters of a node of the expression.
+     */
+    public static final class Node {
+        private final String expression;
+        private final String label;
+        private final int depth;
+        private final Cost cost;
+        private final long invocations;
+        private final long matched;
+        private final long nanos;
+        private final long shortCircuited;
+
+        private Node(String expression, String label, int depth, Cost cost, long invocations, long matched,
+                     long nanos, long shortCircuited) {
+            this.expression = expression;
+            this.label = label;
+            this.depth = depth;
+            this.cost = cost;
+            this.invocations = invocations;
+            this.matched = matched;
+            this.nanos = nanos;
+            this.shortCircuited = shortCircuited;
+        }
+
+        /**
+         * @return the node and its sub nodes as an expression
+         */
+        public String expression() {
+            return expression;
+        }
+
+        /**
+         * @return the operator of the node, like {@code &} or {@code declaringClass ->}, or the expression for a
+         * condition
+         */
+        public String label() {
+            return label;
+        }
+
+        /**
+         * @return the depth of the node, zero for the top node
+         */
+        public int depth() {
+            return depth;
+        }
+
+        public Cost cost() {
+            return cost;
+        }
+
+        /**
+         * @return the number of times the node was evaluated
+         */
+        public long invocations() {
+            return invocations;
+        }
+
+        /**
+         * @return the number of times the node was {@code true}
+         */
+        public long matched() {
+            return matched;
+        }
+
+        /**
+         * @return the time the evaluations of the node took, including the sub nodes
+         */
+        public long nanos() {
+            return nanos;
+        }
+
+        /**
+         * @return the ratio of the evaluations of an {@code &} or {@code |} node that did not evaluate the last sub
+         * node, zero for the other nodes
+         */
+        public double shortCircuitRate() {
+            return invocations == 0 ? 0 : (double) shortCircuited / invocations;
+        }
+
+        @Override
+        public String toString() {
+            return "  ".repeat(depth) + label + " [" + cost + "] invocations=" + invocations
+                + " matched=" + percent(invocations == 0 ? 0 : (double) matched / invocations)
+                + (shortCircuited > 0 ? " shortCircuit=" + percent(shortCircuitRate()) : "")
+                + " time=" + String.format(Locale.ROOT, "%.3fms", nanos / 1e6);
+        }
+
+        private static String percent(double ratio) {
+            return String.format(Locale.ROOT, "%.1f%%", ratio * 100);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final var sb = new StringBuilder();
+        for (final var node : nodes()) {
+            sb.append(node).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Describe the node and its sub nodes one node per line, indented by the depth.
+     *
+     * @param selector the selector the node belongs to
+     * @param node     the top node
+     * @return the description
+     */
+    static String explain(Selector<?> selector, SelectorNode node) {
+        final var sb = new StringBuilder();
+        explain(selector, node, 0, sb);
+        return sb.toString();
+    }
+
+    private static void explain(Selector<?> selector, SelectorNode node, int depth, StringBuilder sb) {
+        sb.append("  ".repeat(depth)).append(label(node)).append(" [").append(cost(selector, node)).append("]\n");
+        for (final var sub : subNodes(node)) {
+            explain(selector, sub, depth + 1, sb);
+        }
+    }
+
+    private static List<SelectorNode> subNodes(SelectorNode node) {
+        if (node instanceof SelectorNode.And) {
+            return new ArrayList<>(((SelectorNode.And) node).subNodes);
+        }
+        if (node instanceof SelectorNode.Or) {
+            return new ArrayList<>(((SelectorNode.Or) node).subNodes);
+        }
+        if (node instanceof SelectorNode.Not) {
+            return List.of(((SelectorNode.Not) node).subNode);
+        }
+        if (node instanceof SelectorNode.Converted) {
+            return List.of(((SelectorNode.Converted) node).subNode);
+        }
+        if (node instanceof SelectorNode.Quantified) {
+            return List.of(((SelectorNode.Quantified) node).subNode);
+        }
+        return List.of();
+    }
+
+    private static String label(SelectorNode node) {
+        if (node instanceof SelectorNode.And) {
+            return "&";
+        }
+        if (node instanceof SelectorNode.Or) {
+            return "|";
+        }
+        if (node instanceof SelectorNode.Not) {
+            return "!";
+        }
+        if (node instanceof SelectorNode.Converted) {
+            return ((SelectorNode.Converted) node).converter + " ->";
+        }
+        if (node instanceof SelectorNode.Quantified) {
+            final var quantified = (SelectorNode.Quantified) node;
+            final var quantifier = quantified.quantifier();
+            if (quantifier != null) {
+                return quantifier + " ->";
+            }
+            return quantified.elements + " -> " + quantified.aggregate
+                + (quantified.aggregate == SelectorNode.Quantified.Aggregate.COUNT
+                ? " " + quantified.comparison.symbol + " " + quantified.limit : "");
+        }
+        return node.toString();
+    }
+
+    private static final Set<String> ANNOTATION_SELECTORS = Set.of("annotation", "metaAnnotation");
+    private static final Set<String> HIERARCHY_SELECTORS = Set.of("overrides", "implements", "inheritedAnnotation");
+
+    /**
+     * @param selector the selector the node belongs to, it tells which selectors are the built-in ones
+     * @param node     the node
+     * @return the expected cost of the evaluation of the node
+     */
+    static Cost cost(Selector<?> selector, SelectorNode node) {
+        if (node instanceof SelectorNode.Constant) {
+            return Cost.CONSTANT;
+        }
+        if (node instanceof SelectorNode.And) {
+            return max(selector, ((SelectorNode.And) node).subNodes);
+        }
+        if (node instanceof SelectorNode.Or) {
+            return max(selector, ((SelectorNode.Or) node).subNodes);
+        }
+        if (node instanceof SelectorNode.Not) {
+            return cost(selector, ((SelectorNode.Not) node).subNode);
+        }
+        if (node instanceof SelectorNode.Converted) {
+            final var sub = cost(selector, ((SelectorNode.Converted) node).subNode);
+            return sub.compareTo(Cost.TEST) > 0 ? sub : Cost.TEST;
+        }
+        if (node instanceof SelectorNode.Quantified) {
+            return Cost.AGGREGATE;
+        }
+        if (node instanceof SelectorNode.Attribute) {
+            return Cost.ANNOTATION;
+        }
+        if (node instanceof SelectorNode.Regex) {
+            final var name = ((SelectorNode.Regex) node).name;
+            if (!selector.isBuiltInRegexSelector(name)) {
+                return Cost.REGEX;
+            }
+            if (ANNOTATION_SELECTORS.contains(name)) {
+                return Cost.ANNOTATION;
+            }
+            if (HIERARCHY_SELECTORS.contains(name)) {
+                return Cost.HIERARCHY;
+            }
+            return "signature".equals(name) ? Cost.SIGNATURE : Cost.REGEX;
+        }
+        if (node instanceof SelectorNode.Terminal) {
+            final var name = ((SelectorNode.Terminal) node).terminal;
+            if (selector.modifierTest(name) != null) {
+                return Cost.MODIFIER;
+            }
+            return HIERARCHY_SELECTORS.contains(name) ? Cost.HIERARCHY : Cost.TEST;
+        }
+        return Cost.TEST;
+    }
+
+    private static Cost max(Selector<?> selector, Collection<SelectorNode> nodes) {
+        var max = Cost.CONSTANT;
+        for (final var node : nodes) {
+            final var cost = cost(selector, node);
+            if (cost.compareTo(max) > 0) {
+                max = cost;
+            }
+        }
+        return max;
+    }
+}
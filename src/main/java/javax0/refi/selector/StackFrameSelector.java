@@ -0,0 +1,113 @@
+package javax0.refi.selector;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Executable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Selects the frames of the stack of the current thread, whose method or constructor matches a selector, created by
+ * {@link Selector#stackFrames()} or {@link MemoizedSelector#stackFrames()}. For example,
+ *
+ * <pre>{@code
+ * final var audited = Selector.compile("declaringClass -> annotation ~ /Audited/").stackFrames();
+ * final var callers = audited.frames(3);
+ * }</pre>
+ * <p>
+ * The stack is walked with a {@link StackWalker} lazily, from the caller of the method of this class towards the
+ * bottom of the stack, and the walk stops when the requested number of frames were found. The frames below the last
+ * match are not even created.
+ * <p>
+ * The selector matches the {@link java.lang.reflect.Method Method} or {@link java.lang.reflect.Constructor Constructor}
+ * of the frame. The member is found by the declaring class, the name and the descriptor of the frame. The members of a
+ * class are looked up once, when a frame of the class is seen the first time, and they are stored in a {@link
+ * ClassValue}, which does not prevent the unloading of the classes. The frames of the static initializers, and the
+ * frames of the classes whose members cannot be loaded are skipped. Use a {@link MemoizedSelector} when the same
+ * methods appear on the stack again and again, and there is no need to evaluate the expression for them each time.
+ */
+public final class StackFrameSelector {
+
+    private static final StackWalker WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    /**
+     * The methods and constructors of the classes by the name and the descriptor, like {@code
+     * toString()Ljava/lang/String;} or {@code <init>(I)V}.
+     */
+    private static final ClassValue<Map<String, Executable>> EXECUTABLES = new ClassValue<>() {
+        @Override
+        protected Map<String, Executable> computeValue(Class<?> type) {
+            final var executables = new HashMap<String, Executable>();
+            try {
+                for (final var method : type.getDeclaredMethods()) {
+                    executables.put(key(method.getName(), MethodType.methodType(method.getReturnType(),
+                        method.getParameterTypes())), method);
+                }
+                for (final var constructor : type.getDeclaredConstructors()) {
+                    executables.put(key("<init>", MethodType.methodType(void.class,
+                        constructor.getParameterTypes())), constructor);
+                }
+            } catch (LinkageError e) {
+                return Map.of();
+            }
+            return Collections.unmodifiableMap(executables);
+        }
+    };
+
+    private final Predicate<Object> predicate;
+
+    StackFrameSelector(Predicate<Object> predicate) {
+        this.predicate = predicate;
+    }
+
+    private static String key(String name, MethodType type) {
+        return name + type.toMethodDescriptorString();
+    }
+
+    /**
+     * @param frame the stack frame
+     * @return the method or constructor the frame is executing, or {@code null} if it cannot be found, like for a
+     * static initializer
+     */
+    static Executable executable(StackWalker.StackFrame frame) {
+        return EXECUTABLES.get(frame.getDeclaringClass()).get(frame.getMethodName() + frame.getDescriptor());
+    }
+
+    /**
+     * @param limit the maximum number of frames to return
+     * @return the matching frames, starting with the caller of this method, at most {@code limit}
+     */
+    public List<StackWalker.StackFrame> frames(int limit) {
+        return WALKER.walk(frames -> selected(frames).limit(limit).collect(Collectors.toList()));
+    }
+
+    /**
+     * @param limit the maximum number of members to return
+     * @return the methods and constructors of the matching frames, starting with the caller of this method, at most
+     * {@code limit}. The same member is listed more than once if it is on the stack more than once.
+     */
+    public List<Executable> members(int limit) {
+        return WALKER.walk(frames -> selected(frames).limit(limit).map(StackFrameSelector::executable)
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * @return the first matching frame, starting with the caller of this method
+     */
+    public Optional<StackWalker.StackFrame> first() {
+        return WALKER.walk(frames -> selected(frames).findFirst());
+    }
+
+    private Stream<StackWalker.StackFrame> selected(Stream<StackWalker.StackFrame> frames) {
+        return frames.dropWhile(frame -> frame.getDeclaringClass() == StackFrameSelector.class)
+            .filter(frame -> {
+                final var executable = executable(frame);
+                return executable != null && predicate.test(executable);
+            });
+    }
+}
@@ -1,3 +1,6 @@
 module refi {
+    requires static transitive java.management;
+    requires static jdk.jfr;
+    requires static transitive java.compiler;
     exports javax0.refi.selector;
-}
\ No newline at end of file
+}
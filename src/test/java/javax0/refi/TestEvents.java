@@ -0,0 +1,95 @@
+package javax0.refi;
+
+import javax0.refi.selector.Selector;
+import javax0.refi.selector.SelectorIndex;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestEvents {
+
+    public static class Target {
+        public int answer() {
+            return 42;
+        }
+    }
+
+    private static List<RecordedEvent> record(Runnable action) throws Exception {
+        final var file = Files.createTempFile("refi", ".jfr");
+        try (final var recording = new Recording()) {
+            for (final var name : List.of("Compile", "Match", "Catalog", "InvocationLookup")) {
+                recording.enable("javax0.refi." + name);
+            }
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<RecordedEvent> events(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals("javax0.refi." + name))
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("Compiling, indexing, selecting and invoking are recorded")
+    void testEvents() throws Exception {
+        final var expression = "public & name ~ /^testEvents" + System.nanoTime() + "$/";
+        final var events = record(() -> {
+            Selector.compile(expression);
+            Selector.compile(expression);
+            SelectorIndex.of(List.of(Target.class)).select("name ~ /^answer$/").forEach(m -> {
+            });
+            Utilities.Fields.getAll(Target.class);
+            Invoker.call("answer").on(new Target()).args();
+            assertThrows(IllegalArgumentException.class, () -> Invoker.call("question").on(new Target()).args());
+        });
+
+        final var compiles = new ArrayList<RecordedEvent>();
+        for (final var event : events(events, "Compile")) {
+            if (event.getString("expression").equals(expression)) {
+                compiles.add(event);
+            }
+        }
+        assertEquals(1, compiles.size());
+        assertEquals(Object.class.getName(), compiles.get(0).<RecordedClass>getValue("kind").getName());
+        assertFalse(compiles.get(0).getBoolean("lenient"));
+
+        final var members = 1 + Target.class.getDeclaredMethods().length + Target.class.getDeclaredFields().length
+            + Target.class.getDeclaredConstructors().length;
+        final var matches = events(events, "Match");
+        assertEquals(1, matches.size());
+        assertEquals("name ~ /^answer$/", matches.get(0).getString("expression"));
+        assertEquals(1, matches.get(0).getInt("selected"));
+        assertEquals(members, matches.get(0).getInt("members"));
+
+        final var catalogs = events(events, "Catalog").stream()
+            .map(e -> e.getString("catalog") + ":" + e.getInt("classes") + ":" + e.getInt("members"))
+            .collect(Collectors.toList());
+        assertTrue(catalogs.contains("index:1:" + members), catalogs.toString());
+        assertTrue(catalogs.contains("Fields.getAll:2:" + Utilities.Fields.getAll(Target.class).count()),
+            catalogs.toString());
+
+        final var lookups = events(events, "InvocationLookup").stream()
+            .map(e -> e.<RecordedClass>getValue("type").getName() + "." + e.getString("method") + ":" + e.getBoolean("found"))
+            .collect(Collectors.toList());
+        assertEquals(List.of(Target.class.getName() + ".answer:true", Target.class.getName() + ".question:false"), lookups);
+    }
+}
@@ -0,0 +1,50 @@
+package javax0.refi;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class TestUtilities {
+
+    @Test
+    @DisplayName("Class names, primitives, java.lang names and arrays are resolved")
+    void testForName() {
+        assertEquals(Optional.of(int.class), Utilities.Classes.forName("int"));
+        assertEquals(Optional.of(String.class), Utilities.Classes.forName("String"));
+        assertEquals(Optional.of(Map.class), Utilities.Classes.forName("java.util.Map"));
+        assertEquals(Optional.of(int[][].class), Utilities.Classes.forName("int[][]"));
+        assertEquals(Optional.of(String[].class), Utilities.Classes.forName("String[]"));
+        assertEquals(Optional.of(TestUtilities[][][].class), Utilities.Classes.forName("javax0.refi.TestUtilities[][][]"));
+        assertEquals(Optional.empty(), Utilities.Classes.forName("no.such.Klass"));
+        assertEquals(Optional.empty(), Utilities.Classes.forName("no.such.Klass[]"));
+        assertEquals(Optional.empty(), Utilities.Classes.forName("[]"));
+    }
+
+    @Test
+    @DisplayName("Resolved names are cached for each class loader")
+    void testForNameCached() {
+        final var loader = TestUtilities.class.getClassLoader();
+        assertSame(Utilities.Classes.forName("java.util.List", loader).orElseThrow(),
+            Utilities.Classes.forName("java.util.List", loader).orElseThrow());
+        assertEquals(Optional.empty(), Utilities.Classes.forName("no.such.Klass", loader));
+        Utilities.Classes.release(loader);
+        assertEquals(Optional.empty(), Utilities.Classes.forName("no.such.Klass", loader));
+        assertEquals(Optional.of(List.class), Utilities.Classes.forName("java.util.List", null));
+    }
+
+    @Test
+    @DisplayName("Many names are resolved at once")
+    void testForNames() {
+        final var classes = Utilities.Classes.forNames(List.of("long[]", "Integer", "no.such.Klass", "Integer"));
+        assertEquals(List.of("long[]", "Integer", "no.such.Klass"), List.copyOf(classes.keySet()));
+        assertEquals(Optional.of(long[].class), classes.get("long[]"));
+        assertEquals(Optional.of(Integer.class), classes.get("Integer"));
+        assertEquals(Optional.empty(), classes.get("no.such.Klass"));
+    }
+}
@@ -0,0 +1,171 @@
+package javax0.refi.selector;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestCompiledSelectorProcessor {
+
+    private static final String RULES = "package rules;\n" +
+        "import javax0.refi.selector.CompiledSelector;\n" +
+        "import java.lang.reflect.*;\n" +
+        "public class Rules {\n" +
+        "    @CompiledSelector(kind = Field.class)\n" +
+        "    static final String INHERITED_FIELD = \"!static & !private\";\n" +
+        "    @CompiledSelector(kind = Method.class)\n" +
+        "    static final String PACKAGE_OR_SYNTHETIC = \"package | synthetic | !!native\";\n" +
+        "    @CompiledSelector(kind = Method.class)\n" +
+        "    static final String GETTER = \"public & name ~ /^get\\\\w/ & !returns ~ /void/\";\n" +
+        "    @CompiledSelector\n" +
+        "    static final String ANYTHING = \"public | static\";\n" +
+        "    public static abstract class Named implements Member {\n" +
+        "    }\n" +
+        "    @CompiledSelector(kind = Named.class)\n" +
+        "    static final String NAMED = \"public & name ~ /^get/ | declaringClass -> final\";\n" +
+        "}\n";
+
+    private static final class Source extends SimpleJavaFileObject {
+        private final String code;
+
+        private Source(String className, String code) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    /**
+     * Compile the source with the processor.
+     *
+     * @return the diagnostics of the compilation, errors only
+     */
+    private static List<Diagnostic<? extends JavaFileObject>> compile(String className, String code, Path output) throws Exception {
+        final var compiler = ToolProvider.getSystemJavaCompiler();
+        final var diagnostics = new DiagnosticCollector<JavaFileObject>();
+        final var classPath = Path.of(Selector.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        final var task = compiler.getTask(null, null, diagnostics,
+            List.of("-classpath", classPath.toString(), "-d", output.toString(), "-s", output.toString()),
+            null, List.of(new Source(className, code)));
+        task.setProcessors(List.of(new CompiledSelectorProcessor()));
+        task.call();
+        return diagnostics.getDiagnostics().stream().filter(d -> d.getKind() == Diagnostic.Kind.ERROR)
+            .collect(Collectors.toList());
+    }
+
+    private static void delete(Path directory) throws Exception {
+        try (final var files = Files.walk(directory)) {
+            for (final var file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static List<Member> members() {
+        final var members = new ArrayList<Member>();
+        for (final var type : List.of(String.class, Thread.class, File.class, Member.class, TestCompiledSelectorProcessor.class)) {
+            members.addAll(List.of(type.getDeclaredFields()));
+            members.addAll(List.of(type.getDeclaredMethods()));
+        }
+        return members;
+    }
+
+    @Test
+    @DisplayName("The generated predicates match the same as the selectors")
+    void testGenerated() throws Exception {
+        final var output = Files.createTempDirectory("refi");
+        try {
+            assertEquals(List.of(), compile("rules.Rules", RULES, output));
+            final var generated = Files.readString(output.resolve("rules/Rules_CompiledSelectors.java"));
+            assertTrue(generated.contains("INHERITED_FIELD = m -> {"), generated);
+            assertTrue(generated.contains("PACKAGE_OR_SYNTHETIC = m -> {"), generated);
+            assertTrue(generated.contains("GETTER = m -> {"), generated);
+            assertTrue(generated.contains("GETTER$0 =\n        javax0.refi.selector.Selector.compile(\"name ~ /^get\\\\w/\""),
+                generated);
+            assertTrue(generated.contains("return (java.lang.reflect.Modifier.isPublic(modifiers) && GETTER$0.test(m)"
+                + " && !GETTER$1.test(m));"), generated);
+            assertTrue(generated.contains("ANYTHING = m -> (ANYTHING$0.test(m) || ANYTHING$1.test(m));"), generated);
+            assertTrue(generated.contains("Predicate<rules.Rules.Named> NAMED = m -> {"), generated);
+            assertTrue(generated.contains("Selector.compile(\"declaringClass -> final\", rules.Rules.Named.class)"),
+                generated);
+            try (final var loader = new URLClassLoader(new java.net.URL[]{output.toUri().toURL()},
+                TestCompiledSelectorProcessor.class.getClassLoader())) {
+                final var rules = loader.loadClass("rules.Rules_CompiledSelectors");
+                assertMatchesSame(rules, "INHERITED_FIELD", "!static & !private", Field.class);
+                assertMatchesSame(rules, "PACKAGE_OR_SYNTHETIC", "package | synthetic | !!native", Method.class);
+                assertMatchesSame(rules, "GETTER", "public & name ~ /^get\\w/ & !returns ~ /void/", Method.class);
+                assertMatchesSame(rules, "ANYTHING", "public | static", Object.class);
+                assertTrue(rules.getField("NAMED").get(null) instanceof Predicate);
+            }
+        } finally {
+            delete(output);
+        }
+    }
+
+    private static void assertMatchesSame(Class<?> rules, String name, String expression, Class<?> kind) throws Exception {
+        @SuppressWarnings("unchecked") final var predicate = (Predicate<Object>) rules.getField(name).get(null);
+        final var selector = Selector.compile(expression, kind);
+        final var members = members().stream().filter(kind::isInstance).collect(Collectors.toList());
+        assertFalse(members.isEmpty());
+        for (final var member : members) {
+            assertEquals(selector.match(member), predicate.test(member), name + " " + member);
+        }
+    }
+
+    @Test
+    @DisplayName("Invalid expressions and misplaced annotations fail the compilation")
+    void testErrors() throws Exception {
+        final var output = Files.createTempDirectory("refi");
+        try {
+            final var errors = compile("rules.Wrong", "package rules;\n" +
+                "import javax0.refi.selector.CompiledSelector;\n" +
+                "import java.lang.reflect.*;\n" +
+                "public class Wrong {\n" +
+                "    @CompiledSelector(kind = Method.class)\n" +
+                "    static final String VOLATILE = \"volatile\";\n" +
+                "    @CompiledSelector\n" +
+                "    static final String SYNTAX = \"public &\";\n" +
+                "    @CompiledSelector\n" +
+                "    static String NOT_CONSTANT = \"public\";\n" +
+                "    static class Worker extends Thread {\n" +
+                "    }\n" +
+                "    @CompiledSelector(kind = Worker.class)\n" +
+                "    static final String KIND = \"volatile\";\n" +
+                "}\n", output);
+            assertEquals(4, errors.size(), errors.toString());
+            final var messages = errors.stream().map(e -> e.getMessage(null)).collect(Collectors.joining("\n"));
+            assertTrue(messages.contains("volatile"), messages);
+            assertTrue(messages.contains("@CompiledSelector has to annotate a static final String constant"), messages);
+            assertTrue(messages.contains("'volatile' cannot be applied to java.lang.Thread"), messages);
+            assertEquals(4, errors.stream().map(Diagnostic::getLineNumber).distinct().count(), messages);
+            assertFalse(Files.exists(output.resolve("rules/Wrong_CompiledSelectors.java")));
+        } finally {
+            delete(output);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package javax0.refi.selector;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestElementSelector {
+
+    private static final String SOURCE = "package sut;\n" +
+        "import java.io.Serializable;\n" +
+        "@Deprecated\n" +
+        "public class Sut extends Base implements Serializable, Comparable<Sut> {\n" +
+        "    public static final int CONSTANT = 1;\n" +
+        "    private transient String name;\n" +
+        "    protected volatile long counter;\n" +
+        "    java.util.List<String> items;\n" +
+        "    public Sut() {}\n" +
+        "    Sut(int x) {}\n" +
+        "    public String getName() { return name; }\n" +
+        "    public static synchronized void update(String... values) {}\n" +
+        "    @Deprecated protected int[] values() throws java.io.IOException { return null; }\n" +
+        "    public int compareTo(Sut o) { return 0; }\n" +
+        "    private void hidden() {}\n" +
+        "    public static class Nested {}\n" +
+        "    interface Marker {}\n" +
+        "}\n" +
+        "class Base {\n" +
+        "    public void inherited() {}\n" +
+        "}\n";
+
+    private static final List<String> EXPRESSIONS = List.of(
+        "public", "private", "package", "protected", "static", "final", "abstract",
+        "transient", "volatile", "synchronized", "vararg", "void",
+        "name ~ /^get/", "returns ~ /String/", "throws ~ /IOException/",
+        "annotation ~ /Deprecated/", "annotated", "class", "interface", "member", "array", "primitive",
+        "extends", "superClass -> name ~ /Base/", "implements", "implements ~ /Serializable/", "simpleName ~ /^Nested$/",
+        "declaringClass -> annotation ~ /Deprecated/", "type -> name ~ /String/", "returnType -> simpleName ~ /String/",
+        "anySuper -> name ~ /Base/", "anyInterface -> name ~ /Comparable/", "declaredMethods -> count(public) > 2",
+        "methods -> any(name ~ /^inherited$/)", "declaredFields -> any(volatile)",
+        "public & !static | private & (transient | void)", "!(static | final) & package");
+
+    @SupportedAnnotationTypes("*")
+    private static final class Matcher extends AbstractProcessor {
+        private final Map<String, Set<String>> matches = new LinkedHashMap<>();
+        private boolean rejected;
+        private boolean marked;
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            for (final var root : roundEnv.getRootElements()) {
+                if (root.getSimpleName().contentEquals("Sut")) {
+                    final var elements = new ArrayList<Element>();
+                    elements.add(root);
+                    elements.addAll(root.getEnclosedElements());
+                    for (final var expression : EXPRESSIONS) {
+                        final var selector = ElementSelector.compileLenient(expression);
+                        matches.put(expression, elements.stream().filter(selector.predicate())
+                            .map(Matcher::key).collect(Collectors.toCollection(TreeSet::new)));
+                    }
+                    try {
+                        ElementSelector.compile("volatile").match(root);
+                    } catch (IllegalArgumentException e) {
+                        rejected = true;
+                    }
+                    marked = ElementSelector.compile("marked & public")
+                        .selector("marked", e -> e.getSimpleName().contentEquals("Sut")).match(root);
+                }
+            }
+            return false;
+        }
+
+        private static String key(Element element) {
+            if (element instanceof TypeElement) {
+                return ElementFunctions.binaryName((TypeElement) element);
+            }
+            if (element.getKind() == ElementKind.CONSTRUCTOR) {
+                return "new" + ((javax.lang.model.element.ExecutableElement) element).getParameters().size();
+            }
+            return element.getSimpleName().toString();
+        }
+    }
+
+    private static String key(Object member) {
+        if (member instanceof Class) {
+            return ((Class<?>) member).getName();
+        }
+        if (member instanceof Constructor) {
+            return "new" + ((Constructor<?>) member).getParameterCount();
+        }
+        return ((Member) member).getName();
+    }
+
+    private static final class Source extends SimpleJavaFileObject {
+        private Source() {
+            super(URI.create("string:///sut/Sut.java"), Kind.SOURCE);
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return SOURCE;
+        }
+    }
+
+    @Test
+    @DisplayName("Element selectors match the elements the same way as the selectors match the compiled members")
+    void testSameAsReflection() throws Exception {
+        final var output = Files.createTempDirectory("refi");
+        try {
+            final var matcher = new Matcher();
+            final var task = ToolProvider.getSystemJavaCompiler().getTask(null, null, null,
+                List.of("-d", output.toString()), null, List.of(new Source()));
+            task.setProcessors(List.of(matcher));
+            assertTrue(task.call());
+            assertEquals(EXPRESSIONS.size(), matcher.matches.size());
+            assertTrue(matcher.rejected, "strict selector accepted 'volatile' on a class");
+            assertTrue(matcher.marked);
+            try (final var loader = new URLClassLoader(new URL[]{output.toUri().toURL()}, null)) {
+                final var sut = loader.loadClass("sut.Sut");
+                final var members = Stream.of(List.of(sut), List.of(sut.getDeclaredFields()),
+                        List.of(sut.getDeclaredConstructors()), List.of(sut.getDeclaredMethods()),
+                        List.of(sut.getDeclaredClasses())).flatMap(List::stream)
+                    .filter(m -> m instanceof Class || !((Member) m).isSynthetic())
+                    .collect(Collectors.toList());
+                for (final var expression : EXPRESSIONS) {
+                    final var selector = Selector.compileLenient(expression);
+                    final var expected = members.stream().filter(selector::match).map(TestElementSelector::key)
+                        .collect(Collectors.toCollection(TreeSet::new));
+                    assertFalse(expected.isEmpty(), expression);
+                    assertEquals(expected, matcher.matches.get(expression), expression);
+                }
+            }
+        } finally {
+            try (final var files = Files.walk(output)) {
+                for (final var file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package javax0.refi.selector;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestMemoizedSelector {
+
+    public static class Target {
+        public int counter;
+
+        public Target() {
+        }
+
+        public void a() {
+        }
+
+        private void b() {
+        }
+    }
+
+    @Test
+    @DisplayName("The memoized selector matches the same and evaluates each member only once")
+    void testMemoized() throws Exception {
+        final var counter = new int[1];
+        final var selector = Selector.compile("public & memoizedCounted");
+        selector.selectorRe("memoizedCounted", m -> {
+            counter[0]++;
+            return true;
+        });
+        final var memoized = selector.memoized();
+        final var members = new Object[]{Target.class, Target.class.getDeclaredField("counter"),
+            Target.class.getDeclaredConstructor(), Target.class.getDeclaredMethod("a"),
+            Target.class.getDeclaredMethod("b")};
+        for (final var member : members) {
+            assertEquals(selector.match(member), memoized.match(member));
+        }
+        counter[0] = 0;
+        for (final var member : members) {
+            assertEquals(selector.match(member), memoized.match(member));
+        }
+        assertEquals(4, counter[0]);
+        assertTrue(memoized.match(Target.class.getMethod("a")));
+        assertFalse(memoized.match(Target.class.getDeclaredMethod("b")));
+        assertEquals(4, counter[0]);
+    }
+
+    @Test
+    @DisplayName("Redefining a function forgets the remembered results")
+    void testInvalidation() throws Exception {
+        final var selector = Selector.compile("memoizedMarked");
+        selector.selectorRe("memoizedMarked", m -> true);
+        final var memoized = selector.memoized();
+        assertTrue(memoized.match(Target.class.getDeclaredMethod("a")));
+        selector.selectorRe("memoizedMarked", m -> false);
+        assertFalse(memoized.match(Target.class.getDeclaredMethod("a")));
+        assertTrue(Arrays.stream(Target.class.getDeclaredMethods()).noneMatch(memoized.predicate()));
+    }
+
+    @Test
+    @DisplayName("Objects that are not classes or members are matched every time")
+    void testNotMember() {
+        final var counter = new int[1];
+        final var selector = Selector.compile("memoizedObject");
+        selector.selectorRe("memoizedObject", m -> {
+            counter[0]++;
+            return true;
+        });
+        final var memoized = selector.memoized();
+        assertTrue(memoized.match("not a member"));
+        assertTrue(memoized.match("not a member"));
+        assertEquals(2, counter[0]);
+    }
+}
@@ -0,0 +1,131 @@
+package javax0.refi.selector;
+
+import javax0.refi.Invoker;
+import javax0.refi.Utilities;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMX;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The tests run twice. The default execution of the tests runs without metrics, the {@code metrics} execution in the
+ * {@code pom.xml} runs only this class with {@code refi.metrics=true}. The tests that need the metrics are skipped in
+ * the default execution.
+ */
+class TestMetrics {
+
+    private static long counter(String name) {
+        return Metrics.snapshot().counters().get(name);
+    }
+
+    private static long count(String latency) {
+        return Metrics.snapshot().latencies().get(latency).count();
+    }
+
+    @Test
+    @DisplayName("Metrics are enabled only in the metrics execution")
+    void testEnabled() {
+        assertEquals(Boolean.getBoolean("refi.metrics"), Metrics.isEnabled());
+    }
+
+    @Test
+    @DisplayName("Nothing is collected when the metrics are disabled")
+    void testDisabled() {
+        assumeFalse(Metrics.isEnabled());
+        final var expression = "public & name ~ /^testDisabled/";
+        final var selector = Selector.compile(expression);
+        Selector.compile(expression);
+        Arrays.stream(TestMetrics.class.getDeclaredMethods()).forEach(selector::match);
+        Utilities.Methods.getAll(TestMetrics.class);
+        Invoker.call("size").on(new ArrayList<>(List.of(1, 2))).args();
+        final var snapshot = Metrics.snapshot();
+        snapshot.counters().forEach((name, value) -> assertEquals(0L, value, name));
+        snapshot.latencies().forEach((name, latency) -> assertEquals(0L, latency.count(), name));
+        assertEquals(List.of(), snapshot.selectors());
+    }
+
+    @Test
+    @DisplayName("Compilations are counted as cache hits and misses")
+    void testCompile() {
+        assumeTrue(Metrics.isEnabled());
+        final var hits = counter("compileHits");
+        final var misses = counter("compileMisses");
+        final var compilations = count("compile");
+        final var expression = "name ~ /^testCompile" + System.nanoTime() + "$/";
+        Selector.compile(expression);
+        Selector.compile(expression);
+        Selector.compile(expression);
+        assertEquals(hits + 2, counter("compileHits"));
+        assertEquals(misses + 1, counter("compileMisses"));
+        assertEquals(compilations + 1, count("compile"));
+    }
+
+    @Test
+    @DisplayName("Matches are counted for each selector")
+    void testMatches() {
+        assumeTrue(Metrics.isEnabled());
+        final var expression = "public & name ~ /^testMatches/";
+        final var selector = Selector.compileLenient(expression, Method.class, false);
+        Arrays.stream(TestMetrics.class.getDeclaredMethods()).forEach(selector::match);
+        final var matches = Metrics.snapshot().selectors().stream()
+            .filter(m -> m.expression().equals(expression)).findFirst().orElseThrow();
+        assertEquals(Method.class, matches.kind());
+        assertTrue(matches.lenient());
+        assertEquals(TestMetrics.class.getDeclaredMethods().length, matches.tested());
+        assertEquals(1, matches.matched());
+        assertEquals(1.0 / matches.tested(), matches.matchRate());
+        assertEquals("java.lang.reflect.Method lenient:false:" + expression, matches.toString());
+    }
+
+    public void testMatchesTarget() {
+    }
+
+    @Test
+    @DisplayName("Lookups and invocations are timed")
+    void testLookups() {
+        assumeTrue(Metrics.isEnabled());
+        final var methods = count("methodsGetAll");
+        final var classes = count("classesForName");
+        final var invocations = counter("invocations");
+        final var lookups = count("invokeLookup");
+        Utilities.Methods.getAll(TestMetrics.class);
+        Utilities.Classes.forName("String");
+        Invoker.call("size").on(new ArrayList<>(List.of(1, 2))).args();
+        assertTrue(count("methodsGetAll") >= methods + 2);
+        assertEquals(classes + 1, count("classesForName"));
+        assertEquals(invocations + 1, counter("invocations"));
+        assertEquals(lookups + 1, count("invokeLookup"));
+        final var latency = Metrics.snapshot().latencies().get("invokeLookup");
+        assertTrue(latency.percentileNanos(99) <= latency.maxNanos());
+        assertTrue(latency.percentileNanos(0) <= latency.percentileNanos(50));
+        assertThrows(IllegalArgumentException.class, () -> latency.percentileNanos(101));
+    }
+
+    @Test
+    @DisplayName("Metrics are published through JMX")
+    void testMBean() throws Exception {
+        final var name = Metrics.registerMBean();
+        assertEquals(name, Metrics.registerMBean());
+        final var server = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(Metrics.isEnabled(), server.getAttribute(name, "Enabled"));
+        final var counters = server.getAttribute(name, "Counters");
+        assertTrue(counters instanceof TabularData);
+        final var proxy = JMX.newMXBeanProxy(server, name, MetricsMXBean.class);
+        final Map<String, Long> values = proxy.getCounters();
+        assertTrue(values.containsKey("compileHits"));
+        assertTrue(proxy.getLatencyCounts().containsKey("compile"));
+    }
+}
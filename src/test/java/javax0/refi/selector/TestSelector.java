@@ -5,6 +5,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInfo;
 
 import java.io.Serializable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.lang.reflect.Field;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
@@ -15,6 +17,9 @@ import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -587,5 +592,312 @@ class TestSelector {
     void testMethodReturnTypeIsNotVoid() throws NoSuchMethodException {
         assertFalse(Selector.compile("void").match(SUT_METHOD_INT));
     }
-}
 
+    @Test
+    @DisplayName("Selector compiled for a kind matches the objects of the kind")
+    void testKindSpecialized() {
+        assertTrue(Selector.compile("public & !static", Method.class).match(SUT_METHOD_PUBLIC));
+        assertFalse(Selector.compile("public & !static", Method.class).match(SUT_METHOD_STATIC));
+        assertTrue(Selector.compile("vararg & declaringClass -> simpleName ~ /^SutTarget/", Method.class).match(SUT_METHOD_VARARG));
+        assertTrue(Selector.compile("volatile & type -> primitive", Field.class).match(SUT_FIELD_VOLATILE));
+        assertTrue(Selector.compile("enclosingClass -> class", Class.class).match(SutTargetClass.X.class));
+        assertFalse(Selector.compile("superClass -> interface", Class.class).match(Object.class));
+    }
+
+    @Test
+    @DisplayName("Selector compiled for a kind rejects the conditions not applicable to the kind")
+    void testKindSpecializedRejects() {
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("volatile", Method.class));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("public | vararg", Field.class));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("returnType -> transient", Method.class));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("returnType -> public", Field.class));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("throws ~ /Exception/", Class.class));
+    }
+
+    @Test
+    @DisplayName("Strict selector does not fold away the conditions that cannot be applied to the object")
+    void testStrictDoesNotFoldInapplicable() {
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("transient | !transient", Method.class));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("transient & false", Method.class));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("transient & !transient").match(SUT_METHOD_STATIC));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("declaringClass -> true").match("string"));
+        assertSame(SelectorNode.Constant.FALSE, Selector.compile("static & !static", Method.class).topNode());
+        assertSame(SelectorNode.Constant.TRUE, Selector.compile("declaringClass -> true", Method.class).topNode());
+        assertSame(SelectorNode.Constant.FALSE, Selector.compile("false & transient", Method.class).topNode());
+    }
+
+    @Test
+    @DisplayName("Lenient selector evaluates the not applicable conditions to the configured value")
+    void testLenient() {
+        assertFalse(Selector.compileLenient("transient").match(SUT_METHOD_STATIC));
+        assertTrue(Selector.compileLenient("!transient").match(SUT_METHOD_STATIC));
+        assertTrue(Selector.compileLenient("transient", true).match(SUT_METHOD_STATIC));
+        assertFalse(Selector.compileLenient("returnType -> primitive").match(SUT_FIELD_I));
+        assertTrue(Selector.compileLenient("transient").match(SUT_FIELD_TRANSIENT));
+        assertFalse(Selector.compileLenient("throws ~ /IllegalArgumentException/").match(SUT_FIELD_I));
+        final var mixed = Selector.compileLenient("vararg | volatile | interface");
+        assertTrue(mixed.match(SUT_METHOD_VARARG));
+        assertTrue(mixed.match(SUT_FIELD_VOLATILE));
+        assertTrue(mixed.match(Serializable.class));
+        assertFalse(mixed.match(SUT_FIELD_I));
+        assertTrue(Selector.compileLenient("!(returnType -> interface)").match(SUT_FIELD_I));
+        assertTrue(Selector.compileLenient("!(type -> primitive)").match(SUT_METHOD_INT));
+        assertTrue(Selector.compileLenient("!(returnType -> interface)", Field.class, false).match(SUT_FIELD_I));
+        assertTrue(Selector.compileLenient("!(anySuper -> public)").match(SUT_METHOD_PUBLIC));
+        assertTrue(Selector.compileLenient("!(methods -> count(public) > 1)").match(SUT_FIELD_I));
+        assertFalse(Selector.compileLenient("returnType -> true").match(SUT_FIELD_I));
+        assertFalse(Selector.compileLenient("!(type -> primitive)").match(SUT_FIELD_I));
+    }
+
+    @Test
+    @DisplayName("Lenient selector compiled for a kind does not reject the not applicable conditions")
+    void testLenientKindSpecialized() {
+        assertTrue(Selector.compileLenient("volatile | public", Method.class, false).match(SUT_METHOD_PUBLIC));
+        assertFalse(Selector.compileLenient("volatile & public", Method.class, true).match(SUT_METHOD_PRIVATE));
+        assertTrue(Selector.compileLenient("volatile & public", Method.class, true).match(SUT_METHOD_PUBLIC));
+        assertTrue(Selector.compileLenient("returnType -> !transient", Method.class, false).match(SUT_METHOD_INT));
+    }
+
+    @Test
+    @DisplayName("The same conversion path is converted only once during a match")
+    void testConversionIsShared() {
+        final var counter = new int[1];
+        final var selector = Selector.compile("counted -> superClass -> simpleName ~ /Sut/ & counted -> !public " +
+            "| counted -> superClass -> !null & counted -> superClass -> superClass -> null");
+        selector.converterRe("counted", m -> {
+            counter[0]++;
+            return m;
+        });
+        assertTrue(selector.match(SutTargetClass.X.class));
+        assertEquals(1, counter[0]);
+        assertTrue(selector.match(SutTargetClass.class));
+        assertEquals(2, counter[0]);
+    }
+
+    @Test
+    @DisplayName("Quantifiers check the transitive superclasses, interfaces and enclosing classes")
+    void testHierarchyQuantifiers() {
+        assertTrue(Selector.compile("anySuper -> simpleName ~ /^SutTargetClass$/").match(SutTargetClass.X.class));
+        assertFalse(Selector.compile("anySuper -> abstract").match(SutTargetClass.X.class));
+        assertTrue(Selector.compile("allSupers -> public").match(SutTargetClass.X.class));
+        assertFalse(Selector.compile("anySuper -> true").match(Object.class));
+        assertTrue(Selector.compile("anyInterface -> simpleName ~ /^A$/").match(SutTargetClass.Y.class));
+        assertTrue(Selector.compile("allInterfaces -> (interface & simpleName ~ /^[ABC]$/)").match(SutTargetClass.Y.class));
+        assertTrue(Selector.compile("anyInterface -> name ~ /Function/").match(SutTargetClass.X.class));
+        assertTrue(Selector.compile("anyEnclosing -> simpleName ~ /^SutTargetClass$/", Class.class).match(SutTargetClass.X.class));
+        assertTrue(Selector.compile("allEnclosing -> false").match(SutTargetClass.class));
+        assertTrue(Selector.compile("!(anySuper -> !public)").match(SutTargetClass.X.class));
+        assertTrue(Selector.compile("declaringClass -> anyInterface -> simpleName ~ /^C$/").match(SutTargetClass.Y.class.getDeclaredMethods()[0]));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("anySuper -> public", Method.class));
+        assertFalse(Selector.compileLenient("anySuper -> public").match(SUT_METHOD_PUBLIC));
+    }
+
+    @Test
+    @DisplayName("Aggregates check the members of a class")
+    void testMemberAggregates() {
+        assertTrue(Selector.compile("declaredFields -> count(static) = 1").match(SutTargetClass.class));
+        assertTrue(Selector.compile("declaredFields -> count(private) >= 3").match(SutTargetClass.class));
+        assertFalse(Selector.compile("declaredFields -> count(private)>3").match(SutTargetClass.class));
+        assertTrue(Selector.compile("declaredFields -> any(annotation ~ /Deprecated/)").match(SutTargetClass.class));
+        assertTrue(Selector.compile("declaredFields -> none(true)").match(SutTargetClass.X.class));
+        assertTrue(Selector.compile("methods->any(abstract & name ~ /^method_abstract$/)").match(SutTargetClass.X.class));
+        assertFalse(Selector.compile("methods -> all(!static)").match(SutTargetClass.X.class));
+        assertTrue(Selector.compile("constructors -> any(parameterTypes -> none(true))").match(SutTargetClass.class));
+        assertFalse(Selector.compile("constructors -> any(true)").match(SutTargetClass.Z.class));
+        assertTrue(Selector.compile("classes -> count (interface) >= 3").match(SutTargetClass.class));
+        assertTrue(Selector.compile("supers -> any(simpleName ~ /^SutTargetClass$/)").match(SutTargetClass.X.class));
+        assertTrue(Selector.compile("declaringClass -> methods -> any(static)", Field.class).match(SUT_FIELD_I));
+    }
+
+    @Test
+    @DisplayName("Aggregates with syntax errors are rejected")
+    void testMemberAggregatesInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("fields -> count(static)"));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("fields -> count(static) ~ 3"));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("fields -> count(static) == 3"));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("fields -> any(static"));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("unknown -> any(static)"));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("fields -> any(static)", Method.class));
+    }
+
+    @Test
+    @DisplayName("The result of an aggregate is calculated only once for a class")
+    void testMemberAggregatesMemoized() {
+        final var counter = new int[1];
+        final var selector = Selector.compile("declaredFields -> count(counted) > 100");
+        selector.selectorRe("counted", m -> {
+            counter[0]++;
+            return true;
+        });
+        assertFalse(selector.match(SutTargetClass.class));
+        final var evaluated = counter[0];
+        assertTrue(evaluated > 0);
+        assertFalse(selector.match(SutTargetClass.class));
+        assertEquals(evaluated, counter[0]);
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Fresh {
+    }
+
+    @Fresh
+    private static class FreshlyAnnotated {
+        @Fresh
+        @Deprecated
+        void method() {
+        }
+    }
+
+    @Test
+    @DisplayName("Annotations first seen after the expression was compiled are matched")
+    void testAnnotationsSeenLater() throws NoSuchMethodException {
+        final var selector = Selector.compile("annotation ~ /Fresh$/");
+        assertFalse(selector.match(SUT_FIELD_J));
+        assertTrue(selector.match(FreshlyAnnotated.class));
+        assertTrue(selector.match(FreshlyAnnotated.class.getDeclaredMethod("method")));
+        assertTrue(selector.match(FreshlyAnnotated.class.getDeclaredMethod("method")));
+        assertTrue(Selector.compile("annotated & annotation ~ /Deprecated/ & annotation ~ /Fresh/")
+            .match(FreshlyAnnotated.class.getDeclaredMethod("method")));
+        assertFalse(Selector.compile("annotation ~ /Deprecated/").match(FreshlyAnnotated.class));
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Fresh
+    @Stereotype
+    @interface Stereotype {
+    }
+
+    @Stereotype
+    interface Stereotyped {
+        @Deprecated
+        void method();
+    }
+
+    private static class ImplementsStereotyped implements Stereotyped {
+        public void method() {
+        }
+    }
+
+    @Test
+    @DisplayName("Meta annotations and inherited annotations are recognized")
+    void testMetaAndInheritedAnnotations() throws NoSuchMethodException {
+        assertTrue(Selector.compile("metaAnnotation ~ /Fresh$/").match(Stereotyped.class));
+        assertTrue(Selector.compile("metaAnnotation ~ /Stereotype$/").match(Stereotyped.class));
+        assertTrue(Selector.compile("metaAnnotation ~ /Retention$/").match(Stereotyped.class));
+        assertFalse(Selector.compile("annotation ~ /Fresh$/").match(Stereotyped.class));
+        assertFalse(Selector.compile("metaAnnotation ~ /Fresh$/").match(ImplementsStereotyped.class));
+        assertTrue(Selector.compile("inheritedAnnotation ~ /Stereotype$/").match(ImplementsStereotyped.class));
+        assertFalse(Selector.compile("inheritedAnnotation ~ /Stereotype$/").match(SutTargetClass.class));
+        final var method = ImplementsStereotyped.class.getDeclaredMethod("method");
+        assertFalse(Selector.compile("annotation ~ /Deprecated/").match(method));
+        assertTrue(Selector.compile("inheritedAnnotation ~ /Deprecated/").match(method));
+        assertTrue(Selector.compile("inheritedAnnotation ~ /Deprecated/").match(SUT_FIELD_J));
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Path {
+        String value();
+
+        int order() default 0;
+
+        RetentionPolicy policy() default RetentionPolicy.CLASS;
+
+        Class<?> type() default Object.class;
+
+        String[] tags() default {};
+    }
+
+    @Path(value = "/api/items", order = 3, tags = {"a", "b"})
+    private static class Resource {
+        @Path("/other")
+        void get() {
+        }
+    }
+
+    @Test
+    @DisplayName("Annotation attributes are checked")
+    void testAnnotationAttributes() throws NoSuchMethodException {
+        final var get = Resource.class.getDeclaredMethod("get");
+        assertTrue(Selector.compile("annotation(Path).value ~ /^\\/api/").match(Resource.class));
+        assertFalse(Selector.compile("annotation(Path).value ~ /^\\/api/").match(get));
+        assertTrue(Selector.compile("annotation(Path).value = \"/other\"").match(get));
+        assertTrue(Selector.compile("annotation(TestSelector.Path).order = 3").match(Resource.class));
+        assertFalse(Selector.compile("annotation(Path).order = 4").match(Resource.class));
+        assertFalse(Selector.compile("annotation(Path).order = x").match(Resource.class));
+        assertTrue(Selector.compile("annotation(Path).policy = CLASS").match(Resource.class));
+        assertTrue(Selector.compile("annotation(Path).type = java.lang.Object").match(Resource.class));
+        assertTrue(Selector.compile("annotation(Path).tags = \"b\"").match(Resource.class));
+        assertFalse(Selector.compile("annotation(Path).tags ~ /^c$/").match(Resource.class));
+        assertFalse(Selector.compile("annotation(Path).missing = 1").match(Resource.class));
+        assertFalse(Selector.compile("annotation(Pat).value ~ /./").match(Resource.class));
+        assertTrue(Selector.compile("!annotation(Path).order = 3 & annotation ~ /Test/").match(
+            TestSelector.class.getDeclaredMethod("testAnnotationAttributes")));
+        assertTrue(Selector.compile("declaringClass -> annotation(Path).order = 3", Method.class).match(get));
+    }
+
+    @Test
+    @DisplayName("Annotation attribute conditions with syntax errors are rejected")
+    void testAnnotationAttributesInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("annotation(Path)"));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("annotation(Path).value"));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("annotation(Path).value = ~"));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("annotation(Path).value = \"x"));
+        assertThrows(IllegalArgumentException.class, () -> Selector.compile("annotation(Path).value ~ /x/", String.class));
+    }
+
+    @Test
+    @DisplayName("Equivalent expressions share the compiled structure, the evaluator and the equal sub expressions")
+    void testCanonicalSelectors() {
+        final var selector = Selector.compile("public & !static & name ~ /^testCanonical/");
+        final var equivalent = Selector.compile("public&!static&name~/^testCanonical/");
+        assertNotSame(selector, equivalent);
+        assertEquals("public&!static&name~/^testCanonical/", equivalent.expression());
+        assertSame(selector.topNode(), equivalent.topNode());
+        assertSame(selector.evaluator().root, equivalent.evaluator().root);
+        final var reordered = Selector.compile("name ~ /^testCanonical/ & !static & public");
+        assertNotSame(selector.topNode(), reordered.topNode());
+        assertNotSame(selector.evaluator().root, reordered.evaluator().root);
+        assertEquals("name ~ /^testCanonical/ & !static & public", reordered.topNode().toString());
+        assertSame(((SelectorNode.And) selector.topNode()).subNodes.get(2),
+            ((SelectorNode.And) reordered.topNode()).subNodes.get(0));
+        assertSame(selector.evaluator().root, Selector.compile("!!public & !(static | !name ~ /^testCanonical/)").evaluator().root);
+        assertNotSame(selector.evaluator().root, Selector.compileLenient("public & !static & name ~ /^testCanonical/").evaluator().root);
+        assertNotSame(selector.evaluator().root, Selector.compile("public & !static & name ~ /^testCanonical/", Method.class).evaluator().root);
+
+        final var defined = Selector.compile("testCanonicalDefined & public");
+        final var undefined = Selector.compile("public&testCanonicalDefined");
+        defined.selector("testCanonicalDefined", m -> true);
+        assertTrue(defined.match(SUT_METHOD_PUBLIC));
+        final var exception = assertThrows(IllegalArgumentException.class, () -> undefined.match(SUT_METHOD_PUBLIC));
+        assertTrue(exception.getMessage().contains("'public&testCanonicalDefined'"), exception.getMessage());
+
+        final var and = (SelectorNode.And) Selector.compile("public & declaringClass -> annotation ~ /Canonical/").topNode();
+        final var or = (SelectorNode.Or) Selector.compile("private | declaringClass -> annotation ~ /Canonical/").topNode();
+        final var converted = and.subNodes.stream().filter(n -> n instanceof SelectorNode.Converted).findFirst().orElseThrow();
+        assertTrue(or.subNodes.stream().anyMatch(n -> n == converted));
+        final var regex = (SelectorNode.Regex) ((SelectorNode.Converted) converted).subNode;
+        final var other = ((SelectorNode.Or) Selector.compile("annotation ~ /Canonical/ | static").topNode())
+            .subNodes.get(0);
+        assertSame(regex, other);
+    }
+
+    @Test
+    @DisplayName("Cached selectors referencing a class loader are released")
+    void testCacheRelease() {
+        final var loader = TestSelector.class.getClassLoader();
+        final var selector = Selector.compile("cacheReleaseTest & public");
+        selector.selector("cacheReleaseTest", m -> true);
+        assertSame(selector, Selector.compile("cacheReleaseTest & public"));
+        final var equivalent = Selector.compile("cacheReleaseTest&public");
+        final var kindSelector = Selector.compileLenient("public", TestSelector.class, false);
+        assertSame(kindSelector, Selector.compileLenient("public", TestSelector.class, false));
+        assertTrue(Caches.retainedEntries().get(loader) >= 2);
+        assertTrue(Caches.retainedEntries().get(null) >= 1);
+        Caches.release(loader);
+        assertNull(Caches.retainedEntries().get(loader));
+        assertNotSame(selector, Selector.compile("cacheReleaseTest & public"));
+        assertNotSame(equivalent.evaluator().root, Selector.compile("cacheReleaseTest &public").evaluator().root);
+        assertNotSame(kindSelector, Selector.compileLenient("public", TestSelector.class, false));
+        assertTrue(Selector.compile("public").match(Selector.class));
+    }
+}
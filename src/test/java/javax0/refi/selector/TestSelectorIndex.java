@@ -0,0 +1,340 @@
+package javax0.refi.selector;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.Serializable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestSelectorIndex {
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Entity {
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Id {
+    }
+
+    private static abstract class Base implements Serializable {
+        @Id
+        private long id;
+
+        public long getId() {
+            return id;
+        }
+    }
+
+    @Entity
+    private static class Order extends Base implements Comparable<Order> {
+        @Deprecated
+        String name;
+
+        @Override
+        public int compareTo(Order o) {
+            return 0;
+        }
+
+        @Deprecated
+        public static Order of(String name) {
+            return null;
+        }
+    }
+
+    @Entity
+    private static class Customer extends Base {
+        String name;
+
+        private void name(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final SelectorIndex index = SelectorIndex.of(List.of(Base.class, Order.class, Customer.class,
+        TestSelectorIndex.class));
+
+    private static List<Object> scanned() {
+        final var members = new ArrayList<Object>();
+        for (final var klass : List.<Class<?>>of(Base.class, Order.class, Customer.class, TestSelectorIndex.class)) {
+            members.add(klass);
+            members.addAll(List.of(MemberTables.declaredMethods(klass)));
+            members.addAll(List.of(MemberTables.declaredFields(klass)));
+            members.addAll(List.of(MemberTables.constructors(klass)));
+        }
+        return members;
+    }
+
+    /**
+     * Assert that the index returns the same objects as the lenient selector checking all the scanned objects.
+     */
+    private static void assertSameAsScan(String expression) {
+        final var selector = Selector.compileLenient(expression, false);
+        final var expected = scanned().stream().filter(selector::match).collect(Collectors.toList());
+        assertEquals(expected, index.select(expression).collect(Collectors.toList()), expression);
+    }
+
+    @Test
+    @DisplayName("Index contains the classes and the declared members")
+    void testSize() {
+        assertEquals(scanned().size(), index.size());
+    }
+
+    @Test
+    @DisplayName("Indexed terms are answered from the posting lists")
+    void testIndexedTerms() {
+        assertEquals(List.of(Order.class, Customer.class),
+            index.select("annotation ~ /Entity$/").collect(Collectors.toList()));
+        assertSameAsScan("annotation ~ /Entity$/");
+        assertSameAsScan("annotation ~ /Deprecated/ | annotation ~ /\\.Id$/");
+        assertSameAsScan("name ~ /^name$/");
+        assertSameAsScan("anySuper -> simpleName ~ /^Base$/");
+        assertSameAsScan("anyInterface -> name ~ /Serializable/");
+    }
+
+    @Test
+    @DisplayName("Residual predicate is evaluated on the candidates")
+    void testResidual() {
+        assertEquals(List.of(Customer.class),
+            index.select("annotation ~ /Entity$/ & declaredMethods -> none(public & static)", Class.class)
+                .collect(Collectors.toList()));
+        assertSameAsScan("annotation ~ /Deprecated/ & static");
+        assertSameAsScan("name ~ /^name$/ & private");
+        assertSameAsScan("anyInterface -> simpleName ~ /Comparable/ & !abstract");
+        assertSameAsScan("(annotation ~ /Deprecated/ | static) & public");
+        assertSameAsScan("!annotation ~ /Entity/ & declaringClass -> annotation ~ /Entity/");
+        assertSameAsScan("private");
+        assertSameAsScan("true");
+        assertSameAsScan("false");
+    }
+
+    @Test
+    @DisplayName("Modifiers, names and declaring classes are evaluated on the columns")
+    void testColumns() {
+        assertSameAsScan("public & !static | private & final");
+        assertSameAsScan("!(static | final) & !package");
+        assertSameAsScan("abstract | volatile | transient");
+        assertSameAsScan("declaringClass -> (abstract | annotation ~ /Entity/) & !private");
+        assertSameAsScan("declaringClass -> !static");
+        assertSameAsScan("name ~ /^get/ & public & !declaringClass -> final");
+        assertSameAsScan("static & declaringClass -> annotation ~ /Entity/ & returns ~ /Order/");
+        assertSameAsScan("signature ~ /\\(String arg\\d+\\)/");
+        assertSameAsScan("signature ~ /^public/ | annotation ~ /Deprecated/");
+    }
+
+    @Test
+    @DisplayName("Bitmaps spanning multiple words give the same result as scanning")
+    void testMultipleWords() {
+        final var classes = List.<Class<?>>of(String.class, Integer.class, Selector.class, SelectorNode.class);
+        final var large = SelectorIndex.of(classes);
+        final var members = new ArrayList<Object>();
+        for (final var klass : classes) {
+            members.add(klass);
+            members.addAll(List.of(MemberTables.declaredMethods(klass)));
+            members.addAll(List.of(MemberTables.declaredFields(klass)));
+            members.addAll(List.of(MemberTables.constructors(klass)));
+        }
+        for (final var expression : List.of("public & static & !final", "private | name ~ /^value/",
+            "!static & declaringClass -> final", "annotation ~ /Deprecated/ | synthetic",
+            "signature ~ /int arg1\\)/ & !private", "anyInterface -> simpleName ~ /^Comparable$/")) {
+            final var selector = Selector.compileLenient(expression, false);
+            assertEquals(members.stream().filter(selector::match).collect(Collectors.toList()),
+                large.select(expression).collect(Collectors.toList()), expression);
+        }
+    }
+
+    @Test
+    @DisplayName("Posting lists and member lists give the same result")
+    void testPostingsAndScan() {
+        // the posting lists are shorter than the scope
+        assertSameAsScan("annotation ~ /Entity$/");
+        assertSameAsScan("anySuper -> name ~ /Base$/");
+        // the scope is smaller than the posting lists
+        assertSameAsScan("private & annotation ~ /./");
+        assertSameAsScan("private & anySuper -> name ~ /./");
+        assertSameAsScan("abstract & anyInterface -> name ~ /./");
+    }
+
+    @Test
+    @DisplayName("Members are looked up by name and descriptor, bridge methods included")
+    void testMemberLookup() throws Exception {
+        assertEquals(List.of(Order.class.getDeclaredMethod("compareTo", Order.class),
+                Order.class.getDeclaredMethod("compareTo", Object.class)).stream()
+                .sorted(Comparator.comparing(Method::toGenericString)).collect(Collectors.toList()),
+            index.select("name ~ /^compareTo$/", Method.class)
+                .sorted(Comparator.comparing(Method::toGenericString)).collect(Collectors.toList()));
+        assertEquals(List.of(Order.class.getDeclaredMethod("of", String.class)),
+            index.select("name ~ /^of$/", Method.class).collect(Collectors.toList()));
+        assertEquals(scanned().stream().filter(Constructor.class::isInstance).collect(Collectors.toList()),
+            index.select("true", Constructor.class).collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("Only the objects of the requested kind are selected")
+    void testKinds() throws Exception {
+        assertEquals(2, index.select("name ~ /^name$/", Field.class).count());
+        final List<Member> members = index.select("name ~ /^name$/", Member.class).collect(Collectors.toList());
+        assertEquals(3, members.size());
+        final List<Method> methods = index.select("name ~ /^name$/", Method.class).collect(Collectors.toList());
+        assertEquals(List.of(Customer.class.getDeclaredMethod("name", String.class)), methods);
+    }
+
+    @Test
+    @DisplayName("Updating a source reindexes only its classes and notifies the listeners")
+    void testUpdates() {
+        final var updatable = SelectorIndex.of(List.of(Base.class));
+        final var added = new ArrayList<Class>();
+        final var removed = new ArrayList<Class>();
+        final SelectorIndex.Listener<Class> listener = (a, r) -> {
+            added.addAll(a);
+            removed.addAll(r);
+        };
+        updatable.addListener("annotation ~ /Entity$/", Class.class, listener);
+        updatable.update("orders", List.of(Order.class));
+        assertEquals(List.of(Order.class), added);
+        updatable.update("customers", List.of(Customer.class));
+        assertEquals(List.of(Order.class, Customer.class), added);
+        assertEquals(List.of(Order.class, Customer.class),
+            updatable.select("annotation ~ /Entity$/", Class.class).collect(Collectors.toList()));
+        updatable.update("orders", List.of(Order.class));
+        assertEquals(2, added.size());
+        assertEquals(List.of(), removed);
+        updatable.update("orders", List.of(Base.class));
+        assertEquals(List.of(Order.class), removed);
+        updatable.remove("customers");
+        assertEquals(List.of(Order.class, Customer.class), removed);
+        assertEquals(List.of(), updatable.select("annotation ~ /Entity$/").collect(Collectors.toList()));
+        updatable.removeListener(listener);
+        updatable.update("orders", List.of(Order.class));
+        assertEquals(2, added.size());
+    }
+
+    private static final String SOURCE = "package sut;\n" +
+        "@Sut.Entity\n" +
+        "public class Sut {\n" +
+        "    @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n" +
+        "    @interface Entity {}\n" +
+        "    String name;\n" +
+        "    void name(String name) {}\n" +
+        "    public int size() { return 0; }\n" +
+        "}\n";
+
+    private static final class Source extends SimpleJavaFileObject {
+        private Source() {
+            super(URI.create("string:///sut/Sut.java"), Kind.SOURCE);
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return SOURCE;
+        }
+    }
+
+    @Test
+    @DisplayName("Classes loaded again by a new class loader are compared by their names and signatures")
+    void testReload() throws Exception {
+        final var output = Files.createTempDirectory("refi");
+        try {
+            assertTrue(ToolProvider.getSystemJavaCompiler().getTask(null, null, null,
+                List.of("-d", output.toString()), null, List.of(new Source())).call());
+            final var urls = new URL[]{output.toUri().toURL()};
+            final var updatable = SelectorIndex.of(List.of());
+            final var changes = new ArrayList<String>();
+            updatable.addListener("annotation ~ /Entity$/ | name ~ /^name$/", Object.class,
+                (added, removed) -> changes.add(added.size() + "+" + removed.size() + "-"));
+            try (final var first = new URLClassLoader(urls, null);
+                 final var second = new URLClassLoader(urls, null)) {
+                final var sut = first.loadClass("sut.Sut");
+                final var reloaded = second.loadClass("sut.Sut");
+                assertNotSame(sut, reloaded);
+                assertEquals(Annotations.of(sut), Annotations.of(reloaded));
+                updatable.update("sut", List.of(sut));
+                assertEquals(List.of("3+0-"), changes);
+                updatable.update("sut", List.of(reloaded));
+                updatable.update("sut", List.of(reloaded));
+                assertEquals(List.of("3+0-"), changes);
+                assertEquals(List.of(reloaded), updatable.select("annotation ~ /Entity$/").collect(Collectors.toList()));
+                updatable.update("sut", List.of(reloaded, second.loadClass("sut.Sut$Entity")));
+                assertEquals(List.of("3+0-"), changes);
+                updatable.remove("sut");
+                assertEquals(List.of("3+0-", "0+3-"), changes);
+            }
+        } finally {
+            try (final var files = Files.walk(output)) {
+                for (final var file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("The watcher updates the index when class files change")
+    void testWatcher() throws Exception {
+        final var directory = Files.createTempDirectory("refi");
+        final var moved = Files.createTempDirectory("refi");
+        final Map<String, Class<?>> classes = Map.of("Order.class", Order.class, "Customer.class", Customer.class);
+        final var watched = SelectorIndex.of(List.of());
+        final var changes = new LinkedBlockingQueue<String>();
+        watched.addListener("annotation ~ /Entity$/", Class.class,
+            (added, removed) -> changes.add(added.stream().map(c -> "+" + c.getSimpleName()).collect(Collectors.joining())
+                + removed.stream().map(c -> "-" + c.getSimpleName()).collect(Collectors.joining())));
+        watched.addListener("annotation ~ /Entity$/", Class.class, (added, removed) -> {
+            if (added.contains(Customer.class)) {
+                throw new IllegalStateException("listener failed");
+            }
+        });
+        final var errors = new LinkedBlockingQueue<String>();
+        Files.createFile(directory.resolve("Order.class"));
+        try (final var watcher = SelectorIndexWatcher.watch(watched, directory, path -> {
+                final var klass = classes.get(path.getFileName().toString());
+                if (klass == null) {
+                    throw new NoClassDefFoundError(path.getFileName().toString());
+                }
+                return List.of(klass);
+            },
+            (path, e) -> errors.add(path.getFileName() + " " + e.getMessage()))) {
+            assertEquals("+Order", changes.poll(10, TimeUnit.SECONDS));
+            Files.createFile(directory.resolve("Broken.class"));
+            assertEquals("Broken.class Broken.class", errors.poll(10, TimeUnit.SECONDS));
+            Files.createDirectory(directory.resolve("sub"));
+            Files.createFile(directory.resolve("sub").resolve("Customer.class"));
+            assertEquals("+Customer", changes.poll(10, TimeUnit.SECONDS));
+            assertEquals("Customer.class listener failed", errors.poll(10, TimeUnit.SECONDS));
+            Files.delete(directory.resolve("Order.class"));
+            assertEquals("-Order", changes.poll(10, TimeUnit.SECONDS));
+            assertEquals(List.of(Customer.class), watched.select("annotation ~ /Entity$/").collect(Collectors.toList()));
+            Files.move(directory.resolve("sub"), moved.resolve("sub"));
+            assertEquals("-Customer", changes.poll(10, TimeUnit.SECONDS));
+            assertEquals(List.of(), watched.select("annotation ~ /Entity$/").collect(Collectors.toList()));
+            assertTrue(changes.isEmpty());
+        } finally {
+            Files.delete(moved.resolve("sub").resolve("Customer.class"));
+            Files.delete(moved.resolve("sub"));
+            Files.delete(moved);
+            Files.delete(directory.resolve("Broken.class"));
+            Files.delete(directory);
+        }
+    }
+}
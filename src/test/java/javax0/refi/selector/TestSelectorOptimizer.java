@@ -0,0 +1,108 @@
+package javax0.refi.selector;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestSelectorOptimizer {
+
+    private static String optimized(String expression) {
+        return SelectorCompiler.compile(expression).toString();
+    }
+
+    @Test
+    @DisplayName("Constants are folded")
+    void testConstantFolding() {
+        assertEquals("public", optimized("true & public"));
+        assertEquals("public", optimized("(public) | false"));
+        assertEquals("true", optimized("true | public"));
+        assertEquals("false", optimized("public & false & static"));
+        assertEquals("true", optimized("declaringClass -> true"));
+        assertSame(SelectorNode.Constant.FALSE, SelectorCompiler.compile("!true"));
+    }
+
+    @Test
+    @DisplayName("Double negation is eliminated")
+    void testDoubleNegation() {
+        assertEquals("public", optimized("!!public"));
+        assertEquals("!public", optimized("!!!public"));
+    }
+
+    @Test
+    @DisplayName("Nested and/or nodes are flattened")
+    void testFlattening() {
+        assertEquals("public & static & final", optimized("public & (static & final)"));
+        assertEquals("public | static | final", optimized("(public | static) | final"));
+        assertEquals("public & (static | final)", optimized("public & (static | final)"));
+    }
+
+    @Test
+    @DisplayName("Duplicate terms are removed")
+    void testDeduplication() {
+        assertEquals("public", optimized("public & public"));
+        assertEquals("name ~ /a/ | static", optimized("name ~ /a/ | static | name ~ /a/"));
+        assertEquals("name ~ /a/ | name ~ /b/", optimized("name ~ /a/ | name ~ /b/"));
+    }
+
+    @Test
+    @DisplayName("Negations are pushed to the leaves")
+    void testDeMorgan() {
+        assertEquals("!public & !static", optimized("!(public | static)"));
+        assertEquals("!public | !static", optimized("!(public & static)"));
+        assertEquals("!public | static & final", optimized("!(public & !(static & final))"));
+        assertEquals("declaringClass -> !public", optimized("!declaringClass -> public"));
+    }
+
+    @Test
+    @DisplayName("Negated quantifiers are replaced by the dual quantifier")
+    void testQuantifierNegation() {
+        assertEquals("allSupers -> !public", optimized("!anySuper -> public"));
+        assertEquals("anyInterface -> (!public | static)", optimized("!allInterfaces -> (public & !static)"));
+        assertEquals("false", optimized("anyEnclosing -> false"));
+        assertEquals("true", optimized("allEnclosing -> true"));
+        assertEquals("anySuper -> true", optimized("anySuper -> true"));
+    }
+
+    @Test
+    @DisplayName("Aggregates are simplified")
+    void testAggregates() {
+        assertEquals("methods -> any(public)", optimized("methods -> count(public) > 0"));
+        assertEquals("methods -> all(!public)", optimized("methods -> none(public)"));
+        assertEquals("methods -> all(!public)", optimized("methods -> count(public) = 0"));
+        assertEquals("fields -> count(static) <= 3", optimized("!(fields -> count(static) > 3)"));
+        assertEquals("fields -> count(final | static) != 2", optimized("fields -> count(final | static | final) != 2"));
+        assertEquals("anySuper -> public", optimized("supers -> any(public)"));
+        assertEquals("true", optimized("fields -> count(false) < 2"));
+        assertEquals("false", optimized("fields -> count(static) < 0"));
+    }
+
+    @Test
+    @DisplayName("Annotation attribute conditions are printed in the form they can be compiled")
+    void testAttributes() {
+        assertEquals("annotation(Path).value = \"a\\\"b\"", optimized("annotation(Path).value = \"a\\\"b\""));
+        assertEquals("annotation(Path).order = \"3\"", optimized("annotation(Path).order = 3"));
+        assertEquals("annotation(x.Path).value ~ /^\\/api/", optimized("annotation(x.Path).value ~ /^\\/api/"));
+        assertEquals("false", optimized("annotation(Path).order = 3 & !annotation(Path).order = \"3\""));
+    }
+
+    @Test
+    @DisplayName("Contradictions and tautologies are recognized")
+    void testComplementary() {
+        assertEquals("false", optimized("static & !static"));
+        assertEquals("true", optimized("static | !static"));
+        assertEquals("false", optimized("public & !(static | public)"));
+    }
+
+    @Test
+    @DisplayName("The optimized expression matches the same way as the original")
+    void testSemanticsKept() throws NoSuchFieldException {
+        final var field = SutTargetClass.class.getDeclaredField("var_static");
+        assertTrue(Selector.compile("!(private | public) & (true & static)").match(field));
+        assertFalse(Selector.compile("!!(private | public) | false").match(field));
+        assertTrue(Selector.compile("declaringClass -> !!simpleName ~ /SutTarget/").match(field));
+    }
+}
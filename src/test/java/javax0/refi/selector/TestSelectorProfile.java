@@ -0,0 +1,93 @@
+package javax0.refi.selector;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestSelectorProfile {
+
+    public static class Target {
+        public void a() {
+        }
+
+        public static void b() {
+        }
+
+        private void c() {
+        }
+
+        @Deprecated
+        public void d() {
+        }
+    }
+
+    private static Method[] methods() {
+        return Arrays.stream(Target.class.getDeclaredMethods()).filter(m -> !m.isSynthetic()).toArray(Method[]::new);
+    }
+
+    @Test
+    @DisplayName("The explanation shows the optimized structure with the costs")
+    void testExplain() {
+        final var selector = Selector.compile("public & !!static & (annotation ~ /Deprecated/ | name ~ /^a$/)");
+        assertEquals("&" + " [ANNOTATION]\n" +
+                "  public [MODIFIER]\n" +
+                "  static [MODIFIER]\n" +
+                "  | [ANNOTATION]\n" +
+                "    annotation ~ /Deprecated/ [ANNOTATION]\n" +
+                "    name ~ /^a$/ [REGEX]\n",
+            selector.explain());
+        assertEquals("declaringClass -> [AGGREGATE]\n" +
+                "  methods -> count > 3 [AGGREGATE]\n" +
+                "    public [MODIFIER]\n",
+            Selector.compile("declaringClass -> (methods -> count(public) > 3)").explain());
+    }
+
+    @Test
+    @DisplayName("The profile counts the evaluations and the short circuits of each node")
+    void testProfile() {
+        final var selector = Selector.compile("public & static");
+        final var profile = selector.profile();
+        final var methods = methods();
+        for (final var method : methods) {
+            assertEquals(selector.match(method), profile.match(method));
+        }
+        final var nodes = profile.nodes();
+        assertEquals("& public static", nodes.stream().map(SelectorProfile.Node::label).collect(Collectors.joining(" ")));
+        final var and = nodes.get(0);
+        assertEquals(0, and.depth());
+        assertEquals(methods.length, and.invocations());
+        assertEquals(1, and.matched());
+        assertEquals(methods.length, nodes.get(1).invocations());
+        assertEquals(3, nodes.get(1).matched());
+        assertEquals(3, nodes.get(2).invocations());
+        assertEquals((double) (methods.length - 3) / methods.length, and.shortCircuitRate());
+        assertEquals(0.0, nodes.get(1).shortCircuitRate());
+        assertTrue(and.nanos() >= nodes.get(1).nanos());
+        assertTrue(profile.toString().startsWith("& [MODIFIER] invocations=" + methods.length));
+        assertTrue(selector.profile().nodes().stream().allMatch(node -> node.invocations() == 0));
+    }
+
+    @Test
+    @DisplayName("The same sub expression at different positions is counted separately")
+    void testSharedNodes() {
+        final var selector = Selector.compile("static & declaringClass -> static");
+        final var profile = selector.profile();
+        final var methods = methods();
+        for (final var method : methods) {
+            profile.match(method);
+        }
+        final var nodes = profile.nodes();
+        assertEquals("& static declaringClass -> static",
+            nodes.stream().map(SelectorProfile.Node::label).collect(Collectors.joining(" ")));
+        assertEquals(methods.length, nodes.get(1).invocations());
+        assertEquals(1, nodes.get(1).matched());
+        assertEquals(1, nodes.get(3).invocations());
+        assertEquals(1, nodes.get(3).matched());
+    }
+}
@@ -0,0 +1,81 @@
+package javax0.refi.selector;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestStackFrameSelector {
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Audited {
+    }
+
+    @Audited
+    private static class AuditedService {
+        private final List<Executable> members;
+
+        AuditedService(StackFrameSelector selector) {
+            members = call(selector);
+        }
+
+        private static List<Executable> call(StackFrameSelector selector) {
+            return selector.members(10);
+        }
+    }
+
+    @Audited
+    private static List<StackWalker.StackFrame> outer(StackFrameSelector selector, int limit) {
+        return middle(selector, limit);
+    }
+
+    @Audited
+    private static List<StackWalker.StackFrame> middle(StackFrameSelector selector, int limit) {
+        return inner(selector, limit);
+    }
+
+    private static List<StackWalker.StackFrame> inner(StackFrameSelector selector, int limit) {
+        return selector.frames(limit);
+    }
+
+    private static List<String> names(List<StackWalker.StackFrame> frames) {
+        return frames.stream().map(StackWalker.StackFrame::getMethodName).collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("Only the matching frames are returned, starting with the caller, at most the limit")
+    void testFrames() {
+        final var selector = Selector.compile("annotation ~ /Audited/").stackFrames();
+        assertEquals(List.of("middle", "outer"), names(outer(selector, 10)));
+        assertEquals(List.of("middle"), names(outer(selector, 1)));
+        assertEquals(List.of(), names(outer(selector, 0)));
+        assertFalse(selector.first().isPresent());
+        final var all = Selector.compile("true").stackFrames().first();
+        assertTrue(all.isPresent());
+        assertEquals("testFrames", all.get().getMethodName());
+        assertEquals(List.of("inner", "middle", "outer"),
+            names(outer(Selector.compile("name ~ /^(inner|middle|outer)$/").memoized().stackFrames(), 10)));
+    }
+
+    @Test
+    @DisplayName("The frames are resolved to the methods and constructors")
+    void testMembers() throws Exception {
+        final var members = new AuditedService(Selector.compile("declaringClass -> annotation ~ /Audited/")
+            .stackFrames()).members;
+        assertEquals(2, members.size());
+        assertEquals(AuditedService.class.getDeclaredMethod("call", StackFrameSelector.class), members.get(0));
+        assertTrue(members.get(1) instanceof Constructor);
+        assertEquals(AuditedService.class, members.get(1).getDeclaringClass());
+        final var thisMethod = Selector.compile("name ~ /^testMembers$/").stackFrames().members(5);
+        assertEquals(List.of(TestStackFrameSelector.class.getDeclaredMethod("testMembers")), thisMethod);
+    }
+}